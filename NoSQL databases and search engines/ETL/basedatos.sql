@@ -75,6 +75,7 @@ create table estaciones
     rotulo_id    varchar(36)                      null,
     tipoestacion enum ('Terrestre', 'Maritima')   null,
     tipoventa_id varchar(36)                      not null,
+    ubicacion    point                            not null srid 4326,
     constraint estaciones_localidades_id_fk
         foreign key (localidad_id) references localidades (id),
     constraint estaciones_rotulos_id_fk
@@ -95,6 +96,9 @@ create index idx_tipoestacion
 create index idx_tipoestacion_rotuloid
     on estaciones (tipoestacion, rotulo_id);
 
+create spatial index idx_estaciones_ubicacion
+    on estaciones (ubicacion);
+
 create table precios
 (
     estacion_id   varchar(36) not null,
@@ -105,4 +109,31 @@ create table precios
         foreign key (carburante_id) references carburantes (id),
     constraint precios_estaciones_id_fk
         foreign key (estacion_id) references estaciones (id)
-);
\ No newline at end of file
+);
+
+-- Resumen de los precios de cada carburante por tipo de estación y provincia, que RegistrarPrecios calcula
+-- mientras lee los CSV y reescribe al terminar de cargar los precios. Las consultas del carburante más barato
+-- o más caro de una provincia leen una fila por clave primaria en lugar de ordenar la tabla precios
+create table resumen_precios
+(
+    carburante_id      varchar(36)                     not null,
+    tipoestacion       enum ('Terrestre', 'Maritima') not null,
+    provincia_id       varchar(36)                     not null,
+    minimo             double                          not null,
+    maximo             double                          not null,
+    media              double                          not null,
+    total              int                             not null,
+    estacion_minimo_id varchar(36)                     not null,
+    estacion_maximo_id varchar(36)                     not null,
+    primary key (carburante_id, tipoestacion, provincia_id)
+);
+
+-- Una fila por cada carga terminada de RegistrarPrecios. Las consultas comparan la última generación
+-- con la de sus resultados guardados para saber si hay datos nuevos
+create table cargas
+(
+    generacion bigint      not null auto_increment
+        primary key,
+    modo       varchar(16) not null,
+    fecha      datetime    not null
+);
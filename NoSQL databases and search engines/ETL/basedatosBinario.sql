@@ -0,0 +1,142 @@
+-- Mismo esquema que basedatos.sql con los ids en binary(16) en lugar de varchar(36).
+-- Los UUID se guardan con UUID_TO_BIN y se leen con BIN_TO_UUID (TIPO_CLAVE=BINARIO).
+
+create schema laboratorio01 collate utf8mb4_0900_ai_ci;
+
+use laboratorio01;
+
+create table carburantes
+(
+    id     binary(16)   not null
+        primary key,
+    nombre varchar(150) not null
+);
+
+create index idx_carburante_nombre
+    on carburantes (nombre);
+
+create table provincias
+(
+    id     binary(16)   not null
+        primary key,
+    nombre varchar(150) not null
+)
+    comment 'Colección de las provincias';
+
+create table municipios
+(
+    id           binary(16)   not null
+        primary key,
+    provincia_id binary(16)   null,
+    nombre       varchar(150) not null,
+    constraint municipios_provincias_id_fk
+        foreign key (provincia_id) references provincias (id)
+);
+
+create table localidades
+(
+    id           binary(16)   not null
+        primary key,
+    municipio_id binary(16)   not null,
+    nombre       varchar(150) not null,
+    constraint localidades_municipios_id_fk
+        foreign key (municipio_id) references municipios (id)
+);
+
+create index idx_localidades_nombre
+    on localidades (nombre);
+
+create index idx_provincia_nombre
+    on provincias (nombre);
+
+create table rotulos
+(
+    id     binary(16)   not null
+        primary key,
+    nombre varchar(250) not null
+);
+
+create table tipo_ventas
+(
+    id     binary(16)   not null
+        primary key,
+    nombre varchar(150) null
+);
+
+create table estaciones
+(
+    id           binary(16)                       not null
+        primary key,
+    codigopostal varchar(5)                       null,
+    latitud      decimal(10, 6)                   null,
+    longitud     decimal(10, 6)                   null,
+    localidad_id binary(16)                       null,
+    margen       enum ('I', 'D', 'N') default 'N' not null,
+    direccion    varchar(250)                     not null,
+    fechaprecios datetime                         null,
+    horario      varchar(250)                     not null,
+    rotulo_id    binary(16)                       null,
+    tipoestacion enum ('Terrestre', 'Maritima')   null,
+    tipoventa_id binary(16)                       not null,
+    ubicacion    point                            not null srid 4326,
+    constraint estaciones_localidades_id_fk
+        foreign key (localidad_id) references localidades (id),
+    constraint estaciones_rotulos_id_fk
+        foreign key (rotulo_id) references rotulos (id),
+    constraint estaciones_tipo_ventas_id_fk
+        foreign key (tipoventa_id) references tipo_ventas (id)
+);
+
+create index idx_estaciones_codigopostal_margen
+    on estaciones (codigopostal, margen);
+
+create index idx_localidad_rotulo
+    on estaciones (localidad_id, rotulo_id);
+
+create index idx_tipoestacion
+    on estaciones (tipoestacion);
+
+create index idx_tipoestacion_rotuloid
+    on estaciones (tipoestacion, rotulo_id);
+
+create spatial index idx_estaciones_ubicacion
+    on estaciones (ubicacion);
+
+create table precios
+(
+    estacion_id   binary(16)  not null,
+    carburante_id binary(16)  not null,
+    precio        double      null,
+    primary key (estacion_id, carburante_id),
+    constraint precios_carburantes_id_fk
+        foreign key (carburante_id) references carburantes (id),
+    constraint precios_estaciones_id_fk
+        foreign key (estacion_id) references estaciones (id)
+);
+
+-- Resumen de los precios de cada carburante por tipo de estación y provincia, que RegistrarPrecios calcula
+-- mientras lee los CSV y reescribe al terminar de cargar los precios. Las consultas del carburante más barato
+-- o más caro de una provincia leen una fila por clave primaria en lugar de ordenar la tabla precios
+create table resumen_precios
+(
+    carburante_id      binary(16)                      not null,
+    tipoestacion       enum ('Terrestre', 'Maritima') not null,
+    provincia_id       binary(16)                      not null,
+    minimo             double                          not null,
+    maximo             double                          not null,
+    media              double                          not null,
+    total              int                             not null,
+    estacion_minimo_id binary(16)                      not null,
+    estacion_maximo_id binary(16)                      not null,
+    primary key (carburante_id, tipoestacion, provincia_id)
+);
+
+-- Una fila por cada carga terminada de RegistrarPrecios. Las consultas comparan la última generación
+-- con la de sus resultados guardados para saber si hay datos nuevos
+create table cargas
+(
+    generacion bigint      not null auto_increment
+        primary key,
+    modo       varchar(16) not null,
+    fecha      datetime    not null
+);
@@ -7,6 +7,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import com.unir.config.MySqlConnector;
 import com.unir.dtos.Precio;
+import com.unir.types.TipoClave;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.*;
@@ -36,6 +37,9 @@ public class ExportarEstacionesElasticsearch {
     private static final String JSON_FILE = "estaciones.json";
     private static final String JSON_FILE_MAPPING = "estacionesMapping.json";
 
+    // Con TIPO_CLAVE=BINARIO los ids se leen con BIN_TO_UUID y se buscan con UUID_TO_BIN
+    private static final TipoClave CLAVE = TipoClave.actual();
+
     private static String HOST_BONSAI_ELASTICSEARCH = "";
 
     public static void main(String[] args) {
@@ -69,9 +73,9 @@ public class ExportarEstacionesElasticsearch {
      * @throws IOException
      */
     private static void crearJsonEstaciones(Connection connection) throws SQLException, IOException {
-        PreparedStatement selectEstaciones = connection.prepareStatement("select e.id as estacion_id,\n" +
+        PreparedStatement selectEstaciones = connection.prepareStatement("select " + CLAVE.columna("e.id") + " as estacion_id,\n" +
                 "       r.nombre as empresa,\n" +
-                "       e.codigopostal, e.latitud, e.longitud, e.localidad_id, e.margen, e.direccion,\n" +
+                "       e.codigopostal, e.latitud, e.longitud, " + CLAVE.columna("e.localidad_id") + " as localidad_id, e.margen, e.direccion,\n" +
                 "       l.nombre as localidad,\n" +
                 "       m.nombre as municipio,\n" +
                 "       p.nombre as provincia,\n" +
@@ -160,7 +164,7 @@ public class ExportarEstacionesElasticsearch {
         String selectPrecios = "SELECT c.nombre as carburante, pr.precio " +
                 "FROM precios pr " +
                 "INNER JOIN carburantes c ON pr.carburante_id = c.id " +
-                "WHERE pr.estacion_id = ?";
+                "WHERE pr.estacion_id = " + CLAVE.parametro();
 
         try (PreparedStatement preparedStatement = conexion.prepareStatement(selectPrecios)) {
             preparedStatement.setString(1, estacionId);
@@ -0,0 +1,138 @@
+package com.unir.app.read;
+
+import com.unir.app.write.GeneracionCarga;
+import com.unir.config.MySqlConnector;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Búsquedas por distancia sobre el IndiceEstaciones de la última carga terminada.
+ *
+ * Las búsquedas usan el índice que haya en ese momento, sin bloqueos. Al refrescar se construye un índice nuevo
+ * desde la base de datos y se sustituye de una vez, por lo que una búsqueda ve la carga anterior o la nueva
+ * entera, nunca una mezcla.
+ *
+ * Con refrescarCada se comprueba periódicamente la generación de la última carga terminada (GeneracionCarga),
+ * y el índice se reconstruye cuando es distinta de la del índice actual.
+ */
+@Slf4j
+public class BuscadorEstaciones implements AutoCloseable {
+
+    private final String host;
+    private final String database;
+    private final AtomicReference<IndiceEstaciones> indice = new AtomicReference<>();
+
+    private ScheduledExecutorService refresco;
+    // Generación de la carga del índice actual
+    private long generacionIndice;
+
+    /**
+     * Construye el primer índice
+     * @param host
+     * @param database
+     * @throws SQLException
+     */
+    public BuscadorEstaciones(String host, String database) throws SQLException {
+        this.host = host;
+        this.database = database;
+        refrescar();
+    }
+
+    /**
+     * @return Índice de la última carga terminada
+     */
+    public IndiceEstaciones getIndice() {
+        return indice.get();
+    }
+
+    /**
+     * @see IndiceEstaciones#masEconomica(String, int, int, double)
+     */
+    public IndiceEstaciones.Resultado masEconomica(String carburante, int latitud, int longitud, double radioKm) {
+        return indice.get().masEconomica(carburante, latitud, longitud, radioKm);
+    }
+
+    /**
+     * @see IndiceEstaciones#masCercanas(String, int, int, int)
+     */
+    public List<IndiceEstaciones.Resultado> masCercanas(String carburante, int latitud, int longitud, int cantidad) {
+        return indice.get().masCercanas(carburante, latitud, longitud, cantidad);
+    }
+
+    /**
+     * Construye un índice nuevo desde la base de datos y sustituye al actual
+     * @throws SQLException
+     */
+    public synchronized void refrescar() throws SQLException {
+        try (Connection connection = new MySqlConnector(host, database).getConnection()) {
+            // La generación y el índice se leen en la misma transacción, sobre la misma foto de las tablas
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setAutoCommit(false);
+            long inicio = System.nanoTime();
+            long generacion = GeneracionCarga.leer(connection);
+            IndiceEstaciones nuevo = IndiceEstaciones.cargar(connection);
+            connection.commit();
+
+            indice.set(nuevo);
+            generacionIndice = generacion;
+            log.info("Índice de estaciones de la generación {} cargado en {} ms: {} estaciones, {} precios", generacion,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), nuevo.getEstaciones(), nuevo.getPrecios());
+        }
+    }
+
+    /**
+     * Refresca el índice si ha terminado otra carga desde que se construyó
+     * @return Si se ha refrescado
+     * @throws SQLException
+     */
+    public synchronized boolean refrescarSiHaTerminadoCarga() throws SQLException {
+        long generacion;
+        try (Connection connection = new MySqlConnector(host, database).getConnection()) {
+            generacion = GeneracionCarga.leer(connection);
+        }
+
+        if (generacion == generacionIndice) {
+            return false;
+        }
+        refrescar();
+        return true;
+    }
+
+    /**
+     * Comprueba periódicamente en segundo plano si ha terminado una carga
+     * @param segundos - Intervalo entre comprobaciones
+     */
+    public synchronized void refrescarCada(long segundos) {
+        if (refresco != null) {
+            refresco.shutdownNow();
+        }
+        refresco = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "refresco-indice-estaciones");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        refresco.scheduleWithFixedDelay(() -> {
+            try {
+                refrescarSiHaTerminadoCarga();
+            } catch (Exception e) {
+                // Se sigue usando el índice actual y se vuelve a intentar en la siguiente comprobación
+                log.error("Error al refrescar el índice de estaciones", e);
+            }
+        }, segundos, segundos, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (refresco != null) {
+            refresco.shutdownNow();
+            refresco = null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.unir.app.read;
+
+import com.unir.app.write.GeneracionCarga;
+import com.unir.config.SentenciasPreparadas;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultados de las consultas guardados en memoria por SQL y parámetros, para las consultas cuyo resultado
+ * solo cambia con una carga nueva.
+ *
+ * Cada resultado se guarda con la generación de la carga con la que se ha calculado (GeneracionCarga). Antes de
+ * devolver un resultado guardado se comprueba la generación actual y, si ha terminado otra carga, se vacía la caché,
+ * por lo que nunca se devuelven datos anteriores a la última carga. La comprobación es una consulta por clave
+ * primaria; con CACHE_COMPROBACION_MS se hace como mucho una vez en ese intervalo, a cambio de devolver datos de la
+ * carga anterior durante ese tiempo.
+ *
+ * Guarda como mucho CACHE_CONSULTAS resultados (por defecto 1000) y, al llenarse, descarta el que hace más tiempo
+ * que no se usa. Es segura para varios hilos, cada uno con sus propias SentenciasPreparadas.
+ */
+@Slf4j
+public class CacheConsultas {
+
+    private static final int CAPACIDAD_POR_DEFECTO = 1000;
+
+    private final long intervaloComprobacionNanos;
+    private final LinkedHashMap<Clave, List<Map<String, String>>> resultados;
+
+    // Generación de los resultados guardados y momento de la última comprobación
+    private long generacion = -1;
+    private long ultimaComprobacion;
+    private long aciertos;
+    private long fallos;
+
+    /**
+     * @param capacidad - Número máximo de resultados guardados
+     * @param intervaloComprobacionMs - Tiempo máximo sin comprobar la generación, 0 para comprobarla en cada consulta
+     */
+    public CacheConsultas(int capacidad, long intervaloComprobacionMs) {
+        this.intervaloComprobacionNanos = intervaloComprobacionMs * 1_000_000;
+        // En orden de acceso: el primero es el que hace más tiempo que no se usa
+        this.resultados = new LinkedHashMap<Clave, List<Map<String, String>>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Clave, List<Map<String, String>>> masAntiguo) {
+                return size() > capacidad;
+            }
+        };
+    }
+
+    /**
+     * @return Caché con la capacidad de la variable de entorno CACHE_CONSULTAS y el intervalo de CACHE_COMPROBACION_MS
+     */
+    public static CacheConsultas desdeEntorno() {
+        String capacidad = System.getenv("CACHE_CONSULTAS");
+        String intervalo = System.getenv("CACHE_COMPROBACION_MS");
+        return new CacheConsultas(
+                capacidad == null || capacidad.isEmpty() ? CAPACIDAD_POR_DEFECTO : Integer.parseInt(capacidad),
+                intervalo == null || intervalo.isEmpty() ? 0 : Long.parseLong(intervalo));
+    }
+
+    /**
+     * Devuelve el resultado guardado de la consulta o, si no está, la ejecuta y lo guarda
+     * @param sentencias - Sentencias preparadas de la conexión con la que se consulta
+     * @param sql
+     * @param parametros - Parámetros de la consulta, en orden
+     * @return Filas de la consulta, con el valor de cada columna como texto por su etiqueta
+     * @throws SQLException
+     */
+    public List<Map<String, String>> consultar(SentenciasPreparadas sentencias, String sql, Object... parametros) throws SQLException {
+        Clave clave = new Clave(sql, parametros);
+        long generacionConsulta = comprobarGeneracion(sentencias);
+
+        synchronized (this) {
+            List<Map<String, String>> filas = resultados.get(clave);
+            if (filas != null) {
+                aciertos++;
+                return filas;
+            }
+            fallos++;
+        }
+
+        // La consulta se ejecuta fuera del bloqueo; si otro hilo la ejecuta a la vez se guarda el mismo resultado
+        List<Map<String, String>> filas = ejecutar(sentencias, sql, parametros);
+        synchronized (this) {
+            // Si mientras tanto ha terminado otra carga el resultado puede ser de la anterior y no se guarda
+            if (generacion == generacionConsulta) {
+                resultados.put(clave, filas);
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Descarta todos los resultados guardados
+     */
+    public synchronized void vaciar() {
+        resultados.clear();
+        generacion = -1;
+    }
+
+    /**
+     * @return Número de consultas respondidas con un resultado guardado
+     */
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    /**
+     * @return Número de consultas ejecutadas en la base de datos
+     */
+    public synchronized long getFallos() {
+        return fallos;
+    }
+
+    /**
+     * Lee la generación actual si ha pasado el intervalo y vacía la caché si ha cambiado
+     * @return Generación con la que se consulta
+     */
+    private long comprobarGeneracion(SentenciasPreparadas sentencias) throws SQLException {
+        synchronized (this) {
+            if (generacion >= 0 && System.nanoTime() - ultimaComprobacion < intervaloComprobacionNanos) {
+                return generacion;
+            }
+        }
+
+        long actual = GeneracionCarga.leer(sentencias.preparar(GeneracionCarga.ULTIMA_CARGA));
+        synchronized (this) {
+            ultimaComprobacion = System.nanoTime();
+            if (actual != generacion) {
+                if (generacion >= 0) {
+                    log.info("Nueva carga (generación {}), se descartan {} resultados guardados", actual, resultados.size());
+                }
+                resultados.clear();
+                generacion = actual;
+            }
+            return actual;
+        }
+    }
+
+    private static List<Map<String, String>> ejecutar(SentenciasPreparadas sentencias, String sql, Object... parametros) throws SQLException {
+        PreparedStatement select = sentencias.preparar(sql);
+        for (int i = 0; i < parametros.length; i++) {
+            select.setObject(i + 1, parametros[i]);
+        }
+
+        List<Map<String, String>> filas = new ArrayList<>();
+        try (ResultSet resultSet = select.executeQuery()) {
+            ResultSetMetaData columnas = resultSet.getMetaData();
+            while (resultSet.next()) {
+                Map<String, String> fila = new LinkedHashMap<>();
+                for (int columna = 1; columna <= columnas.getColumnCount(); columna++) {
+                    fila.put(columnas.getColumnLabel(columna), resultSet.getString(columna));
+                }
+                filas.add(Collections.unmodifiableMap(fila));
+            }
+        }
+        return Collections.unmodifiableList(filas);
+    }
+
+    /**
+     * SQL y parámetros de una consulta
+     */
+    private static final class Clave {
+        private final String sql;
+        private final Object[] parametros;
+
+        private Clave(String sql, Object[] parametros) {
+            this.sql = sql;
+            this.parametros = parametros.clone();
+        }
+
+        @Override
+        public boolean equals(Object otro) {
+            if (!(otro instanceof Clave)) {
+                return false;
+            }
+            Clave clave = (Clave) otro;
+            return sql.equals(clave.sql) && Arrays.equals(parametros, clave.parametros);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + Arrays.hashCode(parametros);
+        }
+    }
+}
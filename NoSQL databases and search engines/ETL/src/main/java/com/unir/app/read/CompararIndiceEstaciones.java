@@ -0,0 +1,174 @@
+package com.unir.app.read;
+
+import com.unir.config.MySqlConnector;
+import com.unir.config.SentenciasPreparadas;
+import com.unir.models.Coordenada;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Comprueba que IndiceEstaciones devuelve la misma estación que la consulta ESTACION_MAS_ECONOMICA_POR_DISTANCIA
+ * de ConsultarPrecios para varios orígenes, carburantes y distancias, y compara el tiempo de las dos búsquedas.
+ *
+ * La consulta SQL no ordena las estaciones con el mismo precio, por lo que si devuelve otra estación que el índice
+ * se da por buena cuando tiene el mismo precio y está entre las que el índice encuentra en el radio.
+ */
+@Slf4j
+public class CompararIndiceEstaciones {
+    private static final String DATABASE = "laboratorio01";
+    private static final int REPETICIONES_INDICE = 1000;
+    // Diferencia de distancia admitida entre el cálculo de MySQL y el de Java, en km
+    private static final double TOLERANCIA_KM = 1e-9;
+
+    private static final String[] CARBURANTES = {"Gasóleo A", "Gasolina 95 E5", "Gasolina 98 E5", "Gasóleo Premium", "Gases licuados del petróleo"};
+    private static final int[] DISTANCIAS = {5, 10, 25, 50};
+    private static final double[][] ORIGENES = {
+            {38.994349, -1.858542},     // Albacete
+            {40.416775, -3.703790},     // Madrid
+            {41.385064, 2.173403},      // Barcelona
+            {37.389092, -5.984459},     // Sevilla
+            {39.469907, -0.376288},     // Valencia
+            {43.263013, -2.934985},     // Bilbao
+            {28.463629, -16.251846}     // Santa Cruz de Tenerife
+    };
+
+    public static void main(String[] args) {
+        try (Connection connection = new MySqlConnector("localhost", DATABASE, SentenciasPreparadas.PROPIEDADES_CONEXION).getConnection()) {
+            long inicio = System.nanoTime();
+            IndiceEstaciones indice = IndiceEstaciones.cargar(connection);
+            log.info("Índice cargado en {} ms: {} estaciones, {} precios",
+                    (System.nanoTime() - inicio) / 1_000_000, indice.getEstaciones(), indice.getPrecios());
+
+            int casos = 0;
+            int empates = 0;
+            int diferencias = 0;
+            long nanosSql = 0;
+            long nanosIndice = 0;
+
+            try (PreparedStatement select = connection.prepareStatement(ConsultarPrecios.ESTACION_MAS_ECONOMICA_POR_DISTANCIA)) {
+                for (double[] origen : ORIGENES) {
+                    int latitud = Coordenada.deGrados(origen[0]);
+                    int longitud = Coordenada.deGrados(origen[1]);
+
+                    for (String carburante : CARBURANTES) {
+                        for (int distancia : DISTANCIAS) {
+                            casos++;
+
+                            long antes = System.nanoTime();
+                            ConsultarPrecios.asignarParametrosDistancia(select, latitud, longitud, carburante, distancia);
+                            FilaSql sql = leerFila(select);
+                            nanosSql += System.nanoTime() - antes;
+
+                            antes = System.nanoTime();
+                            IndiceEstaciones.Resultado resultado = null;
+                            for (int i = 0; i < REPETICIONES_INDICE; i++) {
+                                resultado = indice.masEconomica(carburante, latitud, longitud, distancia);
+                            }
+                            nanosIndice += (System.nanoTime() - antes) / REPETICIONES_INDICE;
+
+                            Comparacion comparacion = comparar(sql, resultado, indice, carburante, latitud, longitud, distancia);
+                            if (comparacion == Comparacion.EMPATE) {
+                                empates++;
+                            } else if (comparacion == Comparacion.DISTINTA) {
+                                diferencias++;
+                                log.warn("Diferencia en {} a {} km de [{}, {}]: SQL {} / índice {}", carburante, distancia,
+                                        origen[0], origen[1], sql, describir(resultado));
+                            }
+                        }
+                    }
+                }
+            }
+
+            log.info("------------------------------------------------------------------------------");
+            log.info("{} búsquedas, {} iguales, {} empates de precio, {} diferencias", casos, casos - empates - diferencias, empates, diferencias);
+            log.info("Tiempo medio SQL: {} µs, índice: {} µs", nanosSql / casos / 1_000, nanosIndice / casos / 1_000.0);
+        } catch (Exception e) {
+            log.error("Error al tratar con la base de datos", e);
+        }
+    }
+
+    private enum Comparacion { IGUAL, EMPATE, DISTINTA }
+
+    private static Comparacion comparar(FilaSql sql, IndiceEstaciones.Resultado resultado, IndiceEstaciones indice,
+                                        String carburante, int latitud, int longitud, int distancia) {
+        if (sql == null || resultado == null) {
+            return sql == null && resultado == null ? Comparacion.IGUAL : Comparacion.DISTINTA;
+        }
+        if (sql.precio != resultado.getPrecio()) {
+            return Comparacion.DISTINTA;
+        }
+        if (sql.esEstacion(resultado)) {
+            return Math.abs(sql.distancia - resultado.getDistancia()) <= TOLERANCIA_KM ? Comparacion.IGUAL : Comparacion.DISTINTA;
+        }
+
+        List<IndiceEstaciones.Resultado> enRadio = indice.enRadio(carburante, latitud, longitud, distancia);
+        for (IndiceEstaciones.Resultado otro : enRadio) {
+            if (otro.getPrecio() == sql.precio && sql.esEstacion(otro)) {
+                return Comparacion.EMPATE;
+            }
+        }
+        return Comparacion.DISTINTA;
+    }
+
+    private static FilaSql leerFila(PreparedStatement select) throws SQLException {
+        try (ResultSet fila = select.executeQuery()) {
+            if (!fila.next()) {
+                return null;
+            }
+            return new FilaSql(Coordenada.deDecimal(fila.getBigDecimal("latitud")), Coordenada.deDecimal(fila.getBigDecimal("longitud")),
+                    fila.getString("direccion"), fila.getString("empresa"), fila.getString("margen"),
+                    fila.getDouble("precio"), fila.getDouble("distancia"));
+        }
+    }
+
+    private static String describir(IndiceEstaciones.Resultado resultado) {
+        if (resultado == null) {
+            return "ninguna";
+        }
+        IndiceEstaciones.FichaEstacion estacion = resultado.getEstacion();
+        return "[" + Coordenada.texto(estacion.getLatitud()) + ", " + Coordenada.texto(estacion.getLongitud()) + "] "
+                + estacion.getDireccion() + " " + estacion.getEmpresa() + " " + estacion.getMargen() + " " + resultado.getPrecio() + " € a " + resultado.getDistancia() + " km";
+    }
+
+    /**
+     * Estación que devuelve la consulta SQL
+     */
+    private static class FilaSql {
+        private final int latitud;
+        private final int longitud;
+        private final String direccion;
+        private final String empresa;
+        private final String margen;
+        private final double precio;
+        private final double distancia;
+
+        private FilaSql(int latitud, int longitud, String direccion, String empresa, String margen, double precio, double distancia) {
+            this.latitud = latitud;
+            this.longitud = longitud;
+            this.direccion = direccion;
+            this.empresa = empresa;
+            this.margen = margen;
+            this.precio = precio;
+            this.distancia = distancia;
+        }
+
+        // Hay estaciones distintas con la misma dirección y coordenadas, que se distinguen por la empresa o el margen
+        private boolean esEstacion(IndiceEstaciones.Resultado resultado) {
+            IndiceEstaciones.FichaEstacion estacion = resultado.getEstacion();
+            return estacion.getLatitud() == latitud && estacion.getLongitud() == longitud && Objects.equals(estacion.getDireccion(), direccion)
+                    && Objects.equals(estacion.getEmpresa(), empresa) && Objects.equals(estacion.getMargen(), margen);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + Coordenada.texto(latitud) + ", " + Coordenada.texto(longitud) + "] " + direccion + " " + empresa + " " + margen
+                    + " " + precio + " € a " + distancia + " km";
+        }
+    }
+}
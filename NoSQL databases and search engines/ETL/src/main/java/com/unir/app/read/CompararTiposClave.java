@@ -0,0 +1,139 @@
+package com.unir.app.read;
+
+import com.unir.config.MySqlConnector;
+import com.unir.config.SentenciasPreparadas;
+import com.unir.models.Coordenada;
+import com.unir.types.TipoEstacion;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.*;
+import java.util.Arrays;
+
+/**
+ * Compara las consultas de ConsultarPrecios sobre las claves varchar(36) y binary(16).
+ * Por defecto compara el esquema de respaldo que deja MigrarClavesBinarias (claves en texto) con laboratorio01
+ * (claves binarias); también se pueden indicar los dos esquemas como argumentos.
+ *
+ * De cada esquema muestra el tamaño de datos e índices de cada tabla y el tiempo de las cinco consultas:
+ * se ejecutan varias veces sin medir para que las páginas estén en el buffer pool y después se muestra
+ * la mediana y el mínimo de las repeticiones, por lo que se mide el coste de los joins y no el del disco.
+ */
+@Slf4j
+public class CompararTiposClave {
+    private static final String ESQUEMA_TEXTO = "laboratorio01_uuid";
+    private static final String ESQUEMA_BINARIO = "laboratorio01";
+    private static final int CALENTAMIENTO = 3;
+    private static final int REPETICIONES = 20;
+
+    // Las cinco consultas de ConsultarPrecios con los mismos parámetros
+    private static final Consulta[] CONSULTAS = {
+            new Consulta("Empresa con más estaciones terrestres", ConsultarPrecios.EMPRESA_CON_MAS_ESTACIONES,
+                    select -> select.setString(1, TipoEstacion.Terrestre.toString())),
+            new Consulta("Empresa con más estaciones marítimas", ConsultarPrecios.EMPRESA_CON_MAS_ESTACIONES,
+                    select -> select.setString(1, TipoEstacion.Maritima.toString())),
+            new Consulta("Gasolina 95 E5 más económica en Madrid", ConsultarPrecios.CARBURANTE_MAS_ECONOMICO, select -> {
+                select.setString(1, "Madrid");
+                select.setString(2, "Gasolina 95 E5");
+            }),
+            new Consulta("Provincia con la estación marítima más cara", ConsultarPrecios.PROVINCIA_CON_ESTACION_MAS_CARA, select -> {
+                select.setString(1, TipoEstacion.Maritima.toString());
+                select.setString(2, "Gasolina 95 E5");
+            }),
+            new Consulta("Gasóleo A más económico a 10 km de Albacete", ConsultarPrecios.ESTACION_MAS_ECONOMICA_POR_DISTANCIA,
+                    select -> ConsultarPrecios.asignarParametrosDistancia(select,
+                            Coordenada.deGrados(38.994349), Coordenada.deGrados(-1.858542), "Gasóleo A", 10))
+    };
+
+    public static void main(String[] args) {
+        String[] esquemas = args.length == 2 ? args : new String[]{ESQUEMA_TEXTO, ESQUEMA_BINARIO};
+
+        for (String esquema : esquemas) {
+            try (Connection connection = new MySqlConnector("localhost", esquema, SentenciasPreparadas.PROPIEDADES_CONEXION).getConnection()) {
+                log.info("------------------------------------------------------------------------------");
+                log.info("Esquema {}", esquema);
+
+                mostrarTamanos(connection, esquema);
+                for (Consulta consulta : CONSULTAS) {
+                    medir(connection, consulta);
+                }
+            } catch (Exception e) {
+                log.error("Error al tratar con la base de datos {}", esquema, e);
+            }
+        }
+    }
+
+    /**
+     * Muestra el tamaño de datos e índices de cada tabla con las estadísticas recién calculadas
+     * @param connection
+     * @param esquema
+     * @throws SQLException
+     */
+    private static void mostrarTamanos(Connection connection, String esquema) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET SESSION information_schema_stats_expiry = 0");
+            statement.execute("ANALYZE TABLE provincias, municipios, localidades, carburantes, rotulos, tipo_ventas, estaciones, precios");
+        }
+
+        try (PreparedStatement select = connection.prepareStatement("SELECT TABLE_NAME, DATA_LENGTH, INDEX_LENGTH "
+                + "FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? ORDER BY TABLE_NAME")) {
+            select.setString(1, esquema);
+
+            long datos = 0;
+            long indices = 0;
+            try (ResultSet tablas = select.executeQuery()) {
+                while (tablas.next()) {
+                    datos += tablas.getLong(2);
+                    indices += tablas.getLong(3);
+                    log.info("  - {}: datos {} KB, índices {} KB", tablas.getString(1), tablas.getLong(2) / 1024, tablas.getLong(3) / 1024);
+                }
+            }
+            log.info("Total: datos {} KB, índices {} KB", datos / 1024, indices / 1024);
+        }
+    }
+
+    /**
+     * Ejecuta la consulta leyendo todas sus filas y muestra la mediana y el mínimo en milisegundos
+     * @param connection
+     * @param consulta
+     * @throws SQLException
+     */
+    private static void medir(Connection connection, Consulta consulta) throws SQLException {
+        double[] tiempos = new double[REPETICIONES];
+
+        try (PreparedStatement select = connection.prepareStatement(consulta.sql)) {
+            consulta.parametros.asignar(select);
+
+            for (int i = -CALENTAMIENTO; i < REPETICIONES; i++) {
+                long inicio = System.nanoTime();
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        // Solo se recorren las filas
+                    }
+                }
+                if (i >= 0) {
+                    tiempos[i] = (System.nanoTime() - inicio) / 1_000_000.0;
+                }
+            }
+        }
+
+        Arrays.sort(tiempos);
+        log.info("{}: mediana {} ms, mínimo {} ms", consulta.nombre,
+                String.format("%.2f", tiempos[REPETICIONES / 2]), String.format("%.2f", tiempos[0]));
+    }
+
+    private interface Parametros {
+        void asignar(PreparedStatement select) throws SQLException;
+    }
+
+    private static class Consulta {
+        private final String nombre;
+        private final String sql;
+        private final Parametros parametros;
+
+        private Consulta(String nombre, String sql, Parametros parametros) {
+            this.nombre = nombre;
+            this.sql = sql;
+            this.parametros = parametros;
+        }
+    }
+}
@@ -1,15 +1,89 @@
 package com.unir.app.read;
 
 import com.unir.config.MySqlConnector;
+import com.unir.config.SentenciasPreparadas;
+import com.unir.models.Coordenada;
 import com.unir.types.TipoEstacion;
 import lombok.extern.slf4j.Slf4j;
 
 import java.math.BigDecimal;
 import java.sql.*;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 public class ConsultarPrecios {
     private static final String DATABASE = "laboratorio01";
+
+    // Resultados de las consultas que solo cambian con una carga nueva, compartidos por todas las conexiones
+    private static final CacheConsultas CACHE = CacheConsultas.desdeEntorno();
+
+    // Consultas de la aplicación, también las usa CompararTiposClave
+    // Empresa con más estaciones de servicio de un tipo
+    static final String EMPRESA_CON_MAS_ESTACIONES =
+            "select count(*) as total, rotulos.nombre as empresa from estaciones\n" +
+            "inner  join rotulos on estaciones.rotulo_id = rotulos.id\n" +
+            "where tipoestacion = ? \n" +
+            "group by empresa\n" +
+            "order by total desc\n" +
+            "limit 1;";
+
+    // Estación con el precio más bajo de un carburante en una provincia. Se lee del resumen de precios que mantiene
+    // RegistrarPrecios, una fila por tipo de estación, en lugar de ordenar todos los precios de la provincia
+    static final String CARBURANTE_MAS_ECONOMICO =
+            "select longitud, latitud, direccion, codigopostal, rotulos.nombre as empresa, margen, resumen_precios.minimo as precio, " +
+            "carburantes.nombre as carburante, provincias.nombre as provincia, municipios.nombre as municipio, localidades.nombre as localidad " +
+            "from resumen_precios\n" +
+            "inner join provincias on resumen_precios.provincia_id = provincias.id\n" +
+            "inner join carburantes on resumen_precios.carburante_id = carburantes.id\n" +
+            "inner join estaciones on resumen_precios.estacion_minimo_id = estaciones.id\n" +
+            "inner join rotulos on estaciones.rotulo_id = rotulos.id\n" +
+            "inner join localidades on estaciones.localidad_id = localidades.id\n" +
+            "inner join municipios on localidades.municipio_id = municipios.id\n" +
+            "where provincias.nombre = ? and carburantes.nombre like ?\n" +
+            "order by resumen_precios.minimo\n" +
+            "limit 1";
+
+    // Provincia de la estación de un tipo con el precio más caro de un carburante, del resumen de precios
+    static final String PROVINCIA_CON_ESTACION_MAS_CARA =
+            "select provincias.nombre, resumen_precios.maximo as precio from resumen_precios\n" +
+            "inner join provincias on resumen_precios.provincia_id = provincias.id\n" +
+            "inner join carburantes on resumen_precios.carburante_id = carburantes.id\n" +
+            "where resumen_precios.tipoestacion = ?\n" +
+            "and carburantes.nombre = ?\n" +
+            "order by resumen_precios.maximo desc\n" +
+            "limit 1";
+
+    // Estación con el precio más bajo de un carburante a una distancia máxima de un punto (fórmula Haversine).
+    // MBRContains descarta con el índice SPATIAL de la ubicación las estaciones fuera del rectángulo que contiene
+    // el círculo, y la distancia exacta solo se calcula, una vez, para las que quedan dentro
+    static final String ESTACION_MAS_ECONOMICA_POR_DISTANCIA =
+            "SELECT  latitud, longitud, provincias.nombre as provincia, " +
+            "municipios.nombre as municipio, localidades.nombre as localidad,\n" +
+            "codigopostal,\n" +
+            "direccion, rotulos.nombre as empresa, margen as margen,\n" +
+            "carburantes.nombre as carburante,\n" +
+            "precios.precio,\n" +
+            "6371 * 2 * ASIN(\n" +
+            "    SQRT(\n" +
+            "    POW(SIN(RADIANS((latitud - ?) / 2)), 2) +\n" +
+            "    COS(RADIANS(?)) * COS(RADIANS(latitud)) *\n" +
+            "    POW(SIN(RADIANS((longitud - ?) / 2)), 2)\n" +
+            "    )\n" +
+            ") as distancia\n" +
+            "FROM estaciones\n" +
+            "inner join rotulos on estaciones.rotulo_id = rotulos.id\n" +
+            "inner join localidades on estaciones.localidad_id = localidades.id\n" +
+            "inner join municipios on localidades.municipio_id = municipios.id\n" +
+            "inner join provincias on municipios.provincia_id = provincias.id\n" +
+            "inner join precios on estaciones.id = precios.estacion_id\n" +
+            "inner join carburantes on precios.carburante_id = carburantes.id\n" +
+            "WHERE MBRContains(ST_GeomFromText(?, " + Coordenada.SRID + "), estaciones.ubicacion)\n" +
+            "AND carburantes.nombre = ?\n" +
+            "HAVING distancia <= ? \n" +
+            "order by precio\n" +
+            "limit 1";
+
     /**
      * Método principal de la aplicación
      *  Nombre de la empresa con más estaciones de servicio terrestres.
@@ -21,24 +95,26 @@ public class ConsultarPrecios {
      */
     public static void main(String[] args) {
         //Creamos conexión. No es necesario indicar puerto en host si usamos el default, 1521
-        //Try-with-resources. Se cierra la conexión automáticamente al salir del bloque try
-        try(Connection connection = new MySqlConnector("localhost", DATABASE).getConnection()) {
+        //Try-with-resources. Se cierran las sentencias y la conexión automáticamente al salir del bloque try
+        //Las sentencias se preparan una vez por conexión, en el servidor, y se reutilizan en cada llamada
+        try(Connection connection = new MySqlConnector("localhost", DATABASE, SentenciasPreparadas.PROPIEDADES_CONEXION).getConnection();
+            SentenciasPreparadas sentencias = new SentenciasPreparadas(connection)) {
 
             // Empresa con más estaciones de servicio terrestres
-            getEmpresaConMasEstaciones(connection, TipoEstacion.Terrestre);
+            getEmpresaConMasEstaciones(sentencias, TipoEstacion.Terrestre);
 
             // Empresa con más estaciones de servicio marítimas
-            getEmpresaConMasEstaciones(connection, TipoEstacion.Maritima);
+            getEmpresaConMasEstaciones(sentencias, TipoEstacion.Maritima);
 
             // Localización, nombre de empresa, y margen de la estación con el precio más bajo para el combustible “Gasolina 95 E5” en la Comunidad de Madrid.
-            getEmpresaConCarburanteMasEconomico(connection, "Gasolina 95 E5", "Madrid");
+            getEmpresaConCarburanteMasEconomico(sentencias, "Gasolina 95 E5", "Madrid");
 
             // Provincia en la que se encuentre la estación de servicio marítima con el combustible “Gasolina 95 E5” más caro.
-            getProvinciaConEstacionMasCara(connection, TipoEstacion.Maritima, "Gasolina 95 E5");
+            getProvinciaConEstacionMasCara(sentencias, TipoEstacion.Maritima, "Gasolina 95 E5");
 
             // Localización, nombre de empresa, y margen de la estación con el precio más bajo para el combustible “Gasóleo A” si resido en el centro de Albacete y no quiero desplazarme más de 10 KM.
             // El centro de Albacete se encuentra en la ubicación [38.994349, -1.858542]
-            getEstacionMasEconomicaSegunPuntoOrigenConDistanciaMaxima(connection,  BigDecimal.valueOf(38.994349), BigDecimal.valueOf(-1.858542), "Gasóleo A", 10);
+            getEstacionMasEconomicaSegunPuntoOrigenConDistanciaMaxima(sentencias, Coordenada.deGrados(38.994349), Coordenada.deGrados(-1.858542), "Gasóleo A", 10);
 
         } catch (Exception e) {
             log.error("Error al tratar con la base de datos", e);
@@ -47,113 +123,70 @@ public class ConsultarPrecios {
 
     /**
      * Empresa con más estaciones de servicio
-     * @param connection
+     * @param sentencias - Sentencias preparadas de la conexión
      * @param tipoEstacion
      * @throws SQLException
      */
-    private static void getEmpresaConMasEstaciones(Connection connection, TipoEstacion tipoEstacion) throws SQLException {
-        PreparedStatement select = connection.prepareStatement("select count(*) as total, rotulos.nombre as empresa from estaciones\n" +
-                "inner  join rotulos on estaciones.rotulo_id = rotulos.id\n" +
-                "where tipoestacion = ? \n" +
-                "group by empresa\n" +
-                "order by total desc\n" +
-                "limit 1;");
-
-        select.setString(1, tipoEstacion.toString());
-
-        ResultSet empresas = select.executeQuery();
+    private static void getEmpresaConMasEstaciones(SentenciasPreparadas sentencias, TipoEstacion tipoEstacion) throws SQLException {
+        List<Map<String, String>> empresas = CACHE.consultar(sentencias, EMPRESA_CON_MAS_ESTACIONES, tipoEstacion.toString());
 
-        while (empresas.next()) {
+        for (Map<String, String> empresa : empresas) {
             log.info("------------------------------------------------------------------------------");
-            log.info("Empresa con más estaciones de servicio {}: {}",tipoEstacion, empresas.getString("empresa"));
+            log.info("Empresa con más estaciones de servicio {}: {}",tipoEstacion, empresa.get("empresa"));
         }
     }
 
     /**
      * Localización, nombre de empresa, y margen de la estación con el precio más bajo para un combustible dado y una provincia dada.
-     * @param connection
+     * @param sentencias - Sentencias preparadas de la conexión
      * @param carburante
      * @param provincia
      * @throws SQLException
      */
-    private static void getEmpresaConCarburanteMasEconomico(Connection connection, String carburante, String provincia) throws SQLException {
-        PreparedStatement select = connection.prepareStatement(
-            "select longitud, latitud, direccion, codigopostal, rotulos.nombre as empresa, margen, precio, " +
-                "carburantes.nombre as carburante, provincias.nombre as provincia, municipios.nombre as municipio, localidades.nombre as localidad " +
-                "from estaciones\n" +
-                "inner join rotulos on estaciones.rotulo_id = rotulos.id\n" +
-                "inner join precios on estaciones.id = precios.estacion_id\n" +
-                "inner join localidades on estaciones.localidad_id = localidades.id\n" +
-                "inner join municipios on localidades.municipio_id = municipios.id\n" +
-                "inner join provincias on municipios.provincia_id = provincias.id\n" +
-                "inner join carburantes on precios.carburante_id = carburantes.id\n" +
-                "where provincias.nombre = ? and carburantes.nombre like ?\n" +
-                    "order by precio\n" +
-                    "limit 1");
+    private static void getEmpresaConCarburanteMasEconomico(SentenciasPreparadas sentencias, String carburante, String provincia) throws SQLException {
+        List<Map<String, String>> empresas = CACHE.consultar(sentencias, CARBURANTE_MAS_ECONOMICO, provincia, carburante);
 
-        select.setString(1, provincia);
-        select.setString(2, carburante);
-
-
-        ResultSet empresas = select.executeQuery();
-
-        while (empresas.next()) {
+        for (Map<String, String> empresa : empresas) {
 
             log.info("------------------------------------------------------------------------------");
             log.info("Estos son los datos de la empresa con el carburante más económico del carburante {} y de la provincia {}:", carburante, provincia);
-            log.info("  - Latitud: {}", empresas.getString("latitud"));
-            log.info("  - Longitud: {}", empresas.getString("longitud"));
-            log.info("  - Provincia: {}", empresas.getString("provincia"));
-            log.info("  - Municipio: {}", empresas.getString("municipio"));
-            log.info("  - Localidad: {}", empresas.getString("localidad"));
-            log.info("  - Dirección: {}", empresas.getString("direccion"));
-            log.info("  - Código postal: {}", empresas.getString("codigopostal"));
-            log.info("  - Margen: {}", empresas.getString("margen"));
-            log.info("  - Empresa: {}", empresas.getString("empresa"));
-            log.info("  - Precio: {}", empresas.getString("precio"));
+            log.info("  - Latitud: {}", empresa.get("latitud"));
+            log.info("  - Longitud: {}", empresa.get("longitud"));
+            log.info("  - Provincia: {}", empresa.get("provincia"));
+            log.info("  - Municipio: {}", empresa.get("municipio"));
+            log.info("  - Localidad: {}", empresa.get("localidad"));
+            log.info("  - Dirección: {}", empresa.get("direccion"));
+            log.info("  - Código postal: {}", empresa.get("codigopostal"));
+            log.info("  - Margen: {}", empresa.get("margen"));
+            log.info("  - Empresa: {}", empresa.get("empresa"));
+            log.info("  - Precio: {}", empresa.get("precio"));
 
         }
     }
 
     /**
      * Provincia en la que se encuentre la estación de servicio más caro.
-     * @param connection
+     * @param sentencias - Sentencias preparadas de la conexión
      * @param tipoEstacion
      * @param carburante
      * @throws SQLException
      */
-    private static void getProvinciaConEstacionMasCara(Connection connection, TipoEstacion tipoEstacion, String carburante) throws SQLException {
-        PreparedStatement select = connection.prepareStatement(
-            "select provincias.nombre, precio from provincias\n" +
-                "inner join municipios on provincias.id = municipios.provincia_id\n" +
-                "inner join localidades on municipios.id = localidades.municipio_id\n" +
-                "inner join estaciones on localidades.id = estaciones.localidad_id\n" +
-                "inner join precios on estaciones.id = precios.estacion_id\n" +
-                "inner join carburantes on precios.carburante_id = carburantes.id\n" +
-                "where estaciones.tipoestacion = ?\n" +
-                "and carburantes.nombre = ?\n" +
-                "order by precio desc\n" +
-                "limit 1");
-
-        select.setString(1, tipoEstacion.toString());
-        select.setString(2, carburante);
-
+    private static void getProvinciaConEstacionMasCara(SentenciasPreparadas sentencias, TipoEstacion tipoEstacion, String carburante) throws SQLException {
+        List<Map<String, String>> provincias = CACHE.consultar(sentencias, PROVINCIA_CON_ESTACION_MAS_CARA, tipoEstacion.toString(), carburante);
 
-        ResultSet empresas = select.executeQuery();
-
-        while (empresas.next()) {
+        for (Map<String, String> provincia : provincias) {
 
             log.info("------------------------------------------------------------------------------");
             log.info("La provincia con el precio más caro del carburante {} y del tipo de estación {}",
                     carburante, tipoEstacion);
             log.info("Estos son los datos:");
-            log.info("  - Provincia: {}", empresas.getString("nombre"));
-            log.info("  - Precio: {}", empresas.getString("precio"));
+            log.info("  - Provincia: {}", provincia.get("nombre"));
+            log.info("  - Precio: {}", provincia.get("precio"));
 
         }
     }
     // Localización, nombre de empresa, y margen de la estación con el precio más bajo para el combustible “Gasóleo A” si resido en el centro de Albacete y no quiero desplazarme más de 10 KM.
-    private static void getEstacionMasEconomicaSegunPuntoOrigenConDistanciaMaxima(Connection connection, BigDecimal latitud, BigDecimal longitud, String carburante, int distanciaMaxima) throws SQLException {
+    private static void getEstacionMasEconomicaSegunPuntoOrigenConDistanciaMaxima(SentenciasPreparadas sentencias, int latitud, int longitud, String carburante, int distanciaMaxima) throws SQLException {
        /*
        Esta es la formula Haversine que he utilizado para calcular la distancia.
 
@@ -166,68 +199,49 @@ public class ConsultarPrecios {
         ) <= tu_distancia
         */
 
-        PreparedStatement select = connection.prepareStatement(
-            "SELECT  latitud, longitud, provincias.nombre as provincia, " +
-                    "municipios.nombre as municipio, localidades.nombre as localidad,\n" +
-                    "codigopostal,\n" +
-                    "direccion, rotulos.nombre as empresa, margen as margen,\n" +
-                    "carburantes.nombre as carburante,\n" +
-                    "precios.precio,\n" +
-                    "6371 * 2 * ASIN(\n" +
-                    "    SQRT(\n" +
-                    "    POW(SIN(RADIANS((latitud - ?) / 2)), 2) +\n" +
-                    "    COS(RADIANS(?)) * COS(RADIANS(latitud)) *\n" +
-                    "    POW(SIN(RADIANS((longitud - ?) / 2)), 2)\n" +
-                    "    )\n" +
-                    ") as distancia\n" +
-                    "FROM estaciones\n" +
-                    "inner join rotulos on estaciones.rotulo_id = rotulos.id\n" +
-                    "inner join localidades on estaciones.localidad_id = localidades.id\n" +
-                    "inner join municipios on localidades.municipio_id = municipios.id\n" +
-                    "inner join provincias on municipios.provincia_id = provincias.id\n" +
-                    "inner join precios on estaciones.id = precios.estacion_id\n" +
-                    "inner join carburantes on precios.carburante_id = carburantes.id\n" +
-                    "WHERE carburantes.nombre = ?\n" +
-                    "AND (\n" +
-                    "    6371 * 2 * ASIN(\n" +
-                    "        SQRT(\n" +
-                    "        POW(SIN(RADIANS((latitud - ?) / 2)), 2) +\n" +
-                    "        COS(RADIANS(?)) * COS(RADIANS(latitud)) *\n" +
-                    "        POW(SIN(RADIANS((longitud - ?) / 2)), 2)\n" +
-                    "        )\n" +
-                    "    )\n" +
-                    ") <= ? \n" +
-                    "order by precio\n" +
-                    "limit 1");
-
-        select.setBigDecimal(1, latitud);
-        select.setBigDecimal(2, latitud);
-        select.setBigDecimal(3, longitud);
-        select.setString(4, carburante);
-        select.setBigDecimal(5, latitud);
-        select.setBigDecimal(6, latitud);
-        select.setBigDecimal(7, longitud);
-        select.setInt(8, distanciaMaxima);
-
-        ResultSet empresas = select.executeQuery();
-
-        while (empresas.next()) {
-            log.info("------------------------------------------------------------------------------");
-            log.info("La empresa con el carburante {} más barato y que se encuentra a menos de {} km de distancia de tu ubicación, [latitud {}, longitud {}], con el precio {} .",
-                    carburante, distanciaMaxima, latitud, longitud, empresas.getDouble("precio"));
-            log.info("Estos son los datos:");
-            log.info("  - Distancia: {} km", empresas.getString("distancia"));
-            log.info("  - Latitud: {}", empresas.getString("latitud"));
-            log.info("  - Longitud: {}", empresas.getString("longitud"));
-            log.info("  - Provincia: {}", empresas.getString("provincia"));
-            log.info("  - Municipio: {}", empresas.getString("municipio"));
-            log.info("  - Localidad: {}", empresas.getString("localidad"));
-            log.info("  - Dirección: {}", empresas.getString("direccion"));
-            log.info("  - Código postal: {}", empresas.getString("codigopostal"));
-            log.info("  - Margen: {}", empresas.getString("margen"));
-            log.info("  - Empresa: {}", empresas.getString("empresa"));
-            log.info("  - Precio: {}", empresas.getString("precio"));
+        PreparedStatement select = sentencias.preparar(ESTACION_MAS_ECONOMICA_POR_DISTANCIA);
+        asignarParametrosDistancia(select, latitud, longitud, carburante, distanciaMaxima);
+
+        try (ResultSet empresas = select.executeQuery()) {
+            while (empresas.next()) {
+                log.info("------------------------------------------------------------------------------");
+                log.info("La empresa con el carburante {} más barato y que se encuentra a menos de {} km de distancia de tu ubicación, [latitud {}, longitud {}], con el precio {} .",
+                        carburante, distanciaMaxima, latitud, longitud, empresas.getDouble("precio"));
+                log.info("Estos son los datos:");
+                log.info("  - Distancia: {} km", empresas.getString("distancia"));
+                log.info("  - Latitud: {}", empresas.getString("latitud"));
+                log.info("  - Longitud: {}", empresas.getString("longitud"));
+                log.info("  - Provincia: {}", empresas.getString("provincia"));
+                log.info("  - Municipio: {}", empresas.getString("municipio"));
+                log.info("  - Localidad: {}", empresas.getString("localidad"));
+                log.info("  - Dirección: {}", empresas.getString("direccion"));
+                log.info("  - Código postal: {}", empresas.getString("codigopostal"));
+                log.info("  - Margen: {}", empresas.getString("margen"));
+                log.info("  - Empresa: {}", empresas.getString("empresa"));
+                log.info("  - Precio: {}", empresas.getString("precio"));
+            }
         }
 
     }
+
+    /**
+     * Asigna los parámetros de ESTACION_MAS_ECONOMICA_POR_DISTANCIA
+     * @param select
+     * @param latitud - Millonésimas de grado
+     * @param longitud - Millonésimas de grado
+     * @param carburante
+     * @param distanciaMaxima - km
+     * @throws SQLException
+     */
+    static void asignarParametrosDistancia(PreparedStatement select, int latitud, int longitud, String carburante, int distanciaMaxima) throws SQLException {
+        // El origen llega en millonésimas de grado y se envía como decimal exacto, igual que las coordenadas guardadas
+        BigDecimal latitudDecimal = Coordenada.aDecimal(latitud);
+        BigDecimal longitudDecimal = Coordenada.aDecimal(longitud);
+        select.setBigDecimal(1, latitudDecimal);
+        select.setBigDecimal(2, latitudDecimal);
+        select.setBigDecimal(3, longitudDecimal);
+        select.setString(4, Coordenada.caja(latitud, longitud, distanciaMaxima));
+        select.setString(5, carburante);
+        select.setInt(6, distanciaMaxima);
+    }
 }
@@ -0,0 +1,413 @@
+package com.unir.app.read;
+
+import com.unir.models.Coordenada;
+import com.unir.types.TipoClave;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Copia en memoria de las estaciones con precio que cruza la consulta de la estación más económica de
+ * ConsultarPrecios, para responder sin ir a MySQL a las búsquedas por distancia de un carburante.
+ *
+ * Cada carburante tiene su propia rejilla de celdas de 0,1 grados. Los precios se ordenan por celda y se guardan
+ * por columnas (latitud, longitud, precio y estación), y cada celda es el tramo de los arrays entre su inicio y el
+ * de la siguiente, por lo que una búsqueda solo recorre las celdas que toca el rectángulo del radio y calcula la
+ * distancia exacta, con las mismas operaciones que la consulta SQL, de los precios que hay en ellas.
+ *
+ * Es inmutable: se construye entero con cargar y después solo se consulta, por lo que lo pueden usar varios hilos
+ * a la vez. BuscadorEstaciones lo sustituye por otro nuevo cuando termina una carga.
+ */
+public final class IndiceEstaciones {
+
+    // Lado de las celdas de la rejilla, en millonésimas de grado
+    private static final int LADO_CELDA = 100_000;
+    private static final int FILAS = 180_000_000 / LADO_CELDA;
+    private static final int COLUMNAS = 360_000_000 / LADO_CELDA;
+    // Radio inicial de la búsqueda de las estaciones más cercanas, que se duplica hasta encontrar suficientes
+    private static final double RADIO_INICIAL_KM = 10;
+    private static final double MEDIA_VUELTA_KM = Math.PI * Coordenada.RADIO_TIERRA_KM;
+    // Con TIPO_CLAVE=BINARIO el id de la estación se lee con BIN_TO_UUID
+    private static final TipoClave CLAVE = TipoClave.actual();
+
+    // Mismos joins que ESTACION_MAS_ECONOMICA_POR_DISTANCIA, sin filtrar por carburante ni por distancia
+    static final String ESTACIONES_CON_PRECIO =
+            "SELECT " + CLAVE.columna("estaciones.id") + " as estacion_id, latitud, longitud, provincias.nombre as provincia, " +
+            "municipios.nombre as municipio, localidades.nombre as localidad,\n" +
+            "codigopostal, direccion, rotulos.nombre as empresa, margen,\n" +
+            "carburantes.nombre as carburante, precios.precio\n" +
+            "FROM estaciones\n" +
+            "inner join rotulos on estaciones.rotulo_id = rotulos.id\n" +
+            "inner join localidades on estaciones.localidad_id = localidades.id\n" +
+            "inner join municipios on localidades.municipio_id = municipios.id\n" +
+            "inner join provincias on municipios.provincia_id = provincias.id\n" +
+            "inner join precios on estaciones.id = precios.estacion_id\n" +
+            "inner join carburantes on precios.carburante_id = carburantes.id\n" +
+            "WHERE latitud IS NOT NULL AND longitud IS NOT NULL AND precios.precio IS NOT NULL";
+
+    private final Map<String, Rejilla> rejillas;
+    private final int estaciones;
+    private final int precios;
+
+    private IndiceEstaciones(Map<String, Rejilla> rejillas, int estaciones, int precios) {
+        this.rejillas = rejillas;
+        this.estaciones = estaciones;
+        this.precios = precios;
+    }
+
+    /**
+     * Lee de la base de datos todas las estaciones con coordenadas y sus precios
+     * @param connection
+     * @return IndiceEstaciones
+     * @throws SQLException
+     */
+    public static IndiceEstaciones cargar(Connection connection) throws SQLException {
+        Cargador cargador = new Cargador();
+
+        try (PreparedStatement select = connection.prepareStatement(ESTACIONES_CON_PRECIO);
+             ResultSet filas = select.executeQuery()) {
+
+            while (filas.next()) {
+                String id = filas.getString("estacion_id");
+                FichaEstacion ficha = cargador.ficha(id);
+                if (ficha == null) {
+                    ficha = new FichaEstacion(Coordenada.deDecimal(filas.getBigDecimal("latitud")),
+                            Coordenada.deDecimal(filas.getBigDecimal("longitud")), filas.getString("provincia"),
+                            filas.getString("municipio"), filas.getString("localidad"), filas.getString("codigopostal"),
+                            filas.getString("direccion"), filas.getString("empresa"), filas.getString("margen"));
+                }
+                cargador.agregar(id, ficha, filas.getString("carburante"), filas.getDouble("precio"));
+            }
+        }
+        return cargador.construir();
+    }
+
+    /**
+     * @return Número de estaciones distintas del índice
+     */
+    public int getEstaciones() {
+        return estaciones;
+    }
+
+    /**
+     * @return Número de precios del índice
+     */
+    public int getPrecios() {
+        return precios;
+    }
+
+    /**
+     * Estación con el precio más bajo de un carburante a una distancia máxima de un punto, la misma que devuelve
+     * la consulta ESTACION_MAS_ECONOMICA_POR_DISTANCIA. Si varias tienen el mismo precio se devuelve la más cercana.
+     * @param carburante - Nombre del carburante, sin distinguir mayúsculas ni acentos como la intercalación de MySQL
+     * @param latitud - Millonésimas de grado
+     * @param longitud - Millonésimas de grado
+     * @param radioKm
+     * @return Resultado, o null si no hay ninguna estación
+     */
+    public Resultado masEconomica(String carburante, int latitud, int longitud, double radioKm) {
+        Rejilla rejilla = rejillas.get(normalizar(carburante));
+        if (rejilla == null) {
+            return null;
+        }
+
+        int[] mejor = {-1};
+        double[] distanciaMejor = {Double.MAX_VALUE};
+        rejilla.recorrer(latitud, longitud, radioKm, (posicion, distancia) -> {
+            if (mejor[0] < 0 || rejilla.precios[posicion] < rejilla.precios[mejor[0]]
+                    || (rejilla.precios[posicion] == rejilla.precios[mejor[0]] && distancia < distanciaMejor[0])) {
+                mejor[0] = posicion;
+                distanciaMejor[0] = distancia;
+            }
+        });
+        return mejor[0] < 0 ? null : rejilla.resultado(mejor[0], distanciaMejor[0]);
+    }
+
+    /**
+     * Todas las estaciones con precio de un carburante a una distancia máxima de un punto
+     * @param carburante - Nombre del carburante, sin distinguir mayúsculas ni acentos como la intercalación de MySQL
+     * @param latitud - Millonésimas de grado
+     * @param longitud - Millonésimas de grado
+     * @param radioKm
+     * @return Resultados ordenados por precio y después por distancia
+     */
+    public List<Resultado> enRadio(String carburante, int latitud, int longitud, double radioKm) {
+        Rejilla rejilla = rejillas.get(normalizar(carburante));
+        if (rejilla == null) {
+            return Collections.emptyList();
+        }
+
+        List<Resultado> resultados = new ArrayList<>();
+        rejilla.recorrer(latitud, longitud, radioKm, (posicion, distancia) -> resultados.add(rejilla.resultado(posicion, distancia)));
+        resultados.sort(Comparator.comparingDouble(Resultado::getPrecio).thenComparingDouble(Resultado::getDistancia));
+        return resultados;
+    }
+
+    /**
+     * Estaciones con precio de un carburante más cercanas a un punto. Se busca en un radio que se duplica hasta
+     * encontrar suficientes estaciones o cubrir toda la Tierra.
+     * @param carburante - Nombre del carburante, sin distinguir mayúsculas ni acentos como la intercalación de MySQL
+     * @param latitud - Millonésimas de grado
+     * @param longitud - Millonésimas de grado
+     * @param cantidad - Número de estaciones
+     * @return Resultados ordenados por distancia y después por precio
+     */
+    public List<Resultado> masCercanas(String carburante, int latitud, int longitud, int cantidad) {
+        Rejilla rejilla = rejillas.get(normalizar(carburante));
+        if (rejilla == null || cantidad <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<Resultado> resultados = new ArrayList<>();
+        for (double radioKm = RADIO_INICIAL_KM; ; radioKm *= 2) {
+            resultados.clear();
+            rejilla.recorrer(latitud, longitud, radioKm, (posicion, distancia) -> resultados.add(rejilla.resultado(posicion, distancia)));
+            if (resultados.size() >= cantidad || radioKm >= MEDIA_VUELTA_KM) {
+                break;
+            }
+        }
+
+        resultados.sort(Comparator.comparingDouble(Resultado::getDistancia).thenComparingDouble(Resultado::getPrecio));
+        return resultados.size() > cantidad ? new ArrayList<>(resultados.subList(0, cantidad)) : resultados;
+    }
+
+    // La columna nombre de carburantes usa utf8mb4_0900_ai_ci, que no distingue mayúsculas ni acentos
+    private static String normalizar(String carburante) {
+        return Normalizer.normalize(carburante, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static int fila(int latitud) {
+        return Math.min(FILAS - 1, Math.max(0, Math.floorDiv(latitud + 90_000_000, LADO_CELDA)));
+    }
+
+    private static int columna(int longitud) {
+        return Math.floorMod(Math.floorDiv(longitud + 180_000_000, LADO_CELDA), COLUMNAS);
+    }
+
+    /**
+     * Datos de una estación que devuelve la consulta SQL
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class FichaEstacion {
+        private final int latitud;
+        private final int longitud;
+        private final String provincia;
+        private final String municipio;
+        private final String localidad;
+        private final String codigoPostal;
+        private final String direccion;
+        private final String empresa;
+        private final String margen;
+    }
+
+    /**
+     * Estación encontrada con el precio del carburante buscado y su distancia al origen
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Resultado {
+        private final FichaEstacion estacion;
+        private final String carburante;
+        private final double precio;
+        private final double distancia;
+    }
+
+    private interface Visitante {
+        void visitar(int posicion, double distancia);
+    }
+
+    /**
+     * Precios de un carburante ordenados por celda. Las celdas con precios están en celdas, ordenadas, y los
+     * precios de celdas[i] van de inicios[i] a inicios[i + 1]
+     */
+    private static final class Rejilla {
+        private final String carburante;
+        private final int[] celdas;
+        private final int[] inicios;
+        private final int[] latitudes;
+        private final int[] longitudes;
+        private final double[] precios;
+        private final FichaEstacion[] estaciones;
+
+        private Rejilla(String carburante, int[] celdas, int[] inicios, int[] latitudes, int[] longitudes,
+                        double[] precios, FichaEstacion[] estaciones) {
+            this.carburante = carburante;
+            this.celdas = celdas;
+            this.inicios = inicios;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.precios = precios;
+            this.estaciones = estaciones;
+        }
+
+        private Resultado resultado(int posicion, double distancia) {
+            return new Resultado(estaciones[posicion], carburante, precios[posicion], distancia);
+        }
+
+        /**
+         * Visita los precios a una distancia máxima de un punto recorriendo las celdas del rectángulo que contiene el círculo
+         */
+        private void recorrer(int latitud, int longitud, double radioKm, Visitante visitante) {
+            double margenLatitud = Coordenada.margenLatitud(radioKm);
+            int primeraFila = fila(Coordenada.deGrados(Math.max(-90, latitud / 1_000_000.0 - margenLatitud)));
+            int ultimaFila = fila(Coordenada.deGrados(Math.min(90, latitud / 1_000_000.0 + margenLatitud)));
+
+            // El margen de longitud es mayor en el lado del rectángulo más cercano al polo
+            int latitudPolo = latitud >= 0
+                    ? Coordenada.deGrados(Math.min(90, latitud / 1_000_000.0 + margenLatitud))
+                    : Coordenada.deGrados(Math.max(-90, latitud / 1_000_000.0 - margenLatitud));
+            double margenLongitud = Coordenada.margenLongitud(latitudPolo, radioKm);
+
+            int primeraColumna;
+            int ultimaColumna;
+            if (margenLongitud >= 180) {
+                primeraColumna = 0;
+                ultimaColumna = COLUMNAS - 1;
+            } else {
+                primeraColumna = columna(Coordenada.deGrados(longitud / 1_000_000.0 - margenLongitud));
+                ultimaColumna = columna(Coordenada.deGrados(longitud / 1_000_000.0 + margenLongitud));
+            }
+
+            for (int fila = primeraFila; fila <= ultimaFila; fila++) {
+                // Si el rectángulo cruza el antimeridiano se recorren los dos extremos de la fila
+                if (primeraColumna <= ultimaColumna) {
+                    recorrerFila(fila, primeraColumna, ultimaColumna, latitud, longitud, radioKm, visitante);
+                } else {
+                    recorrerFila(fila, primeraColumna, COLUMNAS - 1, latitud, longitud, radioKm, visitante);
+                    recorrerFila(fila, 0, ultimaColumna, latitud, longitud, radioKm, visitante);
+                }
+            }
+        }
+
+        private void recorrerFila(int fila, int primeraColumna, int ultimaColumna, int latitud, int longitud,
+                                  double radioKm, Visitante visitante) {
+            int ultimaCelda = fila * COLUMNAS + ultimaColumna;
+            int celda = Arrays.binarySearch(celdas, fila * COLUMNAS + primeraColumna);
+            if (celda < 0) {
+                celda = -celda - 1;
+            }
+
+            for (; celda < celdas.length && celdas[celda] <= ultimaCelda; celda++) {
+                for (int posicion = inicios[celda]; posicion < inicios[celda + 1]; posicion++) {
+                    double distancia = Coordenada.distanciaKm(latitudes[posicion], longitudes[posicion], latitud, longitud);
+                    if (distancia <= radioKm) {
+                        visitante.visitar(posicion, distancia);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Filas de ESTACIONES_CON_PRECIO mientras se leen. Cada estación aparece una vez por carburante y se guarda
+     * una sola ficha por id: hay estaciones distintas con la misma dirección y coordenadas
+     */
+    static final class Cargador {
+        private final Map<String, FichaEstacion> fichas = new HashMap<>();
+        private final Map<String, Construccion> construcciones = new HashMap<>();
+        private int precios;
+
+        /**
+         * @param id - Id de la estación
+         * @return Ficha ya cargada de la estación, o null si es la primera vez que aparece
+         */
+        FichaEstacion ficha(String id) {
+            return fichas.get(id);
+        }
+
+        /**
+         * @param id - Id de la estación
+         * @param ficha - Datos de la estación, que solo se guardan si es la primera vez que aparece
+         * @param carburante
+         * @param precio
+         */
+        void agregar(String id, FichaEstacion ficha, String carburante, double precio) {
+            FichaEstacion cargada = fichas.putIfAbsent(id, ficha);
+            FichaEstacion estacion = cargada == null ? ficha : cargada;
+            construcciones.computeIfAbsent(normalizar(carburante), clave -> new Construccion(carburante)).agregar(estacion, precio);
+            precios++;
+        }
+
+        IndiceEstaciones construir() {
+            Map<String, Rejilla> rejillas = new HashMap<>();
+            for (Map.Entry<String, Construccion> construccion : construcciones.entrySet()) {
+                rejillas.put(construccion.getKey(), construccion.getValue().construir());
+            }
+            return new IndiceEstaciones(rejillas, fichas.size(), precios);
+        }
+    }
+
+    /**
+     * Precios de un carburante mientras se leen, antes de ordenarlos por celda
+     */
+    private static final class Construccion {
+        private final String carburante;
+        private final List<FichaEstacion> estaciones = new ArrayList<>();
+        private double[] precios = new double[1024];
+
+        private Construccion(String carburante) {
+            this.carburante = carburante;
+        }
+
+        private void agregar(FichaEstacion estacion, double precio) {
+            if (estaciones.size() == precios.length) {
+                precios = Arrays.copyOf(precios, precios.length * 2);
+            }
+            precios[estaciones.size()] = precio;
+            estaciones.add(estacion);
+        }
+
+        private Rejilla construir() {
+            int tamano = estaciones.size();
+            int[] claves = new int[tamano];
+            Integer[] orden = new Integer[tamano];
+            for (int i = 0; i < tamano; i++) {
+                FichaEstacion estacion = estaciones.get(i);
+                claves[i] = fila(estacion.getLatitud()) * COLUMNAS + columna(estacion.getLongitud());
+                orden[i] = i;
+            }
+            Arrays.sort(orden, Comparator.comparingInt(i -> claves[i]));
+
+            int[] latitudes = new int[tamano];
+            int[] longitudes = new int[tamano];
+            double[] preciosOrdenados = new double[tamano];
+            FichaEstacion[] fichas = new FichaEstacion[tamano];
+            int[] celdas = new int[tamano];
+            int[] inicios = new int[tamano + 1];
+            int numeroCeldas = 0;
+
+            for (int posicion = 0; posicion < tamano; posicion++) {
+                int origen = orden[posicion];
+                FichaEstacion estacion = estaciones.get(origen);
+                latitudes[posicion] = estacion.getLatitud();
+                longitudes[posicion] = estacion.getLongitud();
+                preciosOrdenados[posicion] = precios[origen];
+                fichas[posicion] = estacion;
+
+                if (numeroCeldas == 0 || celdas[numeroCeldas - 1] != claves[origen]) {
+                    celdas[numeroCeldas] = claves[origen];
+                    inicios[numeroCeldas] = posicion;
+                    numeroCeldas++;
+                }
+            }
+            inicios[numeroCeldas] = tamano;
+
+            return new Rejilla(carburante, Arrays.copyOf(celdas, numeroCeldas), Arrays.copyOf(inicios, numeroCeldas + 1),
+                    latitudes, longitudes, preciosOrdenados, fichas);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.unir.app.write;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Carga en tablas sombra: las tablas se cargan en un esquema aparte y se intercambian con las de la base de datos
+ * con un único RENAME TABLE, que es atómico. Mientras se carga, las consultas siguen viendo los datos anteriores
+ * completos y no compiten con la carga por los bloqueos de las tablas.
+ *
+ * Las tablas sombra se crean con CREATE TABLE ... LIKE sin índices secundarios ni claves ajenas, por lo que los
+ * INSERT solo mantienen la clave primaria. Al terminar la carga se crean los índices, con un único ALTER TABLE por
+ * tabla, y las claves ajenas, sin comprobar las filas porque la carga ya resuelve todas las referencias.
+ */
+@Slf4j
+public class CargaEnSombra {
+
+    private final String database;
+    @Getter
+    private final String esquemaCarga;
+    private final String esquemaAntiguo;
+    private final List<String> tablas;
+
+    // Cláusulas ADD INDEX y ADD CONSTRAINT de cada tabla, leídas de las tablas originales
+    private final Map<String, List<String>> indices = new LinkedHashMap<>();
+    private final Map<String, List<String>> nombresIndices = new LinkedHashMap<>();
+    private final Map<String, List<String>> clavesAjenas = new LinkedHashMap<>();
+
+    /**
+     * @param database - Base de datos con las tablas que se consultan
+     * @param tablas - Tablas que se cargan e intercambian
+     */
+    public CargaEnSombra(String database, String... tablas) {
+        this.database = database;
+        this.esquemaCarga = database + "_carga";
+        this.esquemaAntiguo = database + "_antigua";
+        this.tablas = Arrays.asList(tablas);
+    }
+
+    /**
+     * Crea el esquema de carga con una copia vacía de cada tabla, borrando el de una carga anterior fallida.
+     * @param connection - Conexión a la base de datos
+     * @throws SQLException
+     */
+    public void preparar(Connection connection) throws SQLException {
+        leerIndices(connection);
+        leerClavesAjenas(connection);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + esquemaCarga);
+            statement.execute("CREATE SCHEMA " + esquemaCarga + " COLLATE utf8mb4_0900_ai_ci");
+
+            for (String tabla : tablas) {
+                statement.execute("CREATE TABLE " + esquemaCarga + "." + tabla + " LIKE " + database + "." + tabla);
+
+                // CREATE TABLE ... LIKE copia los índices pero no las claves ajenas; los índices se crean al final
+                List<String> borrados = new ArrayList<>();
+                for (String indice : nombresIndices.getOrDefault(tabla, new ArrayList<>())) {
+                    borrados.add("DROP INDEX `" + indice + "`");
+                }
+                if (!borrados.isEmpty()) {
+                    statement.execute("ALTER TABLE " + esquemaCarga + "." + tabla + " " + String.join(", ", borrados));
+                }
+            }
+        }
+        log.info("Creadas {} tablas de carga en {}", tablas.size(), esquemaCarga);
+    }
+
+    /**
+     * Crea los índices secundarios y las claves ajenas de las tablas ya cargadas.
+     * @param connection - Conexión a la base de datos
+     * @throws SQLException
+     */
+    public void construirIndices(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, List<String>> tabla : indices.entrySet()) {
+                long inicio = System.currentTimeMillis();
+                statement.execute("ALTER TABLE " + esquemaCarga + "." + tabla.getKey() + " " + String.join(", ", tabla.getValue()));
+                log.info("Creados {} índices de {} en {} ms", tabla.getValue().size(), tabla.getKey(), System.currentTimeMillis() - inicio);
+            }
+
+            // Sin foreign_key_checks las claves ajenas se añaden sin copiar la tabla ni recorrer las filas
+            statement.execute("SET SESSION foreign_key_checks = 0");
+            try {
+                for (Map.Entry<String, List<String>> tabla : clavesAjenas.entrySet()) {
+                    statement.execute("ALTER TABLE " + esquemaCarga + "." + tabla.getKey() + " " + String.join(", ", tabla.getValue()));
+                }
+            } finally {
+                statement.execute("SET SESSION foreign_key_checks = 1");
+            }
+        }
+    }
+
+    /**
+     * Intercambia las tablas cargadas con las de la base de datos en un único RENAME TABLE y borra las antiguas.
+     * @param connection - Conexión a la base de datos
+     * @throws SQLException
+     */
+    public void intercambiar(Connection connection) throws SQLException {
+        List<String> cambios = new ArrayList<>();
+        for (String tabla : tablas) {
+            cambios.add(database + "." + tabla + " TO " + esquemaAntiguo + "." + tabla);
+            cambios.add(esquemaCarga + "." + tabla + " TO " + database + "." + tabla);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + esquemaAntiguo);
+            statement.execute("CREATE SCHEMA " + esquemaAntiguo + " COLLATE utf8mb4_0900_ai_ci");
+
+            long inicio = System.currentTimeMillis();
+            statement.execute("RENAME TABLE " + String.join(", ", cambios));
+            log.info("Intercambiadas {} tablas en {} ms", tablas.size(), System.currentTimeMillis() - inicio);
+
+            statement.execute("SET SESSION foreign_key_checks = 0");
+            try {
+                statement.execute("DROP SCHEMA " + esquemaAntiguo);
+                statement.execute("DROP SCHEMA " + esquemaCarga);
+            } finally {
+                statement.execute("SET SESSION foreign_key_checks = 1");
+            }
+        }
+    }
+
+    // Lee los índices secundarios de las tablas originales como cláusulas ADD ... INDEX
+    private void leerIndices(Connection connection) throws SQLException {
+        indices.clear();
+        nombresIndices.clear();
+        try (PreparedStatement select = connection.prepareStatement("SELECT TABLE_NAME, INDEX_NAME, NON_UNIQUE, INDEX_TYPE, COLUMN_NAME, SUB_PART "
+                + "FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = ? AND INDEX_NAME <> 'PRIMARY' "
+                + "ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX")) {
+            select.setString(1, database);
+
+            try (ResultSet resultSet = select.executeQuery()) {
+                Map<String, String> tipos = new LinkedHashMap<>();
+                Map<String, List<String>> columnas = new LinkedHashMap<>();
+                while (resultSet.next()) {
+                    if (!tablas.contains(resultSet.getString(1))) {
+                        continue;
+                    }
+                    String clave = resultSet.getString(1) + "`" + resultSet.getString(2);
+                    String tipo = "SPATIAL".equals(resultSet.getString(4)) ? "SPATIAL INDEX"
+                            : "FULLTEXT".equals(resultSet.getString(4)) ? "FULLTEXT INDEX"
+                            : resultSet.getInt(3) == 0 ? "UNIQUE INDEX" : "INDEX";
+                    String columna = "`" + resultSet.getString(5) + "`";
+                    if (resultSet.getObject(6) != null) {
+                        columna += "(" + resultSet.getInt(6) + ")";
+                    }
+                    tipos.put(clave, tipo);
+                    columnas.computeIfAbsent(clave, k -> new ArrayList<>()).add(columna);
+                }
+
+                for (Map.Entry<String, String> indice : tipos.entrySet()) {
+                    String[] partes = indice.getKey().split("`", 2);
+                    nombresIndices.computeIfAbsent(partes[0], k -> new ArrayList<>()).add(partes[1]);
+                    indices.computeIfAbsent(partes[0], k -> new ArrayList<>()).add("ADD " + indice.getValue() + " `" + partes[1] + "` ("
+                            + String.join(", ", columnas.get(indice.getKey())) + ")");
+                }
+            }
+        }
+    }
+
+    // Lee las claves ajenas de las tablas originales como cláusulas ADD CONSTRAINT que apuntan al esquema de carga
+    private void leerClavesAjenas(Connection connection) throws SQLException {
+        clavesAjenas.clear();
+        try (PreparedStatement select = connection.prepareStatement("SELECT TABLE_NAME, CONSTRAINT_NAME, COLUMN_NAME, REFERENCED_TABLE_NAME, REFERENCED_COLUMN_NAME "
+                + "FROM information_schema.KEY_COLUMN_USAGE WHERE TABLE_SCHEMA = ? AND REFERENCED_TABLE_NAME IS NOT NULL "
+                + "ORDER BY TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION")) {
+            select.setString(1, database);
+
+            try (ResultSet resultSet = select.executeQuery()) {
+                Map<String, String[]> restricciones = new LinkedHashMap<>();
+                Map<String, List<String>> columnas = new LinkedHashMap<>();
+                Map<String, List<String>> referenciadas = new LinkedHashMap<>();
+                while (resultSet.next()) {
+                    if (!tablas.contains(resultSet.getString(1))) {
+                        continue;
+                    }
+                    String clave = resultSet.getString(1) + "`" + resultSet.getString(2);
+                    restricciones.put(clave, new String[]{resultSet.getString(1), resultSet.getString(2), resultSet.getString(4)});
+                    columnas.computeIfAbsent(clave, k -> new ArrayList<>()).add("`" + resultSet.getString(3) + "`");
+                    referenciadas.computeIfAbsent(clave, k -> new ArrayList<>()).add("`" + resultSet.getString(5) + "`");
+                }
+
+                for (Map.Entry<String, String[]> restriccion : restricciones.entrySet()) {
+                    String[] datos = restriccion.getValue();
+                    clavesAjenas.computeIfAbsent(datos[0], k -> new ArrayList<>()).add("ADD CONSTRAINT `" + datos[1] + "` FOREIGN KEY ("
+                            + String.join(", ", columnas.get(restriccion.getKey())) + ") REFERENCES " + esquemaCarga + "." + datos[2] + " ("
+                            + String.join(", ", referenciadas.get(restriccion.getKey())) + ")");
+                }
+            }
+        }
+    }
+}
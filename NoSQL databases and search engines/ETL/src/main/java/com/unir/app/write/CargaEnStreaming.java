@@ -0,0 +1,186 @@
+package com.unir.app.write;
+
+import com.unir.config.MySqlConnector;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Carga en streaming: los hilos que leen los CSV envían cada registro ya resuelto a una cola acotada por tabla
+ * y uno o varios hilos escritores lo insertan con un EscritorPorLotes sobre su propia conexión.
+ * Si una cola se llena los lectores se bloquean hasta que los escritores avanzan, por lo que la memoria
+ * máxima depende del tamaño de las colas y no del tamaño del fichero, y la lectura se solapa con la escritura.
+ *
+ * Los escritores desactivan foreign_key_checks en su sesión: cada tabla se escribe en un hilo distinto y no se
+ * puede garantizar el orden entre ellas, pero los lectores resuelven todas las referencias antes de enviar un registro.
+ */
+@Slf4j
+public class CargaEnStreaming {
+
+    // Marca de fin de cola, se envía una por escritor
+    private static final Object FIN = new Object();
+
+    private final String host;
+    private final String database;
+    private final int capacidadCola;
+    private final ExecutorService escritores = Executors.newCachedThreadPool();
+    private final List<Future<Long>> escrituras = new ArrayList<>();
+    private final List<Canal<?>> canales = new ArrayList<>();
+    private volatile boolean fallida = false;
+
+    public CargaEnStreaming(String host, String database, int capacidadCola) {
+        this.host = host;
+        this.database = database;
+        this.capacidadCola = capacidadCola;
+    }
+
+    /**
+     * Crea la cola de una tabla y arranca sus escritores.
+     * @param tabla - Tabla destino
+     * @param sql - INSERT de la tabla
+     * @param asignador - Rellena el INSERT con un registro
+     * @param numeroEscritores - Hilos (y conexiones) que escriben en la tabla
+     * @return Consumidor al que el lector envía los registros de la tabla
+     */
+    public <T> Consumer<T> canal(String tabla, String sql, EscritorPorLotes.Asignador<T> asignador, int numeroEscritores) {
+        Canal<T> canal = new Canal<>(numeroEscritores);
+        canales.add(canal);
+
+        for (int i = 0; i < numeroEscritores; i++) {
+            escrituras.add(escritores.submit(() -> escribir(tabla, sql, asignador, canal)));
+        }
+        return canal::enviar;
+    }
+
+    /**
+     * Cierra todas las colas y espera a que los escritores terminen.
+     * @throws SQLException - Error en alguno de los escritores
+     */
+    public void terminar() throws SQLException {
+        try {
+            for (Canal<?> canal : canales) {
+                canal.cerrar();
+            }
+            for (Future<Long> escritura : escrituras) {
+                escritura.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Error en un escritor de la carga en streaming", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpida la carga en streaming", e);
+        } finally {
+            escritores.shutdownNow();
+        }
+        log.info("Carga en streaming terminada: {} tablas con {} escritores", canales.size(), escrituras.size());
+    }
+
+    /**
+     * Detiene los escritores sin esperar a que se vacíen las colas, cuando falla la lectura del CSV.
+     * Los lotes sin confirmar se descartan al cerrar cada conexión.
+     */
+    public void cancelar() {
+        fallida = true;
+        escritores.shutdownNow();
+    }
+
+    private <T> long escribir(String tabla, String sql, EscritorPorLotes.Asignador<T> asignador, Canal<T> canal) throws SQLException {
+        try (Connection connection = new MySqlConnector(host, database).getConnection()) {
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET SESSION foreign_key_checks = 0");
+            }
+
+            return new EscritorPorLotes<>(connection, tabla, sql, asignador).escribir(canal);
+
+        } catch (SQLException | RuntimeException e) {
+            fallida = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Cola acotada de una tabla. El lector envía registros y cada escritor la recorre hasta su marca de fin.
+     * @param <T>
+     */
+    private class Canal<T> implements Iterable<T> {
+        private final BlockingQueue<Object> cola = new ArrayBlockingQueue<>(capacidadCola);
+        private final int numeroEscritores;
+
+        private Canal(int numeroEscritores) {
+            this.numeroEscritores = numeroEscritores;
+        }
+
+        private void enviar(T registro) {
+            poner(registro);
+        }
+
+        private void cerrar() {
+            for (int i = 0; i < numeroEscritores; i++) {
+                poner(FIN);
+            }
+        }
+
+        // Espera a que haya hueco en la cola, salvo que algún escritor haya fallado
+        private void poner(Object registro) {
+            try {
+                while (!cola.offer(registro, 100, TimeUnit.MILLISECONDS)) {
+                    if (fallida) {
+                        throw new IllegalStateException("Un escritor de la carga en streaming ha fallado");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrumpida la carga en streaming", e);
+            }
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private Object siguiente;
+
+                @Override
+                public boolean hasNext() {
+                    if (siguiente == null) {
+                        try {
+                            siguiente = cola.take();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("Interrumpido esperando registros", e);
+                        }
+                    }
+                    return siguiente != FIN;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    T registro = (T) siguiente;
+                    siguiente = null;
+                    return registro;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.unir.app.write;
+
+import com.unir.config.MySqlConnectionPool;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Carga las tablas respetando el grafo de claves foráneas del esquema.
+ * Cada tabla empieza en cuanto han terminado las tablas de las que depende, por lo que las tablas
+ * independientes se cargan a la vez, cada una con su propia conexión del pool.
+ * Las tablas grandes pueden repartirse en varias particiones que se cargan en paralelo.
+ */
+@Slf4j
+public class CargadorParalelo {
+
+    /**
+     * Carga de una tabla completa con una conexión del pool
+     */
+    public interface CargaTabla {
+        void cargar(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Carga de un rango de posiciones de una tabla guardada por columnas con una conexión del pool
+     */
+    public interface CargaRango {
+        void cargar(Connection connection, int desde, int hasta) throws SQLException;
+    }
+
+    private final MySqlConnectionPool pool;
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<Void>> tablas = new LinkedHashMap<>();
+
+    public CargadorParalelo(MySqlConnectionPool pool) {
+        this.pool = pool;
+        this.executor = Executors.newFixedThreadPool(pool.getSize());
+    }
+
+    /**
+     * Programa la carga de una tabla cuando terminen las tablas de las que depende.
+     * @param tabla - Nombre de la tabla
+     * @param carga - Carga de la tabla
+     * @param dependencias - Tablas referenciadas por claves foráneas, ya programadas
+     * @return CargadorParalelo
+     */
+    public CargadorParalelo tabla(String tabla, CargaTabla carga, String... dependencias) {
+        CompletableFuture<Void> futura = despuesDe(tabla, dependencias)
+                .thenRunAsync(() -> ejecutar(tabla, carga), executor);
+        tablas.put(tabla, futura);
+        return this;
+    }
+
+    /**
+     * Programa la carga de una tabla repartida en rangos contiguos de posiciones, cada uno con su propia conexión.
+     * @param tabla - Nombre de la tabla
+     * @param registros - Número de registros de la tabla
+     * @param particiones - Número de particiones
+     * @param carga - Carga de un rango
+     * @param dependencias - Tablas referenciadas por claves foráneas, ya programadas
+     * @return CargadorParalelo
+     */
+    public CargadorParalelo tablaPorRangos(String tabla, int registros, int particiones,
+                                           CargaRango carga, String... dependencias) {
+        CompletableFuture<Void> previas = despuesDe(tabla, dependencias);
+        int tamano = (registros + particiones - 1) / Math.max(particiones, 1);
+
+        List<CompletableFuture<Void>> partes = new ArrayList<>();
+        for (int desde = 0; desde < registros; desde += tamano) {
+            int inicio = desde;
+            int fin = Math.min(desde + tamano, registros);
+            partes.add(previas.thenRunAsync(() -> ejecutar(tabla, connection -> carga.cargar(connection, inicio, fin)), executor));
+        }
+
+        tablas.put(tabla, partes.isEmpty() ? previas : CompletableFuture.allOf(partes.toArray(new CompletableFuture<?>[0])));
+        return this;
+    }
+
+    /**
+     * Espera a que terminen todas las tablas programadas
+     * @throws SQLException - Error en la carga de alguna de las tablas
+     */
+    public void esperar() throws SQLException {
+        try {
+            CompletableFuture.allOf(tablas.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Error en la carga en paralelo", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private CompletableFuture<Void> despuesDe(String tabla, String... dependencias) {
+        List<CompletableFuture<Void>> previas = new ArrayList<>();
+        for (String dependencia : dependencias) {
+            CompletableFuture<Void> futura = tablas.get(dependencia);
+            if (futura == null) {
+                throw new IllegalArgumentException("La tabla " + tabla + " depende de " + dependencia + " que no se ha programado antes");
+            }
+            previas.add(futura);
+        }
+        return CompletableFuture.allOf(previas.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private void ejecutar(String tabla, CargaTabla carga) {
+        try {
+            pool.run(connection -> {
+                carga.cargar(connection);
+                return null;
+            });
+            log.debug("Carga de {} terminada en el hilo {}", tabla, Thread.currentThread().getName());
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+    }
+}
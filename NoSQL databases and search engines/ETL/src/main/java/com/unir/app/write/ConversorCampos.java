@@ -0,0 +1,179 @@
+package com.unir.app.write;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+/**
+ * Convierte los campos numéricos y de fecha del CSV directamente desde los bytes del LectorCsv, sin crear String.
+ * Los números usan coma decimal ("1,679", "-0,777972") y las fechas el formato dd/MM/yyyy HH:mm en la zona horaria local.
+ *
+ * Un número se lee como mantisa entera y número de decimales. Si la mantisa y la potencia de 10 se representan
+ * de forma exacta, una única división da el mismo resultado correctamente redondeado que Double.parseDouble.
+ * En el resto de casos, y con cualquier carácter inesperado, se usan los conversores del JDK.
+ *
+ * Guarda el último día y hora convertidos, por lo que cada hilo debe usar su propia instancia.
+ */
+public class ConversorCampos {
+
+    // Mantisas y potencias de 10 representables de forma exacta en double
+    private static final long MAXIMO_EXACTO_DOUBLE = 1L << 53;
+    private static final int MAXIMO_DIGITOS = 18;
+    private static final double[] POTENCIAS = new double[23];
+
+    static {
+        POTENCIAS[0] = 1;
+        for (int i = 1; i < POTENCIAS.length; i++) {
+            POTENCIAS[i] = POTENCIAS[i - 1] * 10;
+        }
+    }
+
+    private final Calendar calendario = Calendar.getInstance();
+    private final SimpleDateFormat formato = new SimpleDateFormat("dd/MM/yyyy HH:mm");
+
+    // Resultado del último número leído
+    private long mantisa;
+    private int decimales;
+    private boolean negativo;
+
+    // Última hora convertida (yyyyMMddHH) y su instante en milisegundos
+    private long ultimaHora = -1;
+    private long ultimaHoraMilis;
+
+    /**
+     * @param lector
+     * @param campo
+     * @return Valor del campo como double
+     */
+    public double leerDouble(LectorCsv lector, int campo) {
+        if (leer(lector, campo) && mantisa < MAXIMO_EXACTO_DOUBLE && decimales < POTENCIAS.length) {
+            double valor = mantisa / POTENCIAS[decimales];
+            return negativo ? -valor : valor;
+        }
+        return Double.parseDouble(lector.texto(campo).trim().replace(",", "."));
+    }
+
+    /**
+     * @param lector
+     * @param campo
+     * @return Valor del campo en milésimas, como entero. Con más de tres decimales se redondea
+     */
+    public int leerMilesimas(LectorCsv lector, int campo) {
+        return leerPuntoFijo(lector, campo, 3);
+    }
+
+    /**
+     * @param lector
+     * @param campo
+     * @return Coordenada del campo en millonésimas de grado. Con más de seis decimales se redondea
+     */
+    public int leerMicrogrados(LectorCsv lector, int campo) {
+        return leerPuntoFijo(lector, campo, 6);
+    }
+
+    /**
+     * @param lector
+     * @param campo
+     * @return Valor del campo como BigDecimal, con los mismos decimales que en el fichero
+     */
+    public BigDecimal leerDecimal(LectorCsv lector, int campo) {
+        if (leer(lector, campo)) {
+            return BigDecimal.valueOf(negativo ? -mantisa : mantisa, decimales);
+        }
+        return new BigDecimal(lector.texto(campo).trim().replace(",", "."));
+    }
+
+    /**
+     * @param lector
+     * @param campo
+     * @return Instante en milisegundos de una fecha dd/MM/yyyy HH:mm en la zona horaria local
+     * @throws ParseException - Si el campo no es una fecha válida
+     */
+    public long leerFecha(LectorCsv lector, int campo) throws ParseException {
+        if (lector.longitud(campo) != 16 || lector.byteEn(campo, 2) != '/' || lector.byteEn(campo, 5) != '/'
+                || lector.byteEn(campo, 10) != ' ' || lector.byteEn(campo, 13) != ':') {
+            return formato.parse(lector.texto(campo)).getTime();
+        }
+
+        int dia = digitos(lector, campo, 0, 2);
+        int mes = digitos(lector, campo, 3, 2);
+        int anio = digitos(lector, campo, 6, 4);
+        int hora = digitos(lector, campo, 11, 2);
+        int minuto = digitos(lector, campo, 14, 2);
+        if ((dia | mes | anio | hora | minuto) < 0) {
+            return formato.parse(lector.texto(campo)).getTime();
+        }
+
+        // El calendario solo se usa al cambiar de hora, así se respetan los cambios de horario de verano
+        long clave = ((anio * 100L + mes) * 100 + dia) * 100 + hora;
+        if (clave != ultimaHora) {
+            calendario.clear();
+            calendario.set(anio, mes - 1, dia, hora, 0, 0);
+            ultimaHora = clave;
+            ultimaHoraMilis = calendario.getTimeInMillis();
+        }
+        return ultimaHoraMilis + minuto * 60_000L;
+    }
+
+    // Lee un número en punto fijo, multiplicado por 10^escala, sin pasar por double ni BigDecimal si cabe en un int
+    private int leerPuntoFijo(LectorCsv lector, int campo, int escala) {
+        if (leer(lector, campo) && decimales <= escala && mantisa <= Integer.MAX_VALUE / (long) POTENCIAS[escala - decimales]) {
+            int valor = (int) (mantisa * (long) POTENCIAS[escala - decimales]);
+            return negativo ? -valor : valor;
+        }
+        return new BigDecimal(lector.texto(campo).trim().replace(",", ".")).movePointRight(escala).setScale(0, RoundingMode.HALF_UP).intValueExact();
+    }
+
+    /**
+     * Lee un número con coma o punto decimal en mantisa, decimales y negativo.
+     * @return false si el campo tiene caracteres inesperados o demasiados dígitos
+     */
+    private boolean leer(LectorCsv lector, int campo) {
+        int longitud = lector.longitud(campo);
+        int i = 0;
+        int digitos = 0;
+        boolean parteDecimal = false;
+
+        mantisa = 0;
+        decimales = 0;
+        negativo = false;
+
+        if (longitud > 0 && (lector.byteEn(campo, 0) == '-' || lector.byteEn(campo, 0) == '+')) {
+            negativo = lector.byteEn(campo, 0) == '-';
+            i++;
+        }
+
+        for (; i < longitud; i++) {
+            byte b = lector.byteEn(campo, i);
+            if (b >= '0' && b <= '9') {
+                if (++digitos > MAXIMO_DIGITOS) {
+                    return false;
+                }
+                mantisa = mantisa * 10 + (b - '0');
+                if (parteDecimal) {
+                    decimales++;
+                }
+            } else if ((b == ',' || b == '.') && !parteDecimal) {
+                parteDecimal = true;
+            } else {
+                return false;
+            }
+        }
+        return digitos > 0;
+    }
+
+    // Lee un entero de cantidad dígitos desde la posición desde del campo, o -1 si no son dígitos
+    private static int digitos(LectorCsv lector, int campo, int desde, int cantidad) {
+        int valor = 0;
+        for (int i = desde; i < desde + cantidad; i++) {
+            byte b = lector.byteEn(campo, i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            valor = valor * 10 + (b - '0');
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,157 @@
+package com.unir.app.write;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Diccionario de los valores que se repiten en muchas líneas de los CSV (provincias, municipios, rótulos, horarios...).
+ * Cada valor distinto recibe un código entero consecutivo desde 0 la primera vez que aparece, y se guarda un único
+ * String por valor: los registros guardan el String del diccionario en lugar de su propia copia, y al buscarlos
+ * en los registros de provincias, municipios, etc. el hash ya está calculado y equals compara la misma instancia.
+ *
+ * Los campos se buscan por sus bytes en una tabla hash de direccionamiento abierto, por lo que un valor que ya
+ * existe no crea ningún objeto; solo se crea el String cuando el valor aparece por primera vez.
+ * No es seguro para varios hilos: cada lectura de los CSV usa sus propios diccionarios.
+ */
+public class Diccionario {
+
+    private static final int CAPACIDAD_INICIAL = 64;
+    private static final int FNV_INICIO = 0x811c9dc5;
+    private static final int FNV_PRIMO = 0x01000193;
+
+    private final List<String> valores = new ArrayList<>();
+    private byte[][] bytes = new byte[CAPACIDAD_INICIAL][];
+
+    // Código de cada posición de la tabla hash, o -1 si está libre. Nunca se llena más de la mitad
+    private int[] posiciones = posicionesVacias(CAPACIDAD_INICIAL * 2);
+
+    /**
+     * @param lector
+     * @param campo
+     * @return Código del valor del campo, añadiéndolo si no existía
+     */
+    public int codificar(LectorCsv lector, int campo) {
+        // Los campos con comillas dobladas no coinciden byte a byte con su valor
+        if (lector.tieneComillasDobladas(campo)) {
+            return codificar(lector.texto(campo));
+        }
+
+        int longitud = lector.longitud(campo);
+        int hash = FNV_INICIO;
+        for (int i = 0; i < longitud; i++) {
+            hash = (hash ^ (lector.byteEn(campo, i) & 0xFF)) * FNV_PRIMO;
+        }
+
+        int mascara = posiciones.length - 1;
+        for (int posicion = hash & mascara; ; posicion = (posicion + 1) & mascara) {
+            int codigo = posiciones[posicion];
+            if (codigo < 0) {
+                return agregar(lector.texto(campo), posicion);
+            }
+            if (coincide(bytes[codigo], lector, campo, longitud)) {
+                return codigo;
+            }
+        }
+    }
+
+    /**
+     * @param valor
+     * @return Código del valor, añadiéndolo si no existía
+     */
+    public int codificar(String valor) {
+        byte[] codificado = valor.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(codificado);
+
+        int mascara = posiciones.length - 1;
+        for (int posicion = hash & mascara; ; posicion = (posicion + 1) & mascara) {
+            int codigo = posiciones[posicion];
+            if (codigo < 0) {
+                return agregar(valor, posicion);
+            }
+            if (Arrays.equals(bytes[codigo], codificado)) {
+                return codigo;
+            }
+        }
+    }
+
+    /**
+     * @param codigo
+     * @return El único String del diccionario con ese código
+     */
+    public String valor(int codigo) {
+        return valores.get(codigo);
+    }
+
+    /**
+     * @param lector
+     * @param campo
+     * @return El String del diccionario con el valor del campo
+     */
+    public String texto(LectorCsv lector, int campo) {
+        return valor(codificar(lector, campo));
+    }
+
+    /**
+     * @return Número de valores distintos
+     */
+    public int size() {
+        return valores.size();
+    }
+
+    private int agregar(String valor, int posicion) {
+        int codigo = valores.size();
+        valores.add(valor);
+        if (codigo == bytes.length) {
+            bytes = Arrays.copyOf(bytes, codigo * 2);
+        }
+        bytes[codigo] = valor.getBytes(StandardCharsets.UTF_8);
+        posiciones[posicion] = codigo;
+
+        if (valores.size() * 2 > posiciones.length) {
+            redimensionar();
+        }
+        return codigo;
+    }
+
+    // Duplica la tabla hash y vuelve a colocar los códigos
+    private void redimensionar() {
+        posiciones = posicionesVacias(posiciones.length * 2);
+        int mascara = posiciones.length - 1;
+        for (int codigo = 0; codigo < valores.size(); codigo++) {
+            int posicion = hash(bytes[codigo]) & mascara;
+            while (posiciones[posicion] >= 0) {
+                posicion = (posicion + 1) & mascara;
+            }
+            posiciones[posicion] = codigo;
+        }
+    }
+
+    // Hash FNV-1a de los bytes UTF-8 del valor, el mismo que se calcula sobre los bytes del campo
+    private static int hash(byte[] valor) {
+        int hash = FNV_INICIO;
+        for (byte b : valor) {
+            hash = (hash ^ (b & 0xFF)) * FNV_PRIMO;
+        }
+        return hash;
+    }
+
+    private static boolean coincide(byte[] valor, LectorCsv lector, int campo, int longitud) {
+        if (valor.length != longitud) {
+            return false;
+        }
+        for (int i = 0; i < longitud; i++) {
+            if (valor[i] != lector.byteEn(campo, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] posicionesVacias(int capacidad) {
+        int[] posiciones = new int[capacidad];
+        Arrays.fill(posiciones, -1);
+        return posiciones;
+    }
+}
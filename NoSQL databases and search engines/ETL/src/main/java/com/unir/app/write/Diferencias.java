@@ -0,0 +1,68 @@
+package com.unir.app.write;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diferencias entre los registros de una tabla ya cargados en la base de datos y los leídos del CSV.
+ * De la carga anterior solo se guarda la huella de cada registro por su clave. Cada registro leído se compara con ella:
+ * si no existía se inserta, si su huella ha cambiado se actualiza y las claves que no aparecen en el CSV se borran.
+ * @param <K> Clave del registro
+ * @param <T> Registro leído del CSV
+ */
+public class Diferencias<K, T> {
+
+    private final Map<K, Long> cargados;
+
+    @Getter
+    private final List<T> nuevos = new ArrayList<>();
+    @Getter
+    private final List<T> modificados = new ArrayList<>();
+
+    /**
+     * @param cargados - Huella de cada registro ya cargado por su clave. Se modifica al comparar
+     */
+    public Diferencias(Map<K, Long> cargados) {
+        this.cargados = cargados;
+    }
+
+    /**
+     * Compara un registro leído con el ya cargado con la misma clave.
+     * @param clave
+     * @param huella
+     * @param registro
+     * @return true si el registro ya estaba cargado y no ha cambiado
+     */
+    public boolean comparar(K clave, long huella, T registro) {
+        Long cargado = cargados.remove(clave);
+        if (cargado == null) {
+            nuevos.add(registro);
+            return false;
+        }
+        if (cargado != huella) {
+            modificados.add(registro);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fuerza la actualización de un registro que no ha cambiado, por ejemplo porque han cambiado sus registros dependientes.
+     * @param registro
+     */
+    public void modificar(T registro) {
+        modificados.add(registro);
+    }
+
+    /**
+     * Claves cargadas que no han aparecido en el CSV. Solo es completo después de comparar todos los registros.
+     * @return Claves a borrar
+     */
+    public Collection<K> getBorrados() {
+        return cargados.keySet();
+    }
+}
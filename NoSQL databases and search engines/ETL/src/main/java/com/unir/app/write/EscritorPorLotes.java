@@ -0,0 +1,251 @@
+package com.unir.app.write;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.util.function.Function;
+
+/**
+ * Escritor por lotes común a todas las tablas.
+ * Ajusta el tamaño del lote y el intervalo de commit en tiempo de ejecución a partir de los registros por segundo
+ * y la latencia observadas en cada executeBatch. Con rewriteBatchedStatements=true en la conexión,
+ * el driver reescribe cada lote como un único INSERT multi-fila.
+ * Con un PuntoControl se guarda el avance después de cada commit y se saltan los registros ya confirmados.
+ *
+ * El punto de control se guarda en un fichero después del commit, por lo que si la carga se interrumpe entre los dos
+ * el último commit queda confirmado sin constar en el punto de control. Un lote se corta antes de pasar del intervalo
+ * de commit, por lo que ningún commit tiene más de MAXIMO_REGISTROS_POR_COMMIT registros, y al reanudar los primeros
+ * MAXIMO_REGISTROS_POR_COMMIT registros se escriben con INSERT IGNORE: las filas que ya existen se descartan y
+ * cualquier otro aviso de MySQL se trata como un error.
+ * @param <T> Tipo de registro que se escribe
+ */
+@Slf4j
+public class EscritorPorLotes<T> {
+
+    private static final int LOTE_MINIMO = 10;
+    private static final int LOTE_MAXIMO = 20000;
+    private static final int LOTE_INICIAL = 100;
+
+    // Latencia máxima aceptable de un lote y tiempo objetivo entre commits
+    private static final long LATENCIA_MAXIMA_LOTE_NANOS = 500_000_000L;
+    private static final long INTERVALO_COMMIT_NANOS = 1_000_000_000L;
+
+    // Registros máximos por commit, acota el undo log de cada transacción aunque la carga sea muy rápida
+    private static final int MAXIMO_REGISTROS_POR_COMMIT = 50000;
+
+    // Código de MySQL de una clave primaria duplicada (ER_DUP_ENTRY)
+    private static final int CLAVE_DUPLICADA = 1062;
+
+    /**
+     * Rellena los parámetros del PreparedStatement con los datos de un registro
+     * @param <T>
+     */
+    public interface Asignador<T> {
+        void asignar(PreparedStatement statement, T registro) throws SQLException;
+    }
+
+    private final Connection connection;
+    private final String tabla;
+    private final String sql;
+    private final Asignador<T> asignador;
+
+    @Getter
+    private int tamanoLote = LOTE_INICIAL;
+    @Getter
+    private int registrosPorCommit = LOTE_INICIAL;
+    private double mejoresRegistrosPorSegundo = 0;
+    private double ultimosRegistrosPorSegundo = 0;
+    private long ultimaLatenciaNanos = 0;
+    private boolean creciendo = true;
+
+    private PuntoControl puntoControl;
+    private Function<T, Object> clave;
+
+    public EscritorPorLotes(Connection connection, String tabla, String sql, Asignador<T> asignador) {
+        this.connection = connection;
+        this.tabla = tabla;
+        this.sql = sql;
+        this.asignador = asignador;
+    }
+
+    /**
+     * Guarda el avance en un punto de control y, si la carga se reanuda, salta los registros ya confirmados.
+     * @param puntoControl - Punto de control de la carga
+     * @param clave - Clave de cada registro, para identificar el flujo y comprobar que los CSV no han cambiado
+     * @return EscritorPorLotes
+     */
+    public EscritorPorLotes<T> puntoControl(PuntoControl puntoControl, Function<T, Object> clave) {
+        this.puntoControl = puntoControl;
+        this.clave = clave;
+        return this;
+    }
+
+    /**
+     * Escribe todos los registros en la tabla, haciendo commit cada intervalo de commit.
+     * @param registros - Registros a escribir
+     * @return Número de registros escritos
+     * @throws SQLException - Error al escribir los registros
+     */
+    public long escribir(Iterable<T> registros) throws SQLException {
+
+        long escritos = 0;
+        long inicio = System.nanoTime();
+        boolean autoCommitPrevio = connection.getAutoCommit();
+
+        // Preparamos la consulta una única vez para poder reutilizarla en todos los lotes. Al reanudar una carga
+        // se empieza con la consulta idempotente hasta pasar el commit que puede faltar en el punto de control
+        boolean reanudando = puntoControl != null && puntoControl.isReanudando();
+        try (PreparedStatement insert = connection.prepareStatement(sql);
+             PreparedStatement insertIdempotente = reanudando ? connection.prepareStatement(idempotente(sql)) : null) {
+
+            PreparedStatement statement = reanudando ? insertIdempotente : insert;
+
+            // Desactivamos el autocommit para hacer commit por intervalos
+            connection.setAutoCommit(false);
+
+            int pendientes = 0;
+            int sinConfirmar = 0;
+            String flujo = null;
+            long saltar = 0;
+            long saltados = 0;
+            T ultimo = null;
+
+            for (T registro : registros) {
+                // Saltamos los registros confirmados en una ejecución anterior
+                if (puntoControl != null) {
+                    if (flujo == null) {
+                        flujo = PuntoControl.flujo(tabla, clave.apply(registro));
+                        saltar = puntoControl.confirmados(flujo);
+                    }
+                    if (saltados < saltar) {
+                        if (++saltados == saltar) {
+                            comprobarReanudacion(flujo, registro);
+                        }
+                        continue;
+                    }
+                }
+
+                asignador.asignar(statement, registro);
+                statement.addBatch();
+                ultimo = registro;
+
+                // Ejecutamos el batch cada lote de registros, o antes si el commit pasaría de registrosPorCommit registros
+                if (++pendientes >= tamanoLote || sinConfirmar + pendientes >= registrosPorCommit) {
+                    ejecutarLote(statement, pendientes, statement == insertIdempotente);
+                    escritos += pendientes;
+                    sinConfirmar += pendientes;
+                    pendientes = 0;
+
+                    if (sinConfirmar >= registrosPorCommit) {
+                        connection.commit();
+                        sinConfirmar = 0;
+                        guardarPuntoControl(flujo, saltados + escritos, ultimo);
+
+                        if (statement == insertIdempotente && escritos >= MAXIMO_REGISTROS_POR_COMMIT) {
+                            statement = insert;
+                        }
+                    }
+                }
+            }
+
+            // Ejecutamos el batch final
+            if (pendientes > 0) {
+                ejecutarLote(statement, pendientes, statement == insertIdempotente);
+                escritos += pendientes;
+            }
+            connection.commit();
+            guardarPuntoControl(flujo, saltados + escritos, ultimo);
+
+            if (saltados > 0) {
+                log.info("Tabla {}: saltados {} registros ya confirmados según el punto de control", tabla, saltados);
+            }
+
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommitPrevio);
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        log.info("Tabla {}: {} registros en {} s ({} registros/s). Lote elegido = {}, commit cada {} registros, latencia del último lote = {} ms",
+                tabla, escritos, String.format("%.2f", segundos), Math.round(escritos / Math.max(segundos, 1e-9)),
+                tamanoLote, registrosPorCommit, ultimaLatenciaNanos / 1_000_000);
+        return escritos;
+    }
+
+    private void comprobarReanudacion(String flujo, T registro) throws SQLException {
+        if (!String.valueOf(clave.apply(registro)).equals(puntoControl.ultimaClave(flujo))) {
+            throw new SQLException("El punto de control de " + flujo + " no coincide con los registros de los CSV");
+        }
+    }
+
+    private void guardarPuntoControl(String flujo, long registros, T ultimo) throws SQLException {
+        if (puntoControl == null || ultimo == null) {
+            return;
+        }
+        try {
+            puntoControl.confirmar(flujo, registros, clave.apply(ultimo));
+        } catch (IOException e) {
+            throw new SQLException("Error al guardar el punto de control de " + flujo, e);
+        }
+    }
+
+    private void ejecutarLote(PreparedStatement statement, int registros, boolean idempotente) throws SQLException {
+        long inicio = System.nanoTime();
+        statement.executeBatch();
+        long latencia = Math.max(System.nanoTime() - inicio, 1);
+        if (idempotente) {
+            comprobarAvisos(statement);
+        }
+        ajustar(registros, latencia);
+    }
+
+    // INSERT IGNORE convierte todos los errores en avisos: solo se admiten los de filas ya existentes
+    private void comprobarAvisos(PreparedStatement statement) throws SQLException {
+        for (SQLWarning aviso = statement.getWarnings(); aviso != null; aviso = aviso.getNextWarning()) {
+            if (aviso.getErrorCode() != CLAVE_DUPLICADA) {
+                throw new SQLException("Aviso al escribir en " + tabla + ": " + aviso.getMessage(), aviso.getSQLState(), aviso.getErrorCode(), aviso);
+            }
+        }
+        statement.clearWarnings();
+    }
+
+    private static String idempotente(String sql) throws SQLException {
+        if (!sql.regionMatches(true, 0, "INSERT INTO", 0, "INSERT INTO".length())) {
+            throw new SQLException("Solo se puede reanudar con punto de control un INSERT: " + sql);
+        }
+        return "INSERT IGNORE INTO" + sql.substring("INSERT INTO".length());
+    }
+
+    /**
+     * Ajusta el lote por ascenso de colina: mientras los registros por segundo mejoran se sigue en la misma dirección,
+     * si empeoran se invierte. Si un lote supera la latencia máxima se reduce a la mitad.
+     * El intervalo de commit se fija para que haya aproximadamente un commit por segundo, con un máximo de registros.
+     */
+    private void ajustar(int registros, long latenciaNanos) {
+        double registrosPorSegundo = registros * 1e9 / latenciaNanos;
+        ultimaLatenciaNanos = latenciaNanos;
+
+        if (latenciaNanos > LATENCIA_MAXIMA_LOTE_NANOS) {
+            tamanoLote = Math.max(LOTE_MINIMO, tamanoLote / 2);
+            creciendo = false;
+        } else if (registros == tamanoLote) {
+            if (registrosPorSegundo < ultimosRegistrosPorSegundo * 0.95) {
+                creciendo = !creciendo;
+            }
+            tamanoLote = creciendo
+                    ? Math.min(LOTE_MAXIMO, tamanoLote * 2)
+                    : Math.max(LOTE_MINIMO, tamanoLote / 2);
+        }
+
+        ultimosRegistrosPorSegundo = registrosPorSegundo;
+        mejoresRegistrosPorSegundo = Math.max(mejoresRegistrosPorSegundo, registrosPorSegundo);
+        registrosPorCommit = (int) Math.max(tamanoLote, Math.min(MAXIMO_REGISTROS_POR_COMMIT, mejoresRegistrosPorSegundo * INTERVALO_COMMIT_NANOS / 1e9));
+    }
+}
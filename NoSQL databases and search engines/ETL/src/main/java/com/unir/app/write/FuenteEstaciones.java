@@ -0,0 +1,66 @@
+package com.unir.app.write;
+
+import com.unir.types.TipoEstacion;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CSV de estaciones de repostaje y la posición de sus columnas, que no es la misma en cada tipo de estación.
+ * Todos los CSV tienen en las mismas columnas la provincia, el municipio, la localidad, el código postal,
+ * la dirección y las coordenadas; el resto de columnas se declaran en cada fuente.
+ * Las columnas que una fuente no tiene valen SIN_COLUMNA y se usa su valor por defecto.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+public class FuenteEstaciones {
+
+    public static final int SIN_COLUMNA = -1;
+
+    public static final FuenteEstaciones TERRESTRES = new FuenteEstaciones(
+            "preciosEstacionesTerrestres.csv",
+            TipoEstacion.Terrestre,
+            9,              // Primera columna de precios
+            24,             // Columna siguiente a la última de precios
+            24,             // Rótulo
+            25,             // Horario
+            5,              // Margen
+            8,              // Fecha de los precios
+            SIN_COLUMNA,    // Tipo de venta: todas venden a vehículos terrestres
+            "Vehículos terrestres"
+    );
+
+    public static final FuenteEstaciones MARITIMAS = new FuenteEstaciones(
+            "preciosEstacionesMaritimas.csv",
+            TipoEstacion.Maritima,
+            8,              // Primera columna de precios
+            12,             // Columna siguiente a la última de precios
+            13,             // Rótulo
+            15,             // Horario
+            SIN_COLUMNA,    // Margen: no se publica, se usa N
+            SIN_COLUMNA,    // Fecha de los precios: no se publica, se usa la de la carga
+            14,             // Tipo de venta
+            null
+    );
+
+    /**
+     * Fuentes que se leen en cada carga, todas a la vez. Sus estaciones se guardan en este orden
+     */
+    public static final List<FuenteEstaciones> TODAS = Collections.unmodifiableList(Arrays.asList(TERRESTRES, MARITIMAS));
+
+    private final String fichero;
+    private final TipoEstacion tipoEstacion;
+    private final int primerCarburante;
+    private final int finCarburantes;
+    private final int columnaRotulo;
+    private final int columnaHorario;
+    private final int columnaMargen;
+    private final int columnaFecha;
+    private final int columnaTipoVenta;
+    // Tipo de venta de todas las estaciones cuando el CSV no tiene la columna
+    private final String tipoVentaFijo;
+}
@@ -0,0 +1,73 @@
+package com.unir.app.write;
+
+import com.unir.types.ModoCarga;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * Generación de los datos cargados: el número de la última carga terminada en la tabla cargas.
+ * RegistrarPrecios añade una fila al terminar cada carga, en cualquier modo, y quien guarda resultados de las
+ * consultas en memoria (CacheConsultas, BuscadorEstaciones) los descarta cuando la generación ha cambiado.
+ *
+ * Una carga sin terminar no cambia la generación, aunque ya haya escrito parte de los datos: los resultados que se
+ * calculen mientras tanto se guardan con la generación anterior y se descartan en cuanto termina.
+ */
+public final class GeneracionCarga {
+
+    // Sin ninguna carga terminada
+    public static final long NINGUNA = 0;
+
+    static final String INSERT_CARGA = "INSERT INTO cargas (modo, fecha) VALUES (?, ?)";
+    public static final String ULTIMA_CARGA = "SELECT COALESCE(MAX(generacion), " + NINGUNA + ") FROM cargas";
+
+    private GeneracionCarga() {
+    }
+
+    /**
+     * Apunta una carga terminada
+     * @param connection - Conexión a la base de datos consultada, con autocommit
+     * @param modo
+     * @return Generación de la carga
+     * @throws SQLException
+     */
+    public static long registrar(Connection connection, ModoCarga modo) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_CARGA, Statement.RETURN_GENERATED_KEYS)) {
+            insert.setString(1, modo.toString());
+            insert.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            insert.executeUpdate();
+
+            try (ResultSet generacion = insert.getGeneratedKeys()) {
+                generacion.next();
+                return generacion.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * @param connection
+     * @return Generación de la última carga terminada, o NINGUNA
+     * @throws SQLException
+     */
+    public static long leer(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(ULTIMA_CARGA)) {
+            return leer(select);
+        }
+    }
+
+    /**
+     * @param select - Sentencia preparada de ULTIMA_CARGA, por ejemplo de SentenciasPreparadas
+     * @return Generación de la última carga terminada, o NINGUNA
+     * @throws SQLException
+     */
+    public static long leer(PreparedStatement select) throws SQLException {
+        try (ResultSet generacion = select.executeQuery()) {
+            generacion.next();
+            return generacion.getLong(1);
+        }
+    }
+}
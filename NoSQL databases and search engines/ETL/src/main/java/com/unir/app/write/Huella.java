@@ -0,0 +1,34 @@
+package com.unir.app.write;
+
+/**
+ * Huella de 64 bits (FNV-1a) de los valores de un registro.
+ * Permite comparar un registro del CSV con el ya cargado guardando en memoria un long en lugar del registro completo.
+ */
+public final class Huella {
+
+    private static final long BASE = 0xcbf29ce484222325L;
+    private static final long PRIMO = 0x100000001b3L;
+
+    // Separador entre valores para que ("ab", "c") y ("a", "bc") no den la misma huella
+    private static final char SEPARADOR = '\u001f';
+
+    private Huella() {
+    }
+
+    /**
+     * Calcula la huella de los valores de un registro, en el orden en que se pasan.
+     * @param valores
+     * @return Huella del registro
+     */
+    public static long de(Object... valores) {
+        long huella = BASE;
+        for (Object valor : valores) {
+            String texto = String.valueOf(valor);
+            for (int i = 0; i < texto.length(); i++) {
+                huella = (huella ^ texto.charAt(i)) * PRIMO;
+            }
+            huella = (huella ^ SEPARADOR) * PRIMO;
+        }
+        return huella;
+    }
+}
@@ -0,0 +1,233 @@
+package com.unir.app.write;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lector de ficheros CSV separados por ';' que trabaja directamente sobre el fichero mapeado en memoria.
+ * Cada llamada a siguiente() solo calcula los límites de los campos de la línea; un campo se convierte en String
+ * únicamente cuando se pide con texto(), por lo que las columnas vacías o no usadas no generan objetos.
+ * Admite la marca BOM de UTF-8, líneas terminadas en \n o \r\n y campos entre comillas con comillas dobladas.
+ * El fichero se mapea por ventanas, por lo que puede superar los 2 GB; una línea no puede superar la ventana.
+ */
+public final class LectorCsv implements Closeable {
+
+    private static final long VENTANA = 1L << 28;
+    private static final byte SEPARADOR = ';';
+    private static final byte COMILLA = '"';
+
+    private final FileChannel canal;
+    private final long tamano;
+
+    private MappedByteBuffer ventana;
+    private long inicioVentana;
+    private int posicion;
+    private long posicionLinea;
+
+    // Límites [inicio, fin) de cada campo de la línea actual dentro de la ventana mapeada
+    private int[] inicios = new int[32];
+    private int[] fines = new int[32];
+    private boolean[] comillasDobladas = new boolean[32];
+    private int campos;
+    private byte[] bytes = new byte[256];
+
+    public LectorCsv(Path fichero) throws IOException {
+        this.canal = FileChannel.open(fichero, StandardOpenOption.READ);
+        this.tamano = canal.size();
+        mapear(0);
+
+        // Saltamos la marca BOM de UTF-8
+        if (ventana.limit() >= 3 && (ventana.get(0) & 0xFF) == 0xEF && (ventana.get(1) & 0xFF) == 0xBB && (ventana.get(2) & 0xFF) == 0xBF) {
+            posicion = 3;
+        }
+    }
+
+    /**
+     * Avanza a la siguiente línea del fichero.
+     * @return false si no quedan líneas
+     * @throws IOException
+     */
+    public boolean siguiente() throws IOException {
+        while (true) {
+            if (inicioVentana + posicion >= tamano) {
+                return false;
+            }
+            int inicioLinea = posicion;
+            if (separarCampos()) {
+                posicionLinea = inicioVentana + inicioLinea;
+                return true;
+            }
+            // La línea continúa después de la ventana: volvemos a mapear desde su inicio
+            if (inicioVentana + ventana.limit() >= tamano || inicioLinea == 0) {
+                throw new IOException("Línea demasiado larga en el offset " + (inicioVentana + inicioLinea));
+            }
+            mapear(inicioVentana + inicioLinea);
+        }
+    }
+
+    /**
+     * @return Número de campos de la línea actual
+     */
+    public int campos() {
+        return campos;
+    }
+
+    /**
+     * @return Posición en el fichero del inicio de la línea actual
+     */
+    public long posicionLinea() {
+        return posicionLinea;
+    }
+
+    /**
+     * @param campo
+     * @return true si el campo está vacío o la línea no lo tiene
+     */
+    public boolean estaVacio(int campo) {
+        return campo >= campos || inicios[campo] == fines[campo];
+    }
+
+    /**
+     * @param campo
+     * @return Número de bytes del campo, sin comillas
+     */
+    public int longitud(int campo) {
+        return campo >= campos ? 0 : fines[campo] - inicios[campo];
+    }
+
+    /**
+     * @param campo
+     * @param indice
+     * @return Byte en la posición indice del campo, sin convertirlo en String
+     */
+    public byte byteEn(int campo, int indice) {
+        return ventana.get(inicios[campo] + indice);
+    }
+
+    /**
+     * @param campo
+     * @return true si el campo tiene comillas dobladas, por lo que sus bytes no coinciden con su valor
+     */
+    public boolean tieneComillasDobladas(int campo) {
+        return campo < campos && comillasDobladas[campo];
+    }
+
+    /**
+     * Convierte el campo en String. Solo debe llamarse para los campos que se guardan.
+     * @param campo
+     * @return Valor del campo, vacío si la línea no lo tiene
+     */
+    public String texto(int campo) {
+        if (estaVacio(campo)) {
+            return "";
+        }
+
+        int longitud = 0;
+        for (int i = inicios[campo]; i < fines[campo]; i++) {
+            byte b = ventana.get(i);
+            // Las comillas dobladas dentro de un campo entre comillas representan una sola
+            if (comillasDobladas[campo] && b == COMILLA) {
+                i++;
+            }
+            if (longitud == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[longitud++] = b;
+        }
+        return new String(bytes, 0, longitud, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private void mapear(long inicio) throws IOException {
+        inicioVentana = inicio;
+        ventana = canal.map(FileChannel.MapMode.READ_ONLY, inicio, Math.min(VENTANA, tamano - inicio));
+        posicion = 0;
+    }
+
+    /**
+     * Calcula los límites de los campos de la línea que empieza en la posición actual.
+     * @return false si la línea no termina dentro de la ventana mapeada y no es el final del fichero
+     */
+    private boolean separarCampos() {
+        int limite = ventana.limit();
+        boolean ultimaVentana = inicioVentana + limite >= tamano;
+        int i = posicion;
+        campos = 0;
+
+        while (true) {
+            if (campos == inicios.length) {
+                ampliar();
+            }
+            boolean entreComillas = i < limite && ventana.get(i) == COMILLA;
+            boolean conComillasDobladas = false;
+            int inicio;
+            int fin;
+
+            if (entreComillas) {
+                inicio = ++i;
+                while (true) {
+                    if (i >= limite) {
+                        return false;
+                    }
+                    if (ventana.get(i) == COMILLA) {
+                        if (i + 1 < limite && ventana.get(i + 1) == COMILLA) {
+                            conComillasDobladas = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                fin = i++;
+                // Ignoramos lo que haya entre la comilla de cierre y el separador
+                while (i < limite && ventana.get(i) != SEPARADOR && ventana.get(i) != '\n') {
+                    i++;
+                }
+            } else {
+                inicio = i;
+                while (i < limite && ventana.get(i) != SEPARADOR && ventana.get(i) != '\n') {
+                    i++;
+                }
+                fin = i;
+            }
+
+            if (i >= limite && !ultimaVentana) {
+                return false;
+            }
+
+            boolean finDeLinea = i >= limite || ventana.get(i) == '\n';
+            // Quitamos el \r de las líneas terminadas en \r\n
+            if (finDeLinea && !entreComillas && fin > inicio && ventana.get(fin - 1) == '\r') {
+                fin--;
+            }
+
+            inicios[campos] = inicio;
+            fines[campos] = fin;
+            comillasDobladas[campos] = conComillasDobladas;
+            campos++;
+            i++;
+
+            if (finDeLinea) {
+                posicion = Math.min(i, limite);
+                return true;
+            }
+        }
+    }
+
+    private void ampliar() {
+        inicios = Arrays.copyOf(inicios, inicios.length * 2);
+        fines = Arrays.copyOf(fines, fines.length * 2);
+        comillasDobladas = Arrays.copyOf(comillasDobladas, comillasDobladas.length * 2);
+    }
+}
@@ -0,0 +1,168 @@
+package com.unir.app.write;
+
+import com.unir.config.MySqlConnector;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Convierte una base de datos laboratorio01 ya cargada con ids varchar(36) al esquema de basedatosBinario.sql.
+ *
+ * Las tablas binarias se crean en un esquema temporal y se copian con INSERT ... SELECT UUID_TO_BIN(...), sin pasar
+ * los datos por Java. Cuando todas las tablas tienen el mismo número de filas se intercambian con un único RENAME TABLE:
+ * las tablas originales pasan al esquema de respaldo y las binarias a laboratorio01. Si algo falla antes del RENAME
+ * la base de datos original no se modifica.
+ *
+ * Después de la migración hay que ejecutar el resto de programas con TIPO_CLAVE=BINARIO.
+ */
+@Slf4j
+public class MigrarClavesBinarias {
+
+    private static final String DATABASE = "laboratorio01";
+    private static final String ESQUEMA_TEMPORAL = "laboratorio01_binario";
+    private static final String ESQUEMA_RESPALDO = "laboratorio01_uuid";
+    private static final String SQL_FILE = "basedatosBinario.sql";
+
+    // Tablas en orden de dependencias con sus columnas. Las columnas id y *_id se convierten con UUID_TO_BIN
+    private static final String[][] TABLAS = {
+            {"provincias", "id", "nombre"},
+            {"municipios", "id", "provincia_id", "nombre"},
+            {"localidades", "id", "municipio_id", "nombre"},
+            {"carburantes", "id", "nombre"},
+            {"rotulos", "id", "nombre"},
+            {"tipo_ventas", "id", "nombre"},
+            {"estaciones", "id", "codigopostal", "latitud", "longitud", "localidad_id", "margen", "direccion",
+                    "fechaprecios", "horario", "rotulo_id", "tipoestacion", "tipoventa_id", "ubicacion"},
+            {"precios", "estacion_id", "carburante_id", "precio"},
+            {"resumen_precios", "carburante_id", "tipoestacion", "provincia_id", "minimo", "maximo", "media", "total",
+                    "estacion_minimo_id", "estacion_maximo_id"}
+    };
+
+    public static void main(String[] args) {
+        try (Connection connection = new MySqlConnector("localhost", DATABASE).getConnection()) {
+
+            if ("binary".equalsIgnoreCase(tipoColumnaId(connection))) {
+                log.info("La base de datos {} ya tiene las claves en binario", DATABASE);
+                return;
+            }
+            if (existeEsquema(connection, ESQUEMA_RESPALDO)) {
+                throw new IllegalStateException("Ya existe el esquema de respaldo " + ESQUEMA_RESPALDO + ", bórralo antes de migrar");
+            }
+
+            crearEsquemaTemporal(connection);
+            log.info("Creado el esquema {}", ESQUEMA_TEMPORAL);
+
+            copiarTablas(connection);
+            intercambiarTablas(connection);
+            log.info("Migración finalizada. Las tablas con claves en texto se han movido a {}", ESQUEMA_RESPALDO);
+
+        } catch (Exception e) {
+            log.error("Error al migrar las claves a binario", e);
+        }
+    }
+
+    /**
+     * Ejecuta basedatosBinario.sql sobre el esquema temporal, borrándolo si quedó de una migración anterior
+     */
+    private static void crearEsquemaTemporal(Connection connection) throws SQLException, IOException {
+        String script = new String(Files.readAllBytes(Paths.get(SQL_FILE)), StandardCharsets.UTF_8)
+                .replaceAll("(?m)^--.*$", "")
+                .replaceAll("\\b" + DATABASE + "\\b", ESQUEMA_TEMPORAL);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + ESQUEMA_TEMPORAL);
+            for (String sentencia : script.split(";")) {
+                if (!sentencia.trim().isEmpty()) {
+                    statement.execute(sentencia);
+                }
+            }
+            statement.execute("USE " + DATABASE);
+        }
+    }
+
+    /**
+     * Copia cada tabla al esquema temporal convirtiendo los ids y comprueba que tiene el mismo número de filas.
+     * Las claves ajenas ya se cumplen en el origen, así que no se comprueban durante la copia
+     */
+    private static void copiarTablas(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET SESSION foreign_key_checks = 0");
+
+            for (String[] tabla : TABLAS) {
+                StringJoiner columnas = new StringJoiner(", ");
+                StringJoiner valores = new StringJoiner(", ");
+                for (int i = 1; i < tabla.length; i++) {
+                    columnas.add(tabla[i]);
+                    valores.add(tabla[i].equals("id") || tabla[i].endsWith("_id") ? "UUID_TO_BIN(" + tabla[i] + ")" : tabla[i]);
+                }
+
+                long inicio = System.currentTimeMillis();
+                int filas = statement.executeUpdate("INSERT INTO " + ESQUEMA_TEMPORAL + "." + tabla[0] + " (" + columnas + ") "
+                        + "SELECT " + valores + " FROM " + DATABASE + "." + tabla[0]);
+
+                long filasOrigen = contarFilas(statement, DATABASE + "." + tabla[0]);
+                if (filas != filasOrigen) {
+                    throw new SQLException("La tabla " + tabla[0] + " tiene " + filasOrigen + " filas y se han copiado " + filas);
+                }
+                log.info("Copiada la tabla {}: {} filas en {} ms", tabla[0], filas, System.currentTimeMillis() - inicio);
+            }
+
+            statement.execute("SET SESSION foreign_key_checks = 1");
+        }
+    }
+
+    /**
+     * Mueve las tablas originales al esquema de respaldo y las binarias a laboratorio01 en un único RENAME TABLE,
+     * que es atómico: las consultas ven las tablas antiguas o las nuevas, nunca una mezcla
+     */
+    private static void intercambiarTablas(Connection connection) throws SQLException {
+        List<String> cambios = new ArrayList<>();
+        for (String[] tabla : TABLAS) {
+            cambios.add(DATABASE + "." + tabla[0] + " TO " + ESQUEMA_RESPALDO + "." + tabla[0]);
+            cambios.add(ESQUEMA_TEMPORAL + "." + tabla[0] + " TO " + DATABASE + "." + tabla[0]);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA " + ESQUEMA_RESPALDO + " COLLATE utf8mb4_0900_ai_ci");
+            statement.execute("RENAME TABLE " + String.join(", ", cambios));
+            statement.execute("DROP SCHEMA " + ESQUEMA_TEMPORAL);
+        }
+    }
+
+    private static long contarFilas(Statement statement, String tabla) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + tabla)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static String tipoColumnaId(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT DATA_TYPE FROM information_schema.COLUMNS "
+                + "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = 'estaciones' AND COLUMN_NAME = 'id'")) {
+            select.setString(1, DATABASE);
+            try (ResultSet resultSet = select.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+
+    private static boolean existeEsquema(Connection connection, String esquema) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT 1 FROM information_schema.SCHEMATA WHERE SCHEMA_NAME = ?")) {
+            select.setString(1, esquema);
+            try (ResultSet resultSet = select.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+}
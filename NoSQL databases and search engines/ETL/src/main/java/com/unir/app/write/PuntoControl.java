@@ -0,0 +1,126 @@
+package com.unir.app.write;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Punto de control de una carga completa, guardado en un fichero en la raíz del proyecto.
+ * Cada tabla, o cada partición de la tabla de precios, es un flujo de registros en el orden de los CSV identificado
+ * por su tabla y la clave de su primer registro. Después de cada commit se guarda cuántos registros del flujo hay
+ * confirmados y la clave del último, por lo que si la carga falla la siguiente ejecución salta esos registros
+ * y continúa donde se quedó.
+ *
+ * El fichero incluye la firma de los CSV (tamaño y fecha de modificación) y el número de particiones: si algún CSV
+ * o el tamaño del pool han cambiado el punto de control no sirve y la carga empieza de cero.
+ * El fichero se reescribe en uno temporal y se mueve de forma atómica, nunca queda a medias.
+ */
+@Slf4j
+public class PuntoControl {
+
+    private static final String FIRMA = "firma";
+
+    private final Path fichero;
+    private final Properties estado = new Properties();
+    private final boolean reanudando;
+
+    private PuntoControl(Path fichero, String firma) throws IOException {
+        this.fichero = fichero;
+
+        if (Files.exists(fichero)) {
+            try (InputStream entrada = Files.newInputStream(fichero)) {
+                estado.load(entrada);
+            }
+        }
+
+        this.reanudando = firma.equals(estado.getProperty(FIRMA));
+        if (!reanudando) {
+            estado.clear();
+            estado.setProperty(FIRMA, firma);
+        }
+    }
+
+    /**
+     * Abre el punto de control de la carga de unos CSV, o empieza uno nuevo si no existe o no coincide la firma.
+     * @param fichero - Fichero del punto de control
+     * @param particiones - Particiones de la tabla de precios, que cambian el reparto de registros entre flujos
+     * @param csvs - CSV que se cargan
+     * @return PuntoControl
+     * @throws IOException
+     */
+    public static PuntoControl abrir(Path fichero, int particiones, Path... csvs) throws IOException {
+        StringBuilder firma = new StringBuilder();
+        for (Path csv : csvs) {
+            firma.append(csv.getFileName()).append(':').append(Files.size(csv)).append(':')
+                    .append(Files.getLastModifiedTime(csv).toMillis()).append(';');
+        }
+        firma.append(particiones);
+        return new PuntoControl(fichero, firma.toString());
+    }
+
+    /**
+     * Nombre del flujo de una tabla o partición
+     * @param tabla
+     * @param primeraClave - Clave del primer registro del flujo
+     * @return Nombre del flujo
+     */
+    public static String flujo(String tabla, Object primeraClave) {
+        return tabla + "@" + primeraClave;
+    }
+
+    /**
+     * @return true si hay una carga anterior sin terminar de los mismos CSV
+     */
+    public boolean isReanudando() {
+        return reanudando;
+    }
+
+    /**
+     * @param flujo
+     * @return Registros del flujo ya confirmados
+     */
+    public synchronized long confirmados(String flujo) {
+        return Long.parseLong(estado.getProperty(flujo + ".registros", "0"));
+    }
+
+    /**
+     * @param flujo
+     * @return Clave del último registro confirmado del flujo, o null si no hay ninguno
+     */
+    public synchronized String ultimaClave(String flujo) {
+        return estado.getProperty(flujo + ".clave");
+    }
+
+    /**
+     * Guarda el avance de un flujo después de un commit
+     * @param flujo
+     * @param registros - Registros del flujo confirmados desde el principio
+     * @param ultimaClave - Clave del último registro confirmado
+     * @throws IOException
+     */
+    public synchronized void confirmar(String flujo, long registros, Object ultimaClave) throws IOException {
+        estado.setProperty(flujo + ".registros", Long.toString(registros));
+        estado.setProperty(flujo + ".clave", String.valueOf(ultimaClave));
+
+        Path temporal = fichero.resolveSibling(fichero.getFileName() + ".tmp");
+        try (OutputStream salida = Files.newOutputStream(temporal)) {
+            estado.store(salida, "Punto de control de la carga");
+        }
+        Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Borra el punto de control al terminar la carga completa
+     * @throws IOException
+     */
+    public synchronized void terminar() throws IOException {
+        Files.deleteIfExists(fichero);
+        log.debug("Punto de control {} borrado", fichero);
+    }
+}
@@ -1,23 +1,33 @@
 package com.unir.app.write;
 
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.exceptions.CsvValidationException;
-import com.unir.config.MySqlConnector;
+import com.unir.config.MySqlConnectionPool;
 import com.unir.models.*;
+import com.unir.types.ModoCarga;
+import com.unir.types.TipoClave;
 import com.unir.types.TipoEstacion;
 import com.unir.types.TipoMargen;
 import lombok.extern.slf4j.Slf4j;
-import java.io.FileReader;
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Programa que se encarga de registrar los precios de los carburantes en las diferentes estaciones de repostaje
@@ -31,38 +41,168 @@ public class RegistrarPrecios {
     // para no hacer tantas consultas, voy a guardar en memoria los registros que ya he procesado
     // bien sean aquellos que tengo que insertar porque no existen o aquellos que tengo que actualizar
     // porque lanzo una segunda vez un proceso de actualización.
-    private static List<Carburante> carburantes = new LinkedList<>();
-    private static List<TipoVenta> tipoVentas = new LinkedList<>();
-    private static List<Provincia> provincias = new LinkedList<>();
-    private static List<Municipio> municipios = new LinkedList<>();
-    private static List<Localidad> localidades = new LinkedList<>();
-    private static List<Rotulo> rotulos = new LinkedList<>();
-    private static List<Estacion> estaciones = new LinkedList<>();
-    private static List<Precio> precios = new LinkedList<>();
+    // Provincias, municipios, localidades, carburantes, rótulos y tipos de venta se guardan en registros que buscan
+    // por su clave natural con un ConcurrentHashMap, ya que se comprueba si existen en cada línea del CSV
+    // y los CSV se leen a la vez, cada uno en su hilo.
+    private static Registro<Carburante> carburantes = new Registro<>();
+    private static Registro<TipoVenta> tipoVentas = new Registro<>();
+    private static Registro<Provincia> provincias = new Registro<>();
+    private static Registro<Municipio> municipios = new Registro<>();
+    private static Registro<Localidad> localidades = new Registro<>();
+    private static Registro<Rotulo> rotulos = new Registro<>();
+    // Estaciones de todas las fuentes, unidas en el orden de FuenteEstaciones.TODAS al terminar de leerlas
+    private static List<Estacion> estaciones = new ArrayList<>();
+
+    // Los precios son la mayor parte de los registros y se guardan por columnas, sin un objeto por precio.
+    // Cada precio apunta a la posición de su estación en la lista de estaciones
+    private static AlmacenPrecios precios = new AlmacenPrecios(estaciones);
+
+    // Resumen de los precios por carburante, tipo de estación y provincia, que se acumula mientras se leen los CSV
+    // en cualquier modo y se escribe en resumen_precios al terminar de cargar los precios
+    private static ResumenPrecios resumenPrecios = new ResumenPrecios();
+
+    // Destino de las provincias, municipios, etc. que aparecen por primera vez. En modo COMPLETA ya quedan
+    // guardados en los registros al comprobar si existen, en modo STREAMING además se envían a la cola de su tabla.
+    // Solo los recibe el hilo que ha añadido el registro, por lo que cada uno se envía una vez
+    private static Consumer<Provincia> nuevasProvincias = provincia -> {};
+    private static Consumer<Municipio> nuevosMunicipios = municipio -> {};
+    private static Consumer<Localidad> nuevasLocalidades = localidad -> {};
+    private static Consumer<Carburante> nuevosCarburantes = carburante -> {};
+    private static Consumer<Rotulo> nuevosRotulos = rotulo -> {};
+    private static Consumer<TipoVenta> nuevosTipoVentas = tipoVenta -> {};
+    private static Map<String, Integer> aparicionesEstaciones = new ConcurrentHashMap<>();
+
+    // Datos ya cargados en la base de datos, solo se leen en modo DELTA. Las provincias, municipios, etc. se guardan
+    // en las listas anteriores con su id; las estaciones conservan su id y de cada estación y precio se guarda la huella.
+    // Mientras se leen los CSV solo se consultan: la clave de una estación incluye su tipo, por lo que cada cola de ids
+    // solo la usa el hilo de una fuente
+    private static Set<String> idsCargados = new HashSet<>();
+    private static Map<String, Deque<String>> idsEstacionesCargadas = new HashMap<>();
+    private static Map<String, Long> estacionesCargadas = new HashMap<>();
+    private static Map<String, Long> preciosCargados = new HashMap<>();
+
+    // Tablas que se cargan en modo SOMBRA y se intercambian al terminar
+    private static final String[] TABLAS = {"provincias", "municipios", "localidades", "carburantes", "rotulos",
+            "tipo_ventas", "estaciones", "precios", "resumen_precios"};
+
+    // Punto de control de la carga COMPLETA, para reanudarla si falla
+    private static final String FICHERO_PUNTO_CONTROL = "registrarPrecios.checkpoint";
+    private static PuntoControl puntoControl;
+
+    // Registros que caben en la cola de cada tabla en modo STREAMING
+    private static final int CAPACIDAD_COLA = 10000;
+
+    // Tipo de las columnas de id. Con TIPO_CLAVE=BINARIO los ids se escriben con UUID_TO_BIN y se leen con BIN_TO_UUID
+    private static final TipoClave CLAVE = TipoClave.actual();
+    private static final String ID = CLAVE.parametro();
+
+    private static final String INSERT_PROVINCIAS = "INSERT INTO provincias (id, nombre) "
+            + "VALUES (" + ID + ", ?)";
+    private static final String INSERT_MUNICIPIOS = "INSERT INTO municipios (id, nombre, provincia_id) "
+            + "VALUES (" + ID + ", ?, " + ID + ")";
+    private static final String INSERT_LOCALIDADES = "INSERT INTO localidades (id, nombre,  municipio_id) "
+            + "VALUES (" + ID + ", ?, " + ID + ")";
+    private static final String INSERT_CARBURANTES = "INSERT INTO carburantes (id, nombre) "
+            + "VALUES (" + ID + ", ?)";
+    private static final String INSERT_ROTULOS = "INSERT INTO rotulos (id, nombre) "
+            + "VALUES (" + ID + ", ?)";
+    private static final String INSERT_TIPO_VENTAS = "INSERT INTO tipo_ventas (id, nombre) "
+            + "VALUES (" + ID + ", ?)";
+    // La ubicación se escribe a la vez que las coordenadas como un POINT en WKT con SRID 4326
+    private static final String UBICACION = "ST_PointFromText(?, " + Coordenada.SRID + ")";
+    private static final String INSERT_ESTACIONES = "INSERT INTO estaciones (id,codigopostal,latitud, longitud, localidad_id,margen,direccion,fechaprecios,horario,tipoestacion,tipoventa_id, rotulo_id, ubicacion)"
+            + "VALUES (" + ID + ", ?, ?, ?, " + ID + ", ?, ?, ?, ?, ?, " + ID + ", " + ID + ", " + UBICACION + ")";
+    private static final String INSERT_PRECIOS = "INSERT INTO precios (estacion_id, carburante_id, precio) "
+            + "VALUES (" + ID + ", " + ID + ", ?)";
+    private static final String UPDATE_ESTACIONES = "UPDATE estaciones SET codigopostal = ?, latitud = ?, longitud = ?, localidad_id = " + ID + ", margen = ?, "
+            + "direccion = ?, fechaprecios = ?, horario = ?, tipoestacion = ?, tipoventa_id = " + ID + ", rotulo_id = " + ID + ", ubicacion = " + UBICACION
+            + " WHERE id = " + ID;
+    private static final String DELETE_ESTACIONES = "DELETE FROM estaciones WHERE id = " + ID;
+    private static final String UPDATE_PRECIOS = "UPDATE precios SET precio = ? WHERE estacion_id = " + ID + " AND carburante_id = " + ID;
+    private static final String DELETE_PRECIOS = "DELETE FROM precios WHERE estacion_id = " + ID + " AND carburante_id = " + ID;
+    private static final String INSERT_RESUMEN_PRECIOS = "INSERT INTO resumen_precios (carburante_id, tipoestacion, provincia_id, minimo, maximo, media, total, estacion_minimo_id, estacion_maximo_id) "
+            + "VALUES (" + ID + ", ?, " + ID + ", ?, ?, ?, ?, " + ID + ", " + ID + ")";
 
 
     public static void main(String[] args) {
 
-        //Creamos conexión. No es necesario indicar puerto en host si usamos el default, 1521
-        //Try-with-resources. Se cierra la conexión automáticamente al salir del bloque try
-        try(Connection connection = new MySqlConnector("localhost", DATABASE).getConnection()) {
+        //Creamos el pool de conexiones. No es necesario indicar puerto en host si usamos el default, 1521
+        //Try-with-resources. Se cierran las conexiones automáticamente al salir del bloque try
+        try(MySqlConnectionPool pool = new MySqlConnectionPool("localhost", DATABASE, MySqlConnectionPool.defaultSize())) {
 
-            log.info("Conexión establecida con la base de datos MySQL");
+            log.info("Conexión establecida con la base de datos MySQL, {} conexiones", pool.getSize());
 
-            // Se vacía la base de datos para que no haya datos duplicados
-            vaciarBaseDatos(connection);
-            log.info("Base de datos vaciada correctamente");
+            ModoCarga modo = ModoCarga.actual();
+            CargaEnSombra sombra = new CargaEnSombra(DATABASE, TABLAS);
+            if (modo == ModoCarga.COMPLETA) {
+                Path[] csvs = new Path[FuenteEstaciones.TODAS.size()];
+                for (int i = 0; i < csvs.length; i++) {
+                    csvs[i] = Paths.get(FuenteEstaciones.TODAS.get(i).getFichero());
+                }
+                puntoControl = PuntoControl.abrir(Paths.get(FICHERO_PUNTO_CONTROL), pool.getSize(), csvs);
+            }
+
+            if (modo == ModoCarga.DELTA) {
+                // Se leen los datos ya cargados para escribir solo las diferencias
+                pool.run(connection -> {
+                    leerDatosCargados(connection);
+                    return null;
+                });
+                log.info("Leídos los datos ya cargados: {} estaciones y {} precios", estacionesCargadas.size(), preciosCargados.size());
+            } else if (modo == ModoCarga.SOMBRA) {
+                // No se vacía la base de datos: se crean tablas vacías en otro esquema y se cargan en ellas
+                pool.run(connection -> {
+                    sombra.preparar(connection);
+                    return null;
+                });
+            } else if (puntoControl != null && puntoControl.isReanudando()) {
+                // Una carga anterior de los mismos CSV no terminó: no se vacía la base de datos y se continúa donde se quedó
+                log.info("Reanudando la carga anterior desde el punto de control {}", FICHERO_PUNTO_CONTROL);
+            } else {
+                // Se vacía la base de datos para que no haya datos duplicados
+                pool.run(connection -> {
+                    vaciarBaseDatos(connection);
+                    return null;
+                });
+                log.info("Base de datos vaciada correctamente");
+            }
 
-            // Leemos las estaciones terrestres y las cargamos en memoria
-            leerCsvEstaciones(TipoEstacion.Terrestre);
-            log.info("Se han cargado en memoria las estaciones terrestres, número total = {}", estaciones.size());
+            if (modo == ModoCarga.STREAMING) {
+                // Leemos los CSV y escribimos los registros a la vez, sin guardarlos en memoria
+                long numeroEstaciones = cargarEnStreaming();
+                pool.run(connection -> {
+                    agregarResumenPrecios(connection);
+                    return null;
+                });
+                registrarCarga(pool, modo);
+                log.info("Carga de información finalizada correctamente. Se han cargado las estaciones, número total = {}", numeroEstaciones);
+                return;
+            }
 
-            // Leer las estaciones marítimas y las cargamos en memoria
-            leerCsvEstaciones(TipoEstacion.Maritima);
-            log.info("Se han cargado en memoria las estaciones marítimas, ahora el número número total de estaciones es = {}", estaciones.size());
+            // Leemos todas las fuentes a la vez, cada una en sus propias listas, y las unimos en memoria en su orden
+            List<LecturaEnMemoria> lecturas = leerFuentes(fuente -> {
+                LecturaEnMemoria lectura = new LecturaEnMemoria();
+                leerCsvEstaciones(fuente, lectura.estaciones::add, (estacion, carburante, milesimas) ->
+                        lectura.precios.agregar(lectura.estaciones.size() - 1, carburante, milesimas));
+                return lectura;
+            });
+            for (LecturaEnMemoria lectura : lecturas) {
+                int primeraEstacion = estaciones.size();
+                estaciones.addAll(lectura.estaciones);
+                precios.anexar(lectura.precios, primeraEstacion);
+            }
+            log.info("Se han cargado en memoria las estaciones de {} fuentes, número total = {}", lecturas.size(), estaciones.size());
 
             // Cargamos los datos en la base de datos
-            cargarDatosEnBaseDatos(connection);
+            if (modo == ModoCarga.DELTA) {
+                cargarDiferenciasEnBaseDatos(pool);
+            } else if (modo == ModoCarga.SOMBRA) {
+                cargarEnSombra(pool, sombra);
+            } else {
+                cargarDatosEnBaseDatos(pool);
+                puntoControl.terminar();
+            }
+            registrarCarga(pool, modo);
 
             log.info("Carga de información finalizada correctamente. Se han cargado las estaciones, número total = {}", estaciones.size());
 
@@ -72,161 +212,165 @@ public class RegistrarPrecios {
     }
 
     /**
-     * Lee los datos del csv de estaciones terrestres de postaje repostaje y los guarda en memoria
+     * Lee todas las fuentes a la vez, cada una en su propio hilo, por lo que añadir fuentes no alarga la lectura
+     * mientras haya procesadores libres.
+     * @param lectura - Lectura de una fuente
+     * @return Resultado de cada fuente, en el orden de FuenteEstaciones.TODAS
      */
-    private static void leerCsvEstaciones(TipoEstacion tipoEstacion) {
-        String nombreFichero = "";
-        TipoVenta tipoVenta = null;
-        if (tipoEstacion == TipoEstacion.Terrestre) {
-        	nombreFichero = "preciosEstacionesTerrestres.csv";
-        } else {
-        	nombreFichero = "preciosEstacionesMaritimas.csv";
+    private static <T> List<T> leerFuentes(Function<FuenteEstaciones, T> lectura) {
+        ExecutorService lectores = Executors.newFixedThreadPool(FuenteEstaciones.TODAS.size());
+        try {
+            List<CompletableFuture<T>> lecturas = new ArrayList<>();
+            for (FuenteEstaciones fuente : FuenteEstaciones.TODAS) {
+                lecturas.add(CompletableFuture.supplyAsync(() -> lectura.apply(fuente), lectores));
+            }
+
+            List<T> resultados = new ArrayList<>();
+            for (CompletableFuture<T> resultado : lecturas) {
+                resultados.add(resultado.join());
+            }
+            return resultados;
+        } catch (CompletionException e) {
+            // Lanzamos el error de la fuente que ha fallado tal cual
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        } finally {
+            lectores.shutdown();
         }
+    }
+
+    /**
+     * Lee las estaciones y precios de un CSV de estaciones de repostaje y los envía a sus destinos.
+     * Se puede llamar a la vez para varias fuentes: los registros de provincias, carburantes, rótulos, etc.
+     * son compartidos y seguros entre hilos, y cada lectura tiene sus propios diccionarios.
+     *
+     * @param fuente - CSV y posición de sus columnas
+     * @param destinoEstaciones - Destino de cada estación leída
+     * @param destinoPrecios - Destino de cada precio leído, justo después de su estación
+     * @return Número de estaciones leídas
+     */
+    private static long leerCsvEstaciones(FuenteEstaciones fuente, Consumer<Estacion> destinoEstaciones, DestinoPrecio destinoPrecios) {
+        TipoEstacion tipoEstacion = fuente.getTipoEstacion();
+        long numeroEstaciones = 0;
+
+        // Diccionarios de los textos que se repiten en muchas líneas: nombres de provincias, municipios, localidades,
+        // rótulos, tipos de venta y márgenes, y horarios. Las estaciones comparten una única copia de cada horario
+        Diccionario nombres = new Diccionario();
+        Diccionario horarios = new Diccionario();
+        // Resumen de los precios de esta fuente, que se anexa al de la carga al terminar de leerla
+        ResumenPrecios resumen = new ResumenPrecios();
+
+        // Try-with-resources. Se cierra el fichero automáticamente al salir del bloque try
+        // LectorCsv recorre el fichero mapeado en memoria linea a linea y solo crea los String de los campos que usamos
+        try (LectorCsv nextLine = new LectorCsv(Paths.get(fuente.getFichero()))) {
 
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader(nombreFichero))
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';').build()).build()) {
+            // Convierte números y fechas directamente desde los bytes del fichero
+            ConversorCampos conversor = new ConversorCampos();
 
 
             // Saltamos la primera línea, que contiene los nombres de las columnas del CSV
             // No la saltamos ya que la necesitamos para sacar los nombres de los carburantes
-            String[] nextLine;
-            nextLine = reader.readNext();
-            // Definimos los rangos del csv dependiendo si es terrestre o marítimo
-            Integer carburanteIndiceCsvInicio = tipoEstacion.equals(TipoEstacion.Terrestre)? 9: 8;
-            Integer carburanteIndiceCsvFin = tipoEstacion.equals(TipoEstacion.Terrestre)? 24: 12;
+            if (!nextLine.siguiente()) {
+                return 0;
+            }
+            // Los rangos de columnas de precios los declara cada fuente
+            int carburanteIndiceCsvInicio = fuente.getPrimerCarburante();
+            int carburanteIndiceCsvFin = fuente.getFinCarburantes();
 
-            // Sacamos los carburantes
+            // Sacamos los carburantes, guardando el de cada columna de precio del fichero
+            Carburante[] carburantesCsv = new Carburante[carburanteIndiceCsvFin - carburanteIndiceCsvInicio];
             for (int i = carburanteIndiceCsvInicio; i < carburanteIndiceCsvFin; i++) {
 
                 // quiero quitar la palabra Precio de la columna
-                String nombreCarburante = nextLine[i].replace("Precio ", "");
-
-                Carburante carburante = new Carburante(
-                        UUID.randomUUID().toString(),
-                        nombreCarburante
-                );
-
-                // Comprobamos si el carburante ya existe en la lista de carburantes
-                carburante = carburante.AgregarSiNoExiste(carburantes);
+                carburantesCsv[i - carburanteIndiceCsvInicio] = obtenerCarburante(nextLine.texto(i).replace("Precio ", ""));
             }
 
-            // Como estamos en un CSV de estaciones terrestres, añadimos el tipo de venta de vehículos terrestres
-            if (tipoEstacion == TipoEstacion.Terrestre) {
-                tipoVenta = new TipoVenta(UUID.randomUUID().toString(), "Vehículos terrestres");
-                tipoVentas.add(tipoVenta);
-            }
+            // Si el CSV no tiene la columna de tipo de venta, todas sus estaciones tienen el mismo,
+            // por ejemplo el de vehículos terrestres
+            TipoVenta tipoVenta = fuente.getTipoVentaFijo() == null ? null : obtenerTipoVenta(fuente.getTipoVentaFijo());
 
             // Leemos el fichero linea a linea
-            while((nextLine = reader.readNext()) != null) {
-                // Comprobamos si la provincia ya existe en la lista de provincias
-                Provincia provincia = new Provincia(
-                        UUID.randomUUID().toString(),
-                        nextLine[0]
-                );
-
-                // Si no existe la añadimos a la lista de provincias
-                provincia = provincia.AgregarSiNoExiste(provincias);
-
-
-                // Comprobamos si el municipio ya existe en la lista de municipios
-                Municipio municipio = new Municipio(
-                        UUID.randomUUID().toString(),
-                        nextLine[1],
-                        provincia
-                );
-
-                // Si no existe lo añadimos a la lista de municipios
-                municipio = municipio.AgregarSiNoExiste(municipios);
-
-                // Comprobamos si la localidad ya existe en la lista de localidades
-                Localidad localidad = new Localidad(
-                        UUID.randomUUID().toString(),
-                        nextLine[2],
-                        provincia,
-                        municipio
-                );
-
-                // Si no existe lo añadimos a la lista de localidades
-                localidad = localidad.AgregarSiNoExiste(localidades);
-
-
-                // Comprobamos si el tipo de venta ya existe en la lista de tipos de ventas
-                // En este cáso solo para marítimas, para las estaciones terrestres hemos creado uno por defecto: Vehículos terrestres
-                if (tipoEstacion == TipoEstacion.Maritima) {
-                    tipoVenta = new TipoVenta(
-                            UUID.randomUUID().toString(),
-                            nextLine[14]
-                    );
-
-                    // Si no existe lo añadimos a la lista de tipos de ventas
-                    tipoVenta = tipoVenta.AgregarSiNoExiste(tipoVentas);
+            while(nextLine.siguiente()) {
+                // Buscamos la provincia, el municipio y la localidad en sus registros y los creamos si no existen
+                // Los nombres se toman de los diccionarios, que no crean un String si el nombre ya ha aparecido
+                Provincia provincia = obtenerProvincia(nombres.texto(nextLine, 0));
+                Municipio municipio = obtenerMunicipio(nombres.texto(nextLine, 1), provincia);
+                Localidad localidad = obtenerLocalidad(nombres.texto(nextLine, 2), municipio);
+
+                // Comprobamos si el tipo de venta ya existe en el registro de tipos de ventas
+                if (fuente.getColumnaTipoVenta() != FuenteEstaciones.SIN_COLUMNA) {
+                    tipoVenta = obtenerTipoVenta(nombres.texto(nextLine, fuente.getColumnaTipoVenta()));
                 }
 
-                // Comprobamos si el rótulo ya existe en la lista de rótulos
-                Rotulo rotulo = new Rotulo(
-                        UUID.randomUUID().toString(),
-                        nextLine[tipoEstacion.equals(TipoEstacion.Terrestre)? 24: 13]
-                );
-
-                // Si no existe lo añadimos a la lista de rótulos
-                rotulo = rotulo.AgregarSiNoExiste(rotulos);
+                // Comprobamos si el rótulo ya existe en el registro de rótulos
+                Rotulo rotulo = obtenerRotulo(nombres.texto(nextLine, fuente.getColumnaRotulo()));
 
                 // Estación de repostaje
+                // Coordenadas en millonésimas de grado
+                int longitud = nextLine.estaVacio(6)? Coordenada.SIN_COORDENADA : conversor.leerMicrogrados(nextLine, 6);
+                int latitud = nextLine.estaVacio(7)? Coordenada.SIN_COORDENADA : conversor.leerMicrogrados(nextLine, 7);
+                TipoMargen tipoMargen = fuente.getColumnaMargen() == FuenteEstaciones.SIN_COLUMNA ? TipoMargen.N
+                        : TipoMargen.valueOf(nombres.texto(nextLine, fuente.getColumnaMargen()));
+                String direccion = nextLine.texto(4);
+
                 Estacion estacion = new Estacion(
-                        UUID.randomUUID().toString(),
+                        idEstacion(claveEstacion(tipoEstacion, direccion, tipoMargen, longitud, latitud)),
                         rotulo,
-                        nextLine[6].isEmpty()?null: convertirStringABigDecimal(nextLine[6]),
-                        nextLine[7].isEmpty()?null: convertirStringABigDecimal(nextLine[7]),
-                        nextLine[3],
-                        nextLine[4],
+                        longitud,
+                        latitud,
+                        nextLine.texto(3),
+                        direccion,
                         localidad,
-                        TipoMargen.valueOf(tipoEstacion.equals(TipoEstacion.Terrestre)?  nextLine[5] : TipoMargen.N.toString()),
-                        nextLine[tipoEstacion.equals(TipoEstacion.Terrestre)? 25 : 15],
-                        tipoEstacion.equals(TipoEstacion.Terrestre)? convertirStringAFecha(nextLine[8]) : new Date(System.currentTimeMillis()),
+                        tipoMargen,
+                        horarios.texto(nextLine, fuente.getColumnaHorario()),
+                        fuente.getColumnaFecha() != FuenteEstaciones.SIN_COLUMNA ? new Date(conversor.leerFecha(nextLine, fuente.getColumnaFecha())) : new Date(System.currentTimeMillis()),
                         tipoEstacion,
                         tipoVenta
                 );
 
-                // Fecha actual
-                Date fechaActual = new Date(System.currentTimeMillis());
-
                 // Si no existe la añadimos a la lista de estaciones, en este caso no hace falta ver si ya existe por que todas las estaciones
                 // son diferentes
-                estaciones.add(estacion);
+                destinoEstaciones.accept(estacion);
+                numeroEstaciones++;
 
 
                 // Se recorren los carburantes y metemos en memoria los precios por cada estación
                 for (int i = carburanteIndiceCsvInicio; i < carburanteIndiceCsvFin; i++) {
 
                     // Si no tiene precie no lo agregamos a la lista de precios
-                    if (!nextLine[i].isEmpty()){
+                    if (!nextLine.estaVacio(i)){
                         // Obtenemos el carburante
-                        Carburante carburante = carburantes.get(i - carburanteIndiceCsvInicio);
-
-                        // Creamos el precio
-                        Precio precio = new Precio(
-                                estacion,
-                                carburante,
-                                convertirStringADouble(nextLine[i])
-                        );
+                        Carburante carburante = carburantesCsv[i - carburanteIndiceCsvInicio];
 
-                        // Añadimos el precio a la lista de precios
-                        precios.add(precio);
+                        // Añadimos el precio, en milésimas de euro
+                        int milesimas = conversor.leerMilesimas(nextLine, i);
+                        destinoPrecios.agregar(estacion, carburante, milesimas);
+                        resumen.agregar(estacion, carburante, milesimas);
                     }
 
 
                 }
             }
         } catch (IOException e) {
-            log.error("Error al leer el fichero CSV y sacar las provincias", e);
+            log.error("Error al leer el fichero CSV " + fuente.getFichero(), e);
             throw new RuntimeException(e);
-        } catch (CsvValidationException | ParseException e) {
+        } catch (ParseException e) {
             throw new RuntimeException(e);
         }
+
+        resumenPrecios.anexar(resumen);
+        log.info("Se han leído las estaciones de {}, número total = {}", fuente.getFichero(), numeroEstaciones);
+        return numeroEstaciones;
+    }
+
+    /**
+     * Apunta la carga terminada en la tabla cargas, lo que invalida los resultados guardados en memoria de las consultas
+     * @param pool
+     * @param modo
+     * @throws SQLException
+     */
+    private static void registrarCarga(MySqlConnectionPool pool, ModoCarga modo) throws SQLException {
+        long generacion = pool.run(connection -> GeneracionCarga.registrar(connection, modo));
+        log.info("Carga registrada con la generación {}", generacion);
     }
 
     /**
@@ -237,6 +381,7 @@ public class RegistrarPrecios {
      */
     private static void vaciarBaseDatos(Connection connection) {
         try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM resumen_precios");
             statement.executeUpdate("DELETE FROM precios");
             statement.executeUpdate("DELETE FROM carburantes");
             statement.executeUpdate("DELETE FROM estaciones");
@@ -244,6 +389,7 @@ public class RegistrarPrecios {
             statement.executeUpdate("DELETE FROM municipios");
             statement.executeUpdate("DELETE FROM provincias");
             statement.executeUpdate("DELETE FROM rotulos");
+            statement.executeUpdate("DELETE FROM tipo_ventas");
 
         } catch (SQLException e) {
             log.error("Error al vaciar la base de datos", e);
@@ -252,185 +398,446 @@ public class RegistrarPrecios {
     }
 
     /**
-     * Carga los datos en la base de datos
+     * Carga los datos en la base de datos siguiendo el grafo de claves foráneas:
+     * provincias -> municipios -> localidades -> estaciones -> precios.
+     * Carburantes, rótulos y tipos de venta son independientes y se cargan a la vez que las provincias.
+     * La tabla de precios se reparte entre todas las conexiones del pool.
      *
-     * @param connection - Conexión a la base de datos
+     * @param pool - Pool de conexiones a la base de datos
      * @throws SQLException - Error al cargar los datos en la base de datos
      */
-    private static void cargarDatosEnBaseDatos (Connection connection) throws SQLException {
-        // Insertamos las provincias en la base de datos
-        agregarProvincias(connection);
-        log.info("Se han insertado las provincias correctamente");
-        // Insertamos los municipios en la base de datos
-        agregarMunicipios(connection);
-        log.info("Se han insertado los municipios correctamente");
-
-        // Insertamos las localidades en la base de datos
-        agregarLocalidades(connection);
-        log.info("Se han insertado las localidades correctamente");
-
-        // Insertamos los carburantes en la base de datos
-        agregarCarburantes(connection);
-        log.info("Se han insertado los carburantes correctamente");
-
-        // Insertamos los rótulos en la base de datos
-        agregarRotulos(connection);
-        log.info("Se han insertado los rótulos correctamente");
-
-        // Insertamos los tipos de venta en la base de datos
-        agregarTipoVenta(connection);
-        log.info("Se han insertado los tipos de venta correctamente");
-
-        // Insertamos las estaciones en la base de datos
-        agregarEstaciones(connection);
-        log.info("Se han insertado las estaciones correctamente");
-
-        // Insertamos los precios en la base de datos
-        agregarPrecios(connection);
+    private static void cargarDatosEnBaseDatos (MySqlConnectionPool pool) throws SQLException {
+        new CargadorParalelo(pool)
+                // Insertamos las provincias en la base de datos
+                .tabla("provincias", connection -> {
+                    agregarProvincias(connection);
+                    log.info("Se han insertado las provincias correctamente");
+                })
+                // Insertamos los carburantes en la base de datos
+                .tabla("carburantes", connection -> {
+                    agregarCarburantes(connection);
+                    log.info("Se han insertado los carburantes correctamente");
+                })
+                // Insertamos los rótulos en la base de datos
+                .tabla("rotulos", connection -> {
+                    agregarRotulos(connection);
+                    log.info("Se han insertado los rótulos correctamente");
+                })
+                // Insertamos los tipos de venta en la base de datos
+                .tabla("tipo_ventas", connection -> {
+                    agregarTipoVenta(connection);
+                    log.info("Se han insertado los tipos de venta correctamente");
+                })
+                // Insertamos los municipios en la base de datos
+                .tabla("municipios", connection -> {
+                    agregarMunicipios(connection);
+                    log.info("Se han insertado los municipios correctamente");
+                }, "provincias")
+                // Insertamos las localidades en la base de datos
+                .tabla("localidades", connection -> {
+                    agregarLocalidades(connection);
+                    log.info("Se han insertado las localidades correctamente");
+                }, "municipios")
+                // Insertamos las estaciones en la base de datos
+                .tabla("estaciones", connection -> {
+                    agregarEstaciones(connection);
+                    log.info("Se han insertado las estaciones correctamente");
+                }, "localidades", "rotulos", "tipo_ventas")
+                // Insertamos los precios en la base de datos, repartidos entre las conexiones del pool
+                .tablaPorRangos("precios", precios.size(), pool.getSize(),
+                        (connection, desde, hasta) -> agregarPrecios(connection, precios.registros(desde, hasta)),
+                        "estaciones", "carburantes")
+                // Reescribimos el resumen de los precios cuando están todos cargados
+                .tabla("resumen_precios", RegistrarPrecios::agregarResumenPrecios, "precios")
+                .esperar();
         log.info("Se han insertado los precios correctamente");
     }
 
+    /**
+     * Carga los datos en las tablas sombra con un pool de conexiones al esquema de carga, crea sus índices
+     * y las intercambia con las de la base de datos. Hasta el intercambio las consultas ven los datos anteriores.
+     *
+     * @param pool - Pool de conexiones a la base de datos
+     * @param sombra - Tablas sombra ya creadas
+     * @throws SQLException - Error al cargar los datos en la base de datos
+     */
+    private static void cargarEnSombra(MySqlConnectionPool pool, CargaEnSombra sombra) throws SQLException {
+        try (MySqlConnectionPool poolCarga = new MySqlConnectionPool("localhost", sombra.getEsquemaCarga(), pool.getSize())) {
+            cargarDatosEnBaseDatos(poolCarga);
+        }
 
-    // Método privado para convertir un string con comas a BigDecimal
-    private static BigDecimal convertirStringABigDecimal(String valor) {
-        valor = valor.replace(",", ".");
-        return new BigDecimal(valor);
+        pool.run(connection -> {
+            sombra.construirIndices(connection);
+            sombra.intercambiar(connection);
+            return null;
+        });
+        log.info("Se han intercambiado las tablas cargadas con las de {}", DATABASE);
     }
 
-    // Método privado para convertir un string a fecha
-    private static Date convertirStringAFecha(String valor) throws ParseException {
-        SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy HH:mm");
-
-        return new Date(format.parse(valor).getTime());
+    /**
+     * Escribe solo las diferencias entre los CSV y los datos ya cargados, siguiendo el mismo grafo de claves foráneas.
+     * Las provincias, municipios, etc. nuevos se insertan. De estaciones y precios se insertan los nuevos,
+     * se actualizan los que han cambiado y se borran los que ya no aparecen, cada tabla en transacciones cortas
+     * para que las consultas puedan seguir leyendo durante la carga.
+     * La fecha de precios no forma parte de la huella de la estación: una estación se actualiza cuando cambian
+     * sus datos o alguno de sus precios.
+     *
+     * @param pool - Pool de conexiones a la base de datos
+     * @throws SQLException - Error al cargar los datos en la base de datos
+     */
+    private static void cargarDiferenciasEnBaseDatos(MySqlConnectionPool pool) throws SQLException {
+
+        // De los precios que cambian se guarda su posición en el almacén
+        Diferencias<String, Integer> diferenciasPrecios = new Diferencias<>(preciosCargados);
+        Set<String> estacionesConPreciosModificados = new HashSet<>();
+        for (AlmacenPrecios.Cursor precio : precios.registros()) {
+            if (!diferenciasPrecios.comparar(clavePrecio(precio.getEstacion().getId(), precio.getCarburante().getId()), huella(precio), precio.getPosicion())) {
+                estacionesConPreciosModificados.add(precio.getEstacion().getId());
+            }
+        }
+        for (String clave : diferenciasPrecios.getBorrados()) {
+            estacionesConPreciosModificados.add(clave.substring(0, clave.indexOf('|')));
+        }
 
-    }
+        Diferencias<String, Estacion> diferenciasEstaciones = new Diferencias<>(estacionesCargadas);
+        for (Estacion estacion : estaciones) {
+            if (diferenciasEstaciones.comparar(estacion.getId(), huella(estacion), estacion)
+                    && estacionesConPreciosModificados.contains(estacion.getId())) {
+                diferenciasEstaciones.modificar(estacion);
+            }
+        }
 
-    // Método privado para convertir un string a double
-    private static Double convertirStringADouble(String valor) {
-        valor = valor.replace(",", ".");
-        return Double.parseDouble(valor);
+        log.info("Estaciones: {} nuevas, {} modificadas, {} borradas. Precios: {} nuevos, {} modificados, {} borrados",
+                diferenciasEstaciones.getNuevos().size(), diferenciasEstaciones.getModificados().size(), diferenciasEstaciones.getBorrados().size(),
+                diferenciasPrecios.getNuevos().size(), diferenciasPrecios.getModificados().size(), diferenciasPrecios.getBorrados().size());
+
+        new CargadorParalelo(pool)
+                .tabla("provincias", connection ->
+                        new EscritorPorLotes<>(connection, "provincias", INSERT_PROVINCIAS, RegistrarPrecios::asignarProvincia)
+                                .escribir(noCargados(provincias, Provincia::getId)))
+                .tabla("carburantes", connection ->
+                        new EscritorPorLotes<>(connection, "carburantes", INSERT_CARBURANTES, RegistrarPrecios::asignarCarburante)
+                                .escribir(noCargados(carburantes, Carburante::getId)))
+                .tabla("rotulos", connection ->
+                        new EscritorPorLotes<>(connection, "rotulos", INSERT_ROTULOS, RegistrarPrecios::asignarRotulo)
+                                .escribir(noCargados(rotulos, Rotulo::getId)))
+                .tabla("tipo_ventas", connection ->
+                        new EscritorPorLotes<>(connection, "tipo_ventas", INSERT_TIPO_VENTAS, RegistrarPrecios::asignarTipoVenta)
+                                .escribir(noCargados(tipoVentas, TipoVenta::getId)))
+                .tabla("municipios", connection ->
+                        new EscritorPorLotes<>(connection, "municipios", INSERT_MUNICIPIOS, RegistrarPrecios::asignarMunicipio)
+                                .escribir(noCargados(municipios, Municipio::getId)), "provincias")
+                .tabla("localidades", connection ->
+                        new EscritorPorLotes<>(connection, "localidades", INSERT_LOCALIDADES, RegistrarPrecios::asignarLocalidad)
+                                .escribir(noCargados(localidades, Localidad::getId)), "municipios")
+                .tabla("estaciones", connection -> {
+                    new EscritorPorLotes<>(connection, "estaciones", INSERT_ESTACIONES, RegistrarPrecios::asignarEstacion)
+                            .escribir(diferenciasEstaciones.getNuevos());
+                    new EscritorPorLotes<>(connection, "estaciones (modificadas)", UPDATE_ESTACIONES, RegistrarPrecios::asignarEstacionModificada)
+                            .escribir(diferenciasEstaciones.getModificados());
+                }, "localidades", "rotulos", "tipo_ventas")
+                .tabla("precios", connection -> {
+                    new EscritorPorLotes<>(connection, "precios (borrados)", DELETE_PRECIOS, RegistrarPrecios::asignarPrecioBorrado)
+                            .escribir(diferenciasPrecios.getBorrados());
+                    new EscritorPorLotes<>(connection, "precios", INSERT_PRECIOS, RegistrarPrecios::asignarPrecio)
+                            .escribir(precios.seleccionar(diferenciasPrecios.getNuevos()).registros());
+                    new EscritorPorLotes<>(connection, "precios (modificados)", UPDATE_PRECIOS, RegistrarPrecios::asignarPrecioModificado)
+                            .escribir(precios.seleccionar(diferenciasPrecios.getModificados()).registros());
+                }, "estaciones", "carburantes")
+                // Las estaciones que ya no aparecen se borran cuando ya no tienen precios
+                .tabla("estaciones (borradas)", connection ->
+                        new EscritorPorLotes<>(connection, "estaciones (borradas)", DELETE_ESTACIONES, RegistrarPrecios::asignarEstacionBorrada)
+                                .escribir(diferenciasEstaciones.getBorrados()), "precios")
+                // El resumen se calcula con todos los precios leídos, no solo con las diferencias, y se reescribe entero
+                .tabla("resumen_precios", RegistrarPrecios::agregarResumenPrecios, "precios")
+                .esperar();
+        log.info("Se han cargado las diferencias correctamente");
     }
 
     /**
-     * Inserta las provincias en la base de datos
+     * Lee los datos ya cargados. Las provincias, municipios, etc. se guardan en las listas en memoria como si se hubieran
+     * leído del CSV, para conservar sus ids; de estaciones y precios solo se guarda el id y la huella.
      *
      * @param connection - Conexión a la base de datos
-     * @throws SQLException - Error al insertar las provincias
+     * @throws SQLException - Error al leer los datos
      */
-    private static void agregarProvincias(Connection connection) throws SQLException {
+    private static void leerDatosCargados(Connection connection) throws SQLException {
 
-        String insertSql = "INSERT INTO provincias (id, nombre) "
-                + "VALUES (?, ?)";
-        int lote = 10;
-        int contador = 0;
+        Map<String, Provincia> provinciasPorId = new HashMap<>();
+        Map<String, Municipio> municipiosPorId = new HashMap<>();
 
-        // Preparamos las consultas, una única vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatement = connection.prepareStatement(insertSql);
+        try (Statement statement = connection.createStatement()) {
 
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
+            try (ResultSet resultSet = statement.executeQuery("SELECT " + CLAVE.columna("id") + ", nombre FROM provincias")) {
+                while (resultSet.next()) {
+                    Provincia provincia = new Provincia(resultSet.getString(1), resultSet.getString(2));
+                    provincias.agregarSiNoExiste(provincia);
+                    idsCargados.add(provincia.getId());
+                    provinciasPorId.put(provincia.getId(), provincia);
+                }
+            }
 
-        for (Provincia provincia : provincias) {
-            // Añadimos los parámetros a la consulta
-            insertStatement.setString(1, provincia.getId());
-            insertStatement.setString(2, provincia.getNombre());
+            try (ResultSet resultSet = statement.executeQuery("SELECT " + CLAVE.columna("id") + ", nombre, " + CLAVE.columna("provincia_id") + " FROM municipios")) {
+                while (resultSet.next()) {
+                    Municipio municipio = new Municipio(resultSet.getString(1), resultSet.getString(2), provinciasPorId.get(resultSet.getString(3)));
+                    municipios.agregarSiNoExiste(municipio);
+                    idsCargados.add(municipio.getId());
+                    municipiosPorId.put(municipio.getId(), municipio);
+                }
+            }
 
-            insertStatement.addBatch();
+            try (ResultSet resultSet = statement.executeQuery("SELECT " + CLAVE.columna("id") + ", nombre, " + CLAVE.columna("municipio_id") + " FROM localidades")) {
+                while (resultSet.next()) {
+                    Municipio municipio = municipiosPorId.get(resultSet.getString(3));
+                    localidades.agregarSiNoExiste(new Localidad(resultSet.getString(1), resultSet.getString(2), municipio.getProvincia(), municipio));
+                    idsCargados.add(resultSet.getString(1));
+                }
+            }
 
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatement.executeBatch();
+            try (ResultSet resultSet = statement.executeQuery("SELECT " + CLAVE.columna("id") + ", nombre FROM carburantes")) {
+                while (resultSet.next()) {
+                    carburantes.agregarSiNoExiste(new Carburante(resultSet.getString(1), resultSet.getString(2)));
+                    idsCargados.add(resultSet.getString(1));
+                }
             }
-        }
 
-        // Ejecutamos el batch final
-        insertStatement.executeBatch();
+            try (ResultSet resultSet = statement.executeQuery("SELECT " + CLAVE.columna("id") + ", nombre FROM rotulos")) {
+                while (resultSet.next()) {
+                    rotulos.agregarSiNoExiste(new Rotulo(resultSet.getString(1), resultSet.getString(2)));
+                    idsCargados.add(resultSet.getString(1));
+                }
+            }
+
+            try (ResultSet resultSet = statement.executeQuery("SELECT " + CLAVE.columna("id") + ", nombre FROM tipo_ventas")) {
+                while (resultSet.next()) {
+                    tipoVentas.agregarSiNoExiste(new TipoVenta(resultSet.getString(1), resultSet.getString(2)));
+                    idsCargados.add(resultSet.getString(1));
+                }
+            }
 
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+            try (ResultSet resultSet = statement.executeQuery("SELECT " + CLAVE.columna("id") + ", codigopostal, latitud, longitud, "
+                    + CLAVE.columna("localidad_id") + ", margen, direccion, horario, tipoestacion, "
+                    + CLAVE.columna("tipoventa_id") + ", " + CLAVE.columna("rotulo_id") + " FROM estaciones")) {
+                while (resultSet.next()) {
+                    String id = resultSet.getString(1);
+                    TipoEstacion tipoEstacion = TipoEstacion.valueOf(resultSet.getString(9));
+                    TipoMargen tipoMargen = TipoMargen.valueOf(resultSet.getString(6));
+                    int latitud = Coordenada.deDecimal(resultSet.getBigDecimal(3));
+                    int longitud = Coordenada.deDecimal(resultSet.getBigDecimal(4));
+
+                    idsEstacionesCargadas.computeIfAbsent(claveEstacion(tipoEstacion, resultSet.getString(7), tipoMargen, longitud, latitud),
+                            clave -> new ArrayDeque<>()).add(id);
+                    estacionesCargadas.put(id, huellaEstacion(resultSet.getString(2), latitud, longitud, resultSet.getString(5),
+                            tipoMargen, resultSet.getString(7), resultSet.getString(8), tipoEstacion, resultSet.getString(10), resultSet.getString(11)));
+                }
+            }
+
+            try (ResultSet resultSet = statement.executeQuery("SELECT " + CLAVE.columna("estacion_id") + ", " + CLAVE.columna("carburante_id") + ", precio FROM precios")) {
+                while (resultSet.next()) {
+                    double precio = resultSet.getDouble(3);
+                    preciosCargados.put(clavePrecio(resultSet.getString(1), resultSet.getString(2)), Huella.de(resultSet.wasNull() ? null : precio));
+                }
+            }
+        }
     }
 
     /**
-     * Inserta los municipios en la base de datos
+     * Lee los CSV enviando cada registro a la cola de su tabla mientras unos hilos escritores los insertan.
+     * Cada tabla tiene un escritor salvo precios, que se reparte entre tantos escritores como conexiones del pool.
      *
-     * @param connection - Conexión a la base de datos
-     * @throws SQLException - Error al insertar los municipios
+     * @throws SQLException - Error al cargar los datos en la base de datos
      */
-    private static void agregarMunicipios(Connection connection) throws SQLException {
+    private static long cargarEnStreaming() throws SQLException {
+        CargaEnStreaming carga = new CargaEnStreaming("localhost", DATABASE, CAPACIDAD_COLA);
+        long numeroEstaciones = 0;
+
+        try {
+            nuevasProvincias = carga.canal("provincias", INSERT_PROVINCIAS, RegistrarPrecios::asignarProvincia, 1);
+            nuevosMunicipios = carga.canal("municipios", INSERT_MUNICIPIOS, RegistrarPrecios::asignarMunicipio, 1);
+            nuevasLocalidades = carga.canal("localidades", INSERT_LOCALIDADES, RegistrarPrecios::asignarLocalidad, 1);
+            nuevosCarburantes = carga.canal("carburantes", INSERT_CARBURANTES, RegistrarPrecios::asignarCarburante, 1);
+            nuevosRotulos = carga.canal("rotulos", INSERT_ROTULOS, RegistrarPrecios::asignarRotulo, 1);
+            nuevosTipoVentas = carga.canal("tipo_ventas", INSERT_TIPO_VENTAS, RegistrarPrecios::asignarTipoVenta, 1);
+            Consumer<Estacion> canalEstaciones = carga.canal("estaciones", INSERT_ESTACIONES, RegistrarPrecios::asignarEstacion, 1);
+            // Los precios se envían a la cola como objetos Precio, que solo viven hasta que se insertan
+            Consumer<Precio> canalPrecios = carga.canal("precios", INSERT_PRECIOS, RegistrarPrecios::asignarPrecioLeido, MySqlConnectionPool.defaultSize());
+            DestinoPrecio destinoPrecios = (estacion, carburante, milesimas) -> canalPrecios.accept(new Precio(estacion, carburante, milesimas / 1000.0));
+
+            // Todas las fuentes envían a la vez a las mismas colas
+            for (long enviadas : leerFuentes(fuente -> leerCsvEstaciones(fuente, canalEstaciones, destinoPrecios))) {
+                numeroEstaciones += enviadas;
+            }
 
-            String insertSql = "INSERT INTO municipios (id, nombre, provincia_id) "
-                    + "VALUES (?, ?, ?)";
-            int lote = 500;
-            int contador = 0;
+        } catch (RuntimeException e) {
+            carga.cancelar();
+            throw e;
+        }
 
-            // Preparamos las consultas, una única vez para poder reutilizarlas en el batch
-            PreparedStatement insertStatement = connection.prepareStatement(insertSql);
+        // Esperamos a que los escritores vacíen las colas
+        carga.terminar();
+        return numeroEstaciones;
+    }
 
-            // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-            connection.setAutoCommit(false);
+    // Métodos privados que buscan un registro por su clave natural y lo crean, con un id determinista, si no existe.
+    // Así no se crean objetos ni ids que se descartan cuando el registro ya existe. Si dos hilos crean a la vez
+    // el mismo registro se queda el primero que lo añade, y solo ese hilo lo envía a su destino
+
+    private static Provincia obtenerProvincia(String nombre) {
+        Provincia provincia = provincias.buscar(nombre);
+        if (provincia == null) {
+            Provincia nueva = new Provincia(GeneradorId.uuid("provincia", nombre), nombre);
+            provincia = provincias.agregarSiNoExiste(nueva);
+            if (provincia == nueva) {
+                nuevasProvincias.accept(provincia);
+            }
+        }
+        return provincia;
+    }
 
-            for (Municipio municipio : municipios) {
-                // Añadimos los parámetros a la consulta
-                insertStatement.setString(1, municipio.getId());
-                insertStatement.setString(2, municipio.getNombre());
-                insertStatement.setString(3, municipio.getProvincia().getId());
+    private static Municipio obtenerMunicipio(String nombre, Provincia provincia) {
+        Municipio municipio = municipios.buscar(Registro.clave(nombre, provincia.getId()));
+        if (municipio == null) {
+            Municipio nuevo = new Municipio(GeneradorId.uuid("municipio", provincia.getId(), nombre), nombre, provincia);
+            municipio = municipios.agregarSiNoExiste(nuevo);
+            if (municipio == nuevo) {
+                nuevosMunicipios.accept(municipio);
+            }
+        }
+        return municipio;
+    }
 
-                insertStatement.addBatch();
+    private static Localidad obtenerLocalidad(String nombre, Municipio municipio) {
+        Localidad localidad = localidades.buscar(Registro.clave(nombre, municipio.getId()));
+        if (localidad == null) {
+            Localidad nueva = new Localidad(GeneradorId.uuid("localidad", municipio.getId(), nombre), nombre,
+                    municipio.getProvincia(), municipio);
+            localidad = localidades.agregarSiNoExiste(nueva);
+            if (localidad == nueva) {
+                nuevasLocalidades.accept(localidad);
+            }
+        }
+        return localidad;
+    }
 
-                // Ejecutamos el batch cada lote de registros
-                if (++contador % lote == 0) {
-                    insertStatement.executeBatch();
-                }
+    private static Carburante obtenerCarburante(String nombre) {
+        Carburante carburante = carburantes.buscar(nombre);
+        if (carburante == null) {
+            Carburante nuevo = new Carburante(GeneradorId.uuid("carburante", nombre), nombre);
+            carburante = carburantes.agregarSiNoExiste(nuevo);
+            if (carburante == nuevo) {
+                nuevosCarburantes.accept(carburante);
             }
+        }
+        return carburante;
+    }
 
-            // Ejecutamos el batch final
-            insertStatement.executeBatch();
+    private static Rotulo obtenerRotulo(String nombre) {
+        Rotulo rotulo = rotulos.buscar(nombre);
+        if (rotulo == null) {
+            Rotulo nuevo = new Rotulo(GeneradorId.uuid("rotulo", nombre), nombre);
+            rotulo = rotulos.agregarSiNoExiste(nuevo);
+            if (rotulo == nuevo) {
+                nuevosRotulos.accept(rotulo);
+            }
+        }
+        return rotulo;
+    }
 
-            // Hacemos commit y volvemos a activar el autocommit
-            connection.commit();
-            connection.setAutoCommit(true);
+    private static TipoVenta obtenerTipoVenta(String nombre) {
+        TipoVenta tipoVenta = tipoVentas.buscar(nombre);
+        if (tipoVenta == null) {
+            TipoVenta nuevo = new TipoVenta(GeneradorId.uuid("tipo_venta", nombre), nombre);
+            tipoVenta = tipoVentas.agregarSiNoExiste(nuevo);
+            if (tipoVenta == nuevo) {
+                nuevosTipoVentas.accept(tipoVenta);
+            }
+        }
+        return tipoVenta;
     }
 
-    /**
-     * Inserta las localidades en la base de datos
-     *
-     * @param connection - Conexión a la base de datos
-     * @throws SQLException - Error al insertar las localidades
-     */
-    private static void agregarLocalidades(Connection connection) throws SQLException {
+    // Método privado que devuelve los registros que no estaban cargados en la base de datos
+    private static <T> List<T> noCargados(Iterable<T> registros, Function<T, String> id) {
+        List<T> noCargados = new LinkedList<>();
+        for (T registro : registros) {
+            if (!idsCargados.contains(id.apply(registro))) {
+                noCargados.add(registro);
+            }
+        }
+        return noCargados;
+    }
 
-        String insertSql = "INSERT INTO localidades (id, nombre,  municipio_id) "
-                + "VALUES (?, ?, ?)";
-        int lote = 500;
-        int contador = 0;
+    // Método privado que devuelve el id de una estación ya cargada con la misma clave o, si no existe, uno determinista
+    // a partir de la clave y del número de veces que ha aparecido, ya que el CSV puede repetir una estación
+    private static String idEstacion(String clave) {
+        int aparicion = aparicionesEstaciones.merge(clave, 1, Integer::sum) - 1;
+        Deque<String> ids = idsEstacionesCargadas.get(clave);
+        String id = ids == null ? null : ids.poll();
+        return id != null ? id : GeneradorId.uuid("estacion", clave, aparicion);
+    }
 
-        // Preparamos las consultas, una única vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatement = connection.prepareStatement(insertSql);
+    // Método privado que construye la clave natural de una estación: tipo, dirección, margen y coordenadas
+    // Las coordenadas se escriben con 6 decimales, como se guardaban antes en BigDecimal, para que los ids no cambien
+    private static String claveEstacion(TipoEstacion tipoEstacion, String direccion, TipoMargen tipoMargen, int longitud, int latitud) {
+        return tipoEstacion + "|" + direccion + "|" + tipoMargen + "|" + Coordenada.texto(longitud) + "|" + Coordenada.texto(latitud);
+    }
 
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
+    // Método privado que construye la clave de un precio: estación y carburante
+    private static String clavePrecio(String estacionId, String carburanteId) {
+        return estacionId + "|" + carburanteId;
+    }
 
-        for (Localidad localidad : localidades) {
-            // Añadimos los parámetros a la consulta
-            insertStatement.setString(1, localidad.getId());
-            insertStatement.setString(2, localidad.getNombre());
-            insertStatement.setString(3, localidad.getMunicipio().getId());
+    // Método privado que calcula la huella de una estación. La fecha de precios se excluye porque cambia en cada extracción
+    private static long huella(Estacion estacion) {
+        return huellaEstacion(estacion.getCodigoPostal(), estacion.getLatitud(), estacion.getLongitud(), estacion.getLocalidad().getId(),
+                estacion.getTipoMargen(), estacion.getDireccion(), estacion.getHorario(), estacion.getTipoEstacion(),
+                estacion.getTipoVenta().getId(), estacion.getRotulo().getId());
+    }
 
-            insertStatement.addBatch();
+    private static long huellaEstacion(String codigoPostal, int latitud, int longitud, String localidadId, TipoMargen tipoMargen,
+                                       String direccion, String horario, TipoEstacion tipoEstacion, String tipoVentaId, String rotuloId) {
+        return Huella.de(codigoPostal, latitud, longitud, localidadId, tipoMargen,
+                direccion, horario, tipoEstacion, tipoVentaId, rotuloId);
+    }
 
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatement.executeBatch();
-            }
-        }
+    // Método privado que calcula la huella de un precio
+    private static long huella(AlmacenPrecios.Cursor precio) {
+        return Huella.de(precio.getPrecio());
+    }
 
-        // Ejecutamos el batch final
-        insertStatement.executeBatch();
+    /**
+     * Inserta las provincias en la base de datos
+     *
+     * @param connection - Conexión a la base de datos
+     * @throws SQLException - Error al insertar las provincias
+     */
+    private static void agregarProvincias(Connection connection) throws SQLException {
+        new EscritorPorLotes<>(connection, "provincias", INSERT_PROVINCIAS, RegistrarPrecios::asignarProvincia)
+                .puntoControl(puntoControl, Provincia::getId)
+                .escribir(provincias);
+    }
 
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+    /**
+     * Inserta los municipios en la base de datos
+     *
+     * @param connection - Conexión a la base de datos
+     * @throws SQLException - Error al insertar los municipios
+     */
+    private static void agregarMunicipios(Connection connection) throws SQLException {
+        new EscritorPorLotes<>(connection, "municipios", INSERT_MUNICIPIOS, RegistrarPrecios::asignarMunicipio)
+                .puntoControl(puntoControl, Municipio::getId)
+                .escribir(municipios);
+    }
+
+    /**
+     * Inserta las localidades en la base de datos
+     *
+     * @param connection - Conexión a la base de datos
+     * @throws SQLException - Error al insertar las localidades
+     */
+    private static void agregarLocalidades(Connection connection) throws SQLException {
+        new EscritorPorLotes<>(connection, "localidades", INSERT_LOCALIDADES, RegistrarPrecios::asignarLocalidad)
+                .puntoControl(puntoControl, Localidad::getId)
+                .escribir(localidades);
     }
 
     /**
@@ -439,37 +846,9 @@ public class RegistrarPrecios {
      * @throws SQLException - Error al insertar los carburantes
      */
     private static void agregarCarburantes(Connection connection) throws SQLException {
-
-        String insertSql = "INSERT INTO carburantes (id, nombre) "
-                + "VALUES (?, ?)";
-        int lote = 500;
-        int contador = 0;
-
-        // Preparamos las consultas, una única vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatement = connection.prepareStatement(insertSql);
-
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
-
-        for (Carburante carburante : carburantes) {
-            // Añadimos los parámetros a la consulta
-            insertStatement.setString(1, carburante.getId());
-            insertStatement.setString(2, carburante.getNombre());
-
-            insertStatement.addBatch();
-
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatement.executeBatch();
-            }
-        }
-
-        // Ejecutamos el batch final
-        insertStatement.executeBatch();
-
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+        new EscritorPorLotes<>(connection, "carburantes", INSERT_CARBURANTES, RegistrarPrecios::asignarCarburante)
+                .puntoControl(puntoControl, Carburante::getId)
+                .escribir(carburantes);
     }
 
     /**
@@ -478,37 +857,9 @@ public class RegistrarPrecios {
      * @throws SQLException - Error al insertar los rótulos
      */
     private static void agregarRotulos(Connection connection) throws SQLException {
-
-            String insertSql = "INSERT INTO rotulos (id, nombre) "
-                    + "VALUES (?, ?)";
-            int lote = 500;
-            int contador = 0;
-
-            // Preparamos las consultas, una única vez para poder reutilizarlas en el batch
-            PreparedStatement insertStatement = connection.prepareStatement(insertSql);
-
-            // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-            connection.setAutoCommit(false);
-
-            for (Rotulo rotulo : rotulos) {
-                // Añadimos los parámetros a la consulta
-                insertStatement.setString(1, rotulo.getId());
-                insertStatement.setString(2, rotulo.getNombre());
-
-                insertStatement.addBatch();
-
-                // Ejecutamos el batch cada lote de registros
-                if (++contador % lote == 0) {
-                    insertStatement.executeBatch();
-                }
-            }
-
-            // Ejecutamos el batch final
-            insertStatement.executeBatch();
-
-            // Hacemos commit y volvemos a activar el autocommit
-            connection.commit();
-            connection.setAutoCommit(true);
+        new EscritorPorLotes<>(connection, "rotulos", INSERT_ROTULOS, RegistrarPrecios::asignarRotulo)
+                .puntoControl(puntoControl, Rotulo::getId)
+                .escribir(rotulos);
     }
 
     /**
@@ -517,37 +868,9 @@ public class RegistrarPrecios {
      * @throws SQLException - Error al insertar los rótulos
      */
     private static void agregarTipoVenta(Connection connection) throws SQLException {
-
-        String insertSql = "INSERT INTO tipo_ventas (id, nombre) "
-                + "VALUES (?, ?)";
-        int lote = 500;
-        int contador = 0;
-
-        // Preparamos las consultas, una única vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatement = connection.prepareStatement(insertSql);
-
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
-
-        for (TipoVenta tipoVenta : tipoVentas) {
-            // Añadimos los parámetros a la consulta
-            insertStatement.setString(1, tipoVenta.getId());
-            insertStatement.setString(2, tipoVenta.getNombre());
-
-            insertStatement.addBatch();
-
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatement.executeBatch();
-            }
-        }
-
-        // Ejecutamos el batch final
-        insertStatement.executeBatch();
-
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+        new EscritorPorLotes<>(connection, "tipo_ventas", INSERT_TIPO_VENTAS, RegistrarPrecios::asignarTipoVenta)
+                .puntoControl(puntoControl, TipoVenta::getId)
+                .escribir(tipoVentas);
     }
 
 
@@ -557,99 +880,181 @@ public class RegistrarPrecios {
      * @throws SQLException - Error al insertar las estaciones
      */
     private static void agregarEstaciones(Connection connection) throws SQLException {
+        new EscritorPorLotes<>(connection, "estaciones", INSERT_ESTACIONES, RegistrarPrecios::asignarEstacion)
+                .puntoControl(puntoControl, Estacion::getId)
+                .escribir(estaciones);
+    }
 
-        String insertSql = "INSERT INTO estaciones (id,codigopostal,latitud, longitud, localidad_id,margen,direccion,fechaprecios,horario,tipoestacion,tipoventa_id, rotulo_id)"
-                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        int lote = 500;
-        int contador = 0;
-
-        // Preparamos las consultas, una única vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatement = connection.prepareStatement(insertSql);
+    /**
+     * Inserta los precios en la base de datos
+     * @param connection - Conexión a la base de datos
+     * @param precios - Precios a insertar
+     * @throws SQLException - Error al insertar los precios
+     */
+    private static void agregarPrecios(Connection connection, Iterable<AlmacenPrecios.Cursor> precios) throws SQLException {
+        new EscritorPorLotes<>(connection, "precios", INSERT_PRECIOS, RegistrarPrecios::asignarPrecio)
+                .puntoControl(puntoControl, precio -> clavePrecio(precio.getEstacion().getId(), precio.getCarburante().getId()))
+                .escribir(precios);
+    }
 
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
+    /**
+     * Reescribe el resumen de los precios en una única transacción, por lo que las consultas ven el resumen
+     * anterior o el nuevo completo, nunca uno a medias
+     * @param connection - Conexión a la base de datos
+     * @throws SQLException - Error al escribir el resumen
+     */
+    private static void agregarResumenPrecios(Connection connection) throws SQLException {
+        List<ResumenPrecios.Grupo> grupos = resumenPrecios.grupos();
+        boolean autoCommitPrevio = connection.getAutoCommit();
         connection.setAutoCommit(false);
-
-        for (Estacion estacion : estaciones) {
-            // Añadimos los parámetros a la consulta
-            insertStatement.setString(1, estacion.getId());
-            insertStatement.setString(2, estacion.getCodigoPostal());
-
-            // Si no tiene latitud o longitud, se inserta un null
-            if (estacion.getLatitud() == null) {
-            	insertStatement.setNull(3, java.sql.Types.FLOAT);
-            } else {
-            	insertStatement.setBigDecimal(3, estacion.getLatitud());
+        try (Statement delete = connection.createStatement();
+             PreparedStatement insertStatement = connection.prepareStatement(INSERT_RESUMEN_PRECIOS)) {
+            delete.executeUpdate("DELETE FROM resumen_precios");
+            for (ResumenPrecios.Grupo grupo : grupos) {
+                asignarResumenPrecios(insertStatement, grupo);
+                insertStatement.addBatch();
             }
+            insertStatement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommitPrevio);
+        }
+        log.info("Se ha escrito el resumen de los precios correctamente, {} grupos", grupos.size());
+    }
 
-            if (estacion.getLongitud() == null) {
-            	insertStatement.setNull(4, java.sql.Types.FLOAT);
-            } else {
-            	insertStatement.setBigDecimal(4, estacion.getLongitud());
-            }
+    // Métodos privados que añaden los parámetros de cada registro a su consulta de inserción
 
-            insertStatement.setString(5, estacion.getLocalidad().getId());
-            insertStatement.setString(6, estacion.getTipoMargen().toString());
-            insertStatement.setString(7, estacion.getDireccion());
-            insertStatement.setDate(8, estacion.getFecha());
-            insertStatement.setString(9, estacion.getHorario());
-            insertStatement.setString(10, estacion.getTipoEstacion().toString());
-            insertStatement.setString(11, estacion.getTipoVenta().getId());
-            insertStatement.setString(12, estacion.getRotulo().getId());
+    private static void asignarProvincia(PreparedStatement insertStatement, Provincia provincia) throws SQLException {
+        insertStatement.setString(1, provincia.getId());
+        insertStatement.setString(2, provincia.getNombre());
+    }
 
-            insertStatement.addBatch();
+    private static void asignarMunicipio(PreparedStatement insertStatement, Municipio municipio) throws SQLException {
+        insertStatement.setString(1, municipio.getId());
+        insertStatement.setString(2, municipio.getNombre());
+        insertStatement.setString(3, municipio.getProvincia().getId());
+    }
 
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatement.executeBatch();
-            }
-        }
+    private static void asignarLocalidad(PreparedStatement insertStatement, Localidad localidad) throws SQLException {
+        insertStatement.setString(1, localidad.getId());
+        insertStatement.setString(2, localidad.getNombre());
+        insertStatement.setString(3, localidad.getMunicipio().getId());
+    }
 
-        // Ejecutamos el batch final
-        insertStatement.executeBatch();
+    private static void asignarCarburante(PreparedStatement insertStatement, Carburante carburante) throws SQLException {
+        insertStatement.setString(1, carburante.getId());
+        insertStatement.setString(2, carburante.getNombre());
+    }
 
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+    private static void asignarRotulo(PreparedStatement insertStatement, Rotulo rotulo) throws SQLException {
+        insertStatement.setString(1, rotulo.getId());
+        insertStatement.setString(2, rotulo.getNombre());
     }
 
-    /**
-     * Inserta los precios en la base de datos
-     * @param connection - Conexión a la base de datos
-     * @throws SQLException - Error al insertar los precios
-     */
-    private static void agregarPrecios(Connection connection) throws SQLException {
+    private static void asignarTipoVenta(PreparedStatement insertStatement, TipoVenta tipoVenta) throws SQLException {
+        insertStatement.setString(1, tipoVenta.getId());
+        insertStatement.setString(2, tipoVenta.getNombre());
+    }
 
-        String insertSql = "INSERT INTO precios (estacion_id, carburante_id, precio) "
-                + "VALUES (?, ?, ?)";
-        int lote = 500;
-        int contador = 0;
+    private static void asignarEstacion(PreparedStatement insertStatement, Estacion estacion) throws SQLException {
+        insertStatement.setString(1, estacion.getId());
+        insertStatement.setString(2, estacion.getCodigoPostal());
+
+        // Si no tiene latitud o longitud, se inserta un null
+        asignarCoordenada(insertStatement, 3, estacion.getLatitud());
+        asignarCoordenada(insertStatement, 4, estacion.getLongitud());
+
+        insertStatement.setString(5, estacion.getLocalidad().getId());
+        insertStatement.setString(6, estacion.getTipoMargen().toString());
+        insertStatement.setString(7, estacion.getDireccion());
+        insertStatement.setDate(8, estacion.getFecha());
+        insertStatement.setString(9, estacion.getHorario());
+        insertStatement.setString(10, estacion.getTipoEstacion().toString());
+        insertStatement.setString(11, estacion.getTipoVenta().getId());
+        insertStatement.setString(12, estacion.getRotulo().getId());
+        insertStatement.setString(13, Coordenada.punto(estacion.getLatitud(), estacion.getLongitud()));
+    }
 
-        // Preparamos las consultas, una única vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatement = connection.prepareStatement(insertSql);
+    private static void asignarPrecio(PreparedStatement insertStatement, AlmacenPrecios.Cursor precio) throws SQLException {
+        insertStatement.setString(1, precio.getEstacion().getId());
+        insertStatement.setString(2, precio.getCarburante().getId());
+        insertStatement.setDouble(3, precio.getPrecio());
+    }
 
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
+    private static void asignarPrecioLeido(PreparedStatement insertStatement, Precio precio) throws SQLException {
+        insertStatement.setString(1, precio.getEstacion().getId());
+        insertStatement.setString(2, precio.getCarburante().getId());
+        insertStatement.setDouble(3, precio.getPrecio());
+    }
 
-        for (Precio precio : precios) {
-            // Añadimos los parámetros a la consulta
-            insertStatement.setString(1, precio.getEstacion().getId());
-            insertStatement.setString(2, precio.getCarburante().getId());
-            insertStatement.setDouble(3, precio.getPrecio());
+    private static void asignarResumenPrecios(PreparedStatement insertStatement, ResumenPrecios.Grupo grupo) throws SQLException {
+        insertStatement.setString(1, grupo.getCarburante().getId());
+        insertStatement.setString(2, grupo.getTipoEstacion().toString());
+        insertStatement.setString(3, grupo.getProvincia().getId());
+        insertStatement.setDouble(4, grupo.getPrecioMinimo());
+        insertStatement.setDouble(5, grupo.getPrecioMaximo());
+        insertStatement.setDouble(6, grupo.getPrecioMedio());
+        insertStatement.setInt(7, grupo.getTotal());
+        insertStatement.setString(8, grupo.getEstacionMinimo());
+        insertStatement.setString(9, grupo.getEstacionMaximo());
+    }
 
-            insertStatement.addBatch();
+    private static void asignarEstacionModificada(PreparedStatement updateStatement, Estacion estacion) throws SQLException {
+        updateStatement.setString(1, estacion.getCodigoPostal());
+        asignarCoordenada(updateStatement, 2, estacion.getLatitud());
+        asignarCoordenada(updateStatement, 3, estacion.getLongitud());
+        updateStatement.setString(4, estacion.getLocalidad().getId());
+        updateStatement.setString(5, estacion.getTipoMargen().toString());
+        updateStatement.setString(6, estacion.getDireccion());
+        updateStatement.setDate(7, estacion.getFecha());
+        updateStatement.setString(8, estacion.getHorario());
+        updateStatement.setString(9, estacion.getTipoEstacion().toString());
+        updateStatement.setString(10, estacion.getTipoVenta().getId());
+        updateStatement.setString(11, estacion.getRotulo().getId());
+        updateStatement.setString(12, Coordenada.punto(estacion.getLatitud(), estacion.getLongitud()));
+        updateStatement.setString(13, estacion.getId());
+    }
 
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatement.executeBatch();
-            }
+    // Las coordenadas se envían como decimal con 6 decimales, o null si la estación no tiene coordenada
+    private static void asignarCoordenada(PreparedStatement statement, int parametro, int microgrados) throws SQLException {
+        if (microgrados == Coordenada.SIN_COORDENADA) {
+            statement.setNull(parametro, Types.DECIMAL);
+        } else {
+            statement.setBigDecimal(parametro, Coordenada.aDecimal(microgrados));
         }
+    }
+
+    private static void asignarEstacionBorrada(PreparedStatement deleteStatement, String id) throws SQLException {
+        deleteStatement.setString(1, id);
+    }
 
-        // Ejecutamos el batch final
-        insertStatement.executeBatch();
+    private static void asignarPrecioModificado(PreparedStatement updateStatement, AlmacenPrecios.Cursor precio) throws SQLException {
+        updateStatement.setDouble(1, precio.getPrecio());
+        updateStatement.setString(2, precio.getEstacion().getId());
+        updateStatement.setString(3, precio.getCarburante().getId());
+    }
 
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+    private static void asignarPrecioBorrado(PreparedStatement deleteStatement, String clave) throws SQLException {
+        int separador = clave.indexOf('|');
+        deleteStatement.setString(1, clave.substring(0, separador));
+        deleteStatement.setString(2, clave.substring(separador + 1));
     }
 
+    /**
+     * Destino de cada precio leído de los CSV, con el precio en milésimas de euro
+     */
+    private interface DestinoPrecio {
+        void agregar(Estacion estacion, Carburante carburante, int milesimas);
+    }
+
+    /**
+     * Estaciones y precios leídos de una fuente en modo COMPLETA, DELTA o SOMBRA, antes de unirlos a los de las demás
+     */
+    private static class LecturaEnMemoria {
+        private final List<Estacion> estaciones = new ArrayList<>();
+        private final AlmacenPrecios precios = new AlmacenPrecios(estaciones);
+    }
 }
@@ -0,0 +1,91 @@
+package com.unir.config;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+
+@Slf4j
+public class MySqlConnectionPool implements AutoCloseable {
+
+    /**
+     * Tarea que se ejecuta con una conexión prestada por el pool
+     * @param <T>
+     */
+    public interface ConnectionTask<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    @Getter
+    private final int size;
+    private final List<Connection> connections;
+    private final BlockingQueue<Connection> idle;
+
+    /**
+     * Constructor de la clase. Abre todas las conexiones del pool contra la base de datos.
+     * @param host
+     * @param database
+     * @param size
+     */
+    public MySqlConnectionPool(String host, String database, int size) {
+        this.size = size;
+        this.connections = new ArrayList<>(size);
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        for (int i = 0; i < size; i++) {
+            Connection connection = new MySqlConnector(host, database).getConnection();
+            connections.add(connection);
+            idle.add(connection);
+        }
+        log.debug("Pool de {} conexiones abierto contra {}", size, database);
+    }
+
+    /**
+     * Tamaño del pool por defecto: la variable de entorno MYSQL_POOL_SIZE o, si no existe, el número de procesadores.
+     * @return Número de conexiones
+     */
+    public static int defaultSize() {
+        String size = System.getenv("MYSQL_POOL_SIZE");
+        return size == null || size.isEmpty() ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(size);
+    }
+
+    /**
+     * Ejecuta una tarea con una conexión del pool y la devuelve al pool al terminar.
+     * Si no hay conexiones libres espera a que otra tarea libere una.
+     * @param task
+     * @return Resultado de la tarea
+     * @throws SQLException
+     */
+    public <T> T run(ConnectionTask<T> task) throws SQLException {
+        Connection connection;
+        try {
+            connection = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión del pool", e);
+        }
+
+        try {
+            return task.run(connection);
+        } finally {
+            idle.add(connection);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.error("Error al cerrar una conexión del pool", e);
+            }
+        }
+    }
+}
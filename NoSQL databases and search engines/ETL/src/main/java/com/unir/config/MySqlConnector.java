@@ -19,13 +19,26 @@ public class MySqlConnector {
      * @param database
      */
     public MySqlConnector(String host, String database) {
+        this(host, database, null);
+    }
+
+    /**
+     * Se conecta a la base de datos con propiedades de conexión adicionales,
+     * por ejemplo SentenciasPreparadas.PROPIEDADES_CONEXION en las conexiones de consulta
+     * @param host
+     * @param database
+     * @param propiedades - Propiedades de la URL separadas por &, o null
+     */
+    public MySqlConnector(String host, String database, String propiedades) {
         log.debug("MYSQL_USER:{}",System.getenv("MYSQL_USER"));
         log.debug("MYSQL_PASSWORD:{}",System.getenv("MYSQL_PASSWORD"));
 
         try {
             //Creamos la conexión a la base de datos
+            //rewriteBatchedStatements reescribe cada batch de INSERT como un único INSERT multi-fila
             this.connection = DriverManager.getConnection(
-                    "jdbc:mysql://" + host + "/" + database,
+                    "jdbc:mysql://" + host + "/" + database + "?rewriteBatchedStatements=true"
+                            + (propiedades == null ? "" : "&" + propiedades),
                     System.getenv("MYSQL_USER"),
                     System.getenv("MYSQL_PASSWORD"));
 
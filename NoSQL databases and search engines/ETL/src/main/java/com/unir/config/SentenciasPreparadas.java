@@ -0,0 +1,72 @@
+package com.unir.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sentencias preparadas de una conexión, para las consultas que se repiten.
+ * Cada SQL se prepara la primera vez que se pide y después se devuelve la misma sentencia, por lo que MySQL
+ * no vuelve a analizar la consulta. Al cerrar se cierran todas las sentencias, pero no la conexión.
+ *
+ * Igual que la conexión, no es seguro para varios hilos: cada hilo usa su propia conexión y sus propias sentencias.
+ * Los ResultSet que se obtienen de una sentencia se deben cerrar antes de volver a ejecutarla.
+ */
+public class SentenciasPreparadas implements AutoCloseable {
+
+    // Sentencias preparadas en el servidor y reutilizadas por el driver al cerrarlas. No se usan en las conexiones de carga:
+    // un INSERT reescrito por rewriteBatchedStatements puede superar el número máximo de parámetros del servidor
+    public static final String PROPIEDADES_CONEXION = "useServerPrepStmts=true&cachePrepStmts=true";
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> sentencias = new HashMap<>();
+
+    /**
+     * @param connection - Conexión de la que se preparan las sentencias, que sigue abierta al cerrar
+     */
+    public SentenciasPreparadas(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @param sql
+     * @return Sentencia preparada del SQL, la misma en todas las llamadas, con los parámetros anteriores borrados
+     * @throws SQLException
+     */
+    public PreparedStatement preparar(String sql) throws SQLException {
+        PreparedStatement sentencia = sentencias.get(sql);
+        if (sentencia == null) {
+            sentencia = connection.prepareStatement(sql);
+            sentencias.put(sql, sentencia);
+        } else {
+            sentencia.clearParameters();
+        }
+        return sentencia;
+    }
+
+    /**
+     * Cierra todas las sentencias. Si falla alguna se siguen cerrando las demás y se lanza el primer error
+     * @throws SQLException
+     */
+    @Override
+    public void close() throws SQLException {
+        SQLException error = null;
+        for (PreparedStatement sentencia : sentencias.values()) {
+            try {
+                sentencia.close();
+            } catch (SQLException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        sentencias.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+}
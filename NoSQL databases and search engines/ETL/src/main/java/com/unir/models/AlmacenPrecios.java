@@ -0,0 +1,156 @@
+package com.unir.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Precios leídos de los CSV guardados por columnas en lugar de un objeto Precio por cada uno.
+ * Cada precio es una posición en tres arrays: un int con la posición de su estación en la lista de estaciones,
+ * un short con la de su carburante y un int con el precio en milésimas de euro, la precisión con la que se
+ * publican. Los arrays crecen al doble cuando se llenan.
+ *
+ * Los registros se recorren con un cursor que se reutiliza en todas las posiciones, por lo que el recorrido
+ * no crea objetos. El cursor solo es válido hasta pedir el siguiente registro; para guardar un registro
+ * se guarda su posición.
+ */
+public class AlmacenPrecios {
+
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    private final List<Estacion> estaciones;
+    private final List<Carburante> carburantes = new ArrayList<>();
+    private final Map<Carburante, Short> posicionesCarburantes = new IdentityHashMap<>();
+
+    private int[] posicionesEstacion = new int[CAPACIDAD_INICIAL];
+    private short[] posicionesCarburante = new short[CAPACIDAD_INICIAL];
+    private int[] milesimas = new int[CAPACIDAD_INICIAL];
+    private int tamano = 0;
+
+    /**
+     * @param estaciones - Lista de estaciones a la que apuntan los precios, con acceso por posición
+     */
+    public AlmacenPrecios(List<Estacion> estaciones) {
+        this.estaciones = estaciones;
+    }
+
+    /**
+     * Añade un precio
+     * @param posicionEstacion - Posición de la estación en la lista de estaciones
+     * @param carburante
+     * @param precioMilesimas - Precio en milésimas de euro
+     */
+    public void agregar(int posicionEstacion, Carburante carburante, int precioMilesimas) {
+        if (tamano == posicionesEstacion.length) {
+            int capacidad = tamano * 2;
+            posicionesEstacion = Arrays.copyOf(posicionesEstacion, capacidad);
+            posicionesCarburante = Arrays.copyOf(posicionesCarburante, capacidad);
+            milesimas = Arrays.copyOf(milesimas, capacidad);
+        }
+        posicionesEstacion[tamano] = posicionEstacion;
+        posicionesCarburante[tamano] = posicionCarburante(carburante);
+        milesimas[tamano] = precioMilesimas;
+        tamano++;
+    }
+
+    public int size() {
+        return tamano;
+    }
+
+    /**
+     * @return Todos los precios en el orden en que se han añadido
+     */
+    public Iterable<Cursor> registros() {
+        return registros(0, tamano);
+    }
+
+    /**
+     * @param desde - Primera posición, incluida
+     * @param hasta - Última posición, excluida
+     * @return Precios entre las dos posiciones
+     */
+    public Iterable<Cursor> registros(int desde, int hasta) {
+        return () -> new Iterator<Cursor>() {
+            private final Cursor cursor = new Cursor();
+            private int siguiente = desde;
+
+            @Override
+            public boolean hasNext() {
+                return siguiente < hasta;
+            }
+
+            @Override
+            public Cursor next() {
+                if (siguiente >= hasta) {
+                    throw new NoSuchElementException();
+                }
+                cursor.posicion = siguiente++;
+                return cursor;
+            }
+        };
+    }
+
+    /**
+     * Copia unos precios en un almacén nuevo, por ejemplo los que han cambiado en una carga DELTA
+     * @param posiciones
+     * @return AlmacenPrecios
+     */
+    public AlmacenPrecios seleccionar(Collection<Integer> posiciones) {
+        AlmacenPrecios seleccionados = new AlmacenPrecios(estaciones);
+        for (int posicion : posiciones) {
+            seleccionados.agregar(posicionesEstacion[posicion], carburantes.get(posicionesCarburante[posicion]), milesimas[posicion]);
+        }
+        return seleccionados;
+    }
+
+    /**
+     * Añade al final los precios de otro almacén, por ejemplo los leídos de otro CSV
+     * @param otro
+     * @param primeraEstacion - Posición en la lista de estaciones de este almacén de la primera estación del otro
+     */
+    public void anexar(AlmacenPrecios otro, int primeraEstacion) {
+        for (int posicion = 0; posicion < otro.tamano; posicion++) {
+            agregar(primeraEstacion + otro.posicionesEstacion[posicion], otro.carburantes.get(otro.posicionesCarburante[posicion]),
+                    otro.milesimas[posicion]);
+        }
+    }
+
+    // Hay una decena de carburantes, se guarda cada uno una vez y los precios apuntan a su posición
+    private short posicionCarburante(Carburante carburante) {
+        Short posicion = posicionesCarburantes.get(carburante);
+        if (posicion == null) {
+            posicion = (short) carburantes.size();
+            carburantes.add(carburante);
+            posicionesCarburantes.put(carburante, posicion);
+        }
+        return posicion;
+    }
+
+    /**
+     * Precio del almacén en la posición actual del recorrido
+     */
+    public class Cursor {
+        private int posicion;
+
+        public int getPosicion() {
+            return posicion;
+        }
+
+        public Estacion getEstacion() {
+            return estaciones.get(posicionesEstacion[posicion]);
+        }
+
+        public Carburante getCarburante() {
+            return carburantes.get(posicionesCarburante[posicion]);
+        }
+
+        public double getPrecio() {
+            return milesimas[posicion] / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.unir.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Coordenadas en punto fijo: grados multiplicados por 10^6 en un int, la misma precisión que las columnas
+ * decimal(10, 6) de la base de datos. Dos coordenadas son iguales si lo son sus enteros, y la estación no guarda
+ * un BigDecimal por coordenada. Las estaciones sin coordenada usan SIN_COORDENADA, que se escribe como null.
+ *
+ * La ubicación de las estaciones también se guarda como POINT con SRID 4326 (WGS 84), en el que el texto WKT
+ * de un punto lleva primero la latitud y después la longitud.
+ */
+public final class Coordenada {
+
+    public static final int ESCALA = 6;
+    public static final int SIN_COORDENADA = Integer.MIN_VALUE;
+    public static final int SRID = 4326;
+
+    // Radio de la Tierra de la fórmula Haversine, en km
+    public static final int RADIO_TIERRA_KM = 6371;
+
+    private Coordenada() {
+    }
+
+    /**
+     * @param grados - Coordenada en grados, o null
+     * @return Coordenada en millonésimas de grado, redondeada a 6 decimales
+     */
+    public static int deDecimal(BigDecimal grados) {
+        return grados == null ? SIN_COORDENADA : grados.setScale(ESCALA, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+    }
+
+    /**
+     * @param grados
+     * @return Coordenada en millonésimas de grado
+     */
+    public static int deGrados(double grados) {
+        return (int) Math.round(grados * 1_000_000);
+    }
+
+    /**
+     * @param microgrados
+     * @return Coordenada en grados con 6 decimales para enviarla a la base de datos, o null si no hay coordenada
+     */
+    public static BigDecimal aDecimal(int microgrados) {
+        return microgrados == SIN_COORDENADA ? null : BigDecimal.valueOf(microgrados, ESCALA);
+    }
+
+    /**
+     * @param microgrados
+     * @return Coordenada con 6 decimales, por ejemplo "-1.858542", o null si no hay coordenada
+     */
+    public static String texto(int microgrados) {
+        if (microgrados == SIN_COORDENADA) {
+            return null;
+        }
+        StringBuilder texto = new StringBuilder(12);
+        if (microgrados < 0) {
+            texto.append('-');
+        }
+        int valor = Math.abs(microgrados);
+        texto.append(valor / 1_000_000).append('.');
+        String decimales = Integer.toString(valor % 1_000_000);
+        for (int i = decimales.length(); i < ESCALA; i++) {
+            texto.append('0');
+        }
+        return texto.append(decimales).toString();
+    }
+
+    /**
+     * Punto de una estación para la columna espacial. La columna tiene un índice SPATIAL y no admite null,
+     * por lo que las estaciones sin coordenadas se guardan en POINT(0 0); su distancia a cualquier punto es null
+     * y nunca pasan el filtro por distancia.
+     * @param latitud - Millonésimas de grado
+     * @param longitud - Millonésimas de grado
+     * @return Punto en WKT, latitud y longitud
+     */
+    public static String punto(int latitud, int longitud) {
+        if (latitud == SIN_COORDENADA || longitud == SIN_COORDENADA) {
+            return "POINT(0 0)";
+        }
+        return "POINT(" + texto(latitud) + " " + texto(longitud) + ")";
+    }
+
+    /**
+     * Rectángulo que contiene el círculo de un radio alrededor de un punto, para filtrar con MBRContains
+     * sobre el índice SPATIAL antes de calcular la distancia exacta. Se amplía un 1% para cubrir la curvatura
+     * de los lados en SRID 4326.
+     * @param latitud - Millonésimas de grado
+     * @param longitud - Millonésimas de grado
+     * @param radioKm
+     * @return Polígono en WKT, latitud y longitud
+     */
+    public static String caja(int latitud, int longitud, double radioKm) {
+        double grados = latitud / 1_000_000.0;
+        double margenLatitud = margenLatitud(radioKm * 1.01);
+        double margenLongitud = margenLongitud(latitud, radioKm * 1.01);
+
+        int norte = deGrados(Math.min(90, grados + margenLatitud));
+        int sur = deGrados(Math.max(-90, grados - margenLatitud));
+        int este = deGrados(Math.min(180, longitud / 1_000_000.0 + margenLongitud));
+        int oeste = deGrados(Math.max(-180, longitud / 1_000_000.0 - margenLongitud));
+
+        return "POLYGON((" + texto(sur) + " " + texto(oeste) + ", " + texto(norte) + " " + texto(oeste) + ", "
+                + texto(norte) + " " + texto(este) + ", " + texto(sur) + " " + texto(este) + ", "
+                + texto(sur) + " " + texto(oeste) + "))";
+    }
+
+    /**
+     * @param radioKm
+     * @return Grados de latitud que hay que recorrer hacia el norte y hacia el sur para cubrir el radio
+     */
+    public static double margenLatitud(double radioKm) {
+        return Math.toDegrees(radioKm / RADIO_TIERRA_KM);
+    }
+
+    /**
+     * @param latitud - Millonésimas de grado
+     * @param radioKm
+     * @return Grados de longitud que hay que recorrer hacia el este y hacia el oeste para cubrir el radio
+     * alrededor de un punto de esa latitud, o 180 si el círculo rodea el polo
+     */
+    public static double margenLongitud(int latitud, double radioKm) {
+        double seno = Math.sin(radioKm / RADIO_TIERRA_KM);
+        double coseno = Math.cos(Math.toRadians(latitud / 1_000_000.0));
+        return seno >= coseno ? 180 : Math.toDegrees(Math.asin(seno / coseno));
+    }
+
+    /**
+     * Distancia Haversine entre dos puntos con las mismas operaciones, en el mismo orden, que la consulta
+     * de la estación más económica de ConsultarPrecios, para que los dos cálculos den el mismo resultado.
+     * MySQL resta y divide las coordenadas como decimal exacto y después las convierte a double, que es lo que
+     * se hace aquí con las millonésimas de grado.
+     * @param latitud - Millonésimas de grado
+     * @param longitud - Millonésimas de grado
+     * @param latitudOrigen - Millonésimas de grado
+     * @param longitudOrigen - Millonésimas de grado
+     * @return Distancia en km
+     */
+    public static double distanciaKm(int latitud, int longitud, int latitudOrigen, int longitudOrigen) {
+        double senoLatitud = Math.sin(radianes((latitud - (long) latitudOrigen) / 2_000_000.0));
+        double senoLongitud = Math.sin(radianes((longitud - (long) longitudOrigen) / 2_000_000.0));
+        return RADIO_TIERRA_KM * 2 * Math.asin(
+                Math.sqrt(
+                        Math.pow(senoLatitud, 2) +
+                        Math.cos(radianes(latitudOrigen / 1_000_000.0)) * Math.cos(radianes(latitud / 1_000_000.0)) *
+                        Math.pow(senoLongitud, 2)
+                )
+        );
+    }
+
+    // RADIANS de MySQL: multiplica por PI / 180
+    private static double radianes(double grados) {
+        return grados * (Math.PI / 180);
+    }
+}
@@ -5,7 +5,6 @@ import com.unir.types.TipoEstacion;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
-import java.math.BigDecimal;
 import java.sql.Date;
 
 
@@ -15,8 +14,9 @@ import java.sql.Date;
 public class Estacion {
     private String id;
     private Rotulo rotulo;
-    private BigDecimal longitud;
-    private BigDecimal latitud;
+    // Millonésimas de grado, o Coordenada.SIN_COORDENADA
+    private int longitud;
+    private int latitud;
     private String codigoPostal;
     private String direccion;
     private Localidad localidad;
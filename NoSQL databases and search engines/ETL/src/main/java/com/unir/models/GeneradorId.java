@@ -0,0 +1,67 @@
+package com.unir.models;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Genera los ids de los modelos como UUID de versión 5 (RFC 4122): el SHA-1 de un espacio de nombres fijo,
+ * el tipo de modelo y su clave natural. El mismo registro recibe siempre el mismo id, por lo que dos cargas
+ * del mismo CSV producen las mismas filas y los ids no dependen del orden en que se leen los ficheros.
+ */
+public final class GeneradorId {
+
+    // Espacio de nombres propio de esta ETL
+    private static final byte[] ESPACIO_NOMBRES = {
+            (byte) 0x6f, (byte) 0x1c, (byte) 0x2a, (byte) 0x58, (byte) 0x0d, (byte) 0x4e, (byte) 0x5b, (byte) 0x93,
+            (byte) 0xa1, (byte) 0x7e, (byte) 0x3c, (byte) 0x84, (byte) 0x52, (byte) 0x90, (byte) 0xe6, (byte) 0x1f
+    };
+    private static final byte SEPARADOR = 0x1f;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // MessageDigest no es thread-safe, cada hilo usa el suyo
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 no disponible", e);
+        }
+    });
+
+    private GeneradorId() {
+    }
+
+    /**
+     * @param tipo - Tipo de modelo, para que una provincia y un rótulo con el mismo nombre no compartan id
+     * @param partes - Clave natural del modelo
+     * @return UUID en formato texto de 36 caracteres
+     */
+    public static String uuid(String tipo, Object... partes) {
+        MessageDigest sha1 = SHA1.get();
+        sha1.reset();
+        sha1.update(ESPACIO_NOMBRES);
+        sha1.update(tipo.getBytes(StandardCharsets.UTF_8));
+        for (Object parte : partes) {
+            sha1.update(SEPARADOR);
+            if (parte != null) {
+                sha1.update(parte.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        byte[] h = sha1.digest();
+
+        // Versión 5 y variante RFC 4122
+        h[6] = (byte) ((h[6] & 0x0f) | 0x50);
+        h[8] = (byte) ((h[8] & 0x3f) | 0x80);
+
+        char[] texto = new char[36];
+        int posicion = 0;
+        for (int i = 0; i < 16; i++) {
+            if (i == 4 || i == 6 || i == 8 || i == 10) {
+                texto[posicion++] = '-';
+            }
+            texto[posicion++] = HEX[(h[i] >> 4) & 0x0f];
+            texto[posicion++] = HEX[h[i] & 0x0f];
+        }
+        return new String(texto);
+    }
+}
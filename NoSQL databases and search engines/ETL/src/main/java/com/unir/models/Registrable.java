@@ -0,0 +1,28 @@
+package com.unir.models;
+
+/**
+ * Modelo que se puede guardar en un Registro, identificado por su clave natural
+ */
+public interface Registrable {
+
+    /**
+     * Clave natural del modelo. Dos modelos con la misma clave representan el mismo registro aunque tengan distinto id.
+     * Por defecto es el nombre; los modelos cuyo nombre se repite la componen con Registro.clave.
+     * Debe implementar equals y hashCode, por ejemplo un String o una lista creada con Registro.clave
+     * @return Clave natural
+     */
+    default Object getClave() {
+        return getNombre();
+    }
+
+    /**
+     * Id del modelo, que determina el orden en que se recorre el Registro
+     * @return Id
+     */
+    String getId();
+
+    /**
+     * @return Nombre del modelo
+     */
+    String getNombre();
+}
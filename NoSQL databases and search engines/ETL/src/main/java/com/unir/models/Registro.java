@@ -0,0 +1,65 @@
+package com.unir.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Colección de modelos sin duplicados por su clave natural, que pueden usar a la vez los hilos que leen cada CSV.
+ * Las búsquedas se hacen con un ConcurrentHashMap, por lo que comprobar si un modelo existe no depende del número
+ * de modelos ni bloquea a los demás hilos, y si dos hilos añaden a la vez la misma clave solo se guarda uno.
+ *
+ * Los modelos se recorren en el orden de su id, que no depende de qué hilo ha añadido antes cada modelo: dos cargas
+ * de los mismos CSV los recorren en el mismo orden, como necesita el punto de control, y se insertan en el orden
+ * de la clave primaria.
+ * @param <T> Tipo de modelo
+ */
+public class Registro<T extends Registrable> implements Iterable<T> {
+
+    private final ConcurrentMap<Object, T> porClave = new ConcurrentHashMap<>();
+
+    /**
+     * Crea una clave compuesta por varias partes, por ejemplo el nombre de una localidad y el id de su municipio
+     * @param partes
+     * @return Clave compuesta
+     */
+    public static Object clave(Object... partes) {
+        return Arrays.asList(partes);
+    }
+
+    /**
+     * Añade el modelo si no existe otro con la misma clave
+     * @param registro
+     * @return El modelo ya existente con la misma clave, o el propio modelo si se ha añadido
+     */
+    public T agregarSiNoExiste(T registro) {
+        T existente = porClave.putIfAbsent(registro.getClave(), registro);
+        return existente != null ? existente : registro;
+    }
+
+    /**
+     * @param clave
+     * @return El modelo con esa clave, o null si no existe
+     */
+    public T buscar(Object clave) {
+        return porClave.get(clave);
+    }
+
+    public int size() {
+        return porClave.size();
+    }
+
+    /**
+     * Recorre los modelos en el orden de su id. Solo debe usarse cuando ningún hilo está añadiendo modelos
+     */
+    @Override
+    public Iterator<T> iterator() {
+        List<T> registros = new ArrayList<>(porClave.values());
+        registros.sort(Comparator.comparing(Registrable::getId));
+        return registros.iterator();
+    }
+}
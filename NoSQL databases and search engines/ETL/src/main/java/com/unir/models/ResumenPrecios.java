@@ -0,0 +1,148 @@
+package com.unir.models;
+
+import com.unir.types.TipoEstacion;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumen de los precios de cada carburante por tipo de estación y provincia: precio mínimo, máximo y medio,
+ * número de precios y estación con el precio mínimo y con el máximo. Es lo que se guarda en la tabla resumen_precios
+ * para responder a las consultas del carburante más barato o más caro sin ordenar todos los precios.
+ *
+ * Los precios se acumulan en milésimas de euro a la vez que se leen. Cada lectura de un CSV acumula en su propio
+ * resumen y al terminar se anexa al de la carga. Si dos estaciones tienen el mismo precio mínimo o máximo se
+ * guarda la de menor id, por lo que el resultado no depende del orden en que se leen las fuentes.
+ */
+public class ResumenPrecios {
+
+    private final Map<String, Grupo> grupos = new HashMap<>();
+
+    /**
+     * Acumula un precio
+     * @param estacion
+     * @param carburante
+     * @param milesimas - Precio en milésimas de euro
+     */
+    public void agregar(Estacion estacion, Carburante carburante, int milesimas) {
+        Provincia provincia = estacion.getLocalidad().getProvincia();
+        String clave = carburante.getId() + "|" + estacion.getTipoEstacion() + "|" + provincia.getId();
+
+        Grupo grupo = grupos.get(clave);
+        if (grupo == null) {
+            grupo = new Grupo(carburante, estacion.getTipoEstacion(), provincia, milesimas, estacion.getId());
+            grupos.put(clave, grupo);
+        } else {
+            grupo.agregar(milesimas, estacion.getId());
+        }
+    }
+
+    /**
+     * Añade los precios acumulados en otro resumen, por ejemplo el de otro CSV
+     * @param otro
+     */
+    public synchronized void anexar(ResumenPrecios otro) {
+        for (Map.Entry<String, Grupo> entrada : otro.grupos.entrySet()) {
+            Grupo grupo = grupos.get(entrada.getKey());
+            if (grupo == null) {
+                grupos.put(entrada.getKey(), entrada.getValue().copia());
+            } else {
+                grupo.anexar(entrada.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return Grupos ordenados por carburante, tipo de estación y provincia
+     */
+    public synchronized List<Grupo> grupos() {
+        List<Grupo> ordenados = new ArrayList<>(grupos.values());
+        ordenados.sort(Comparator.comparing((Grupo grupo) -> grupo.getCarburante().getId())
+                .thenComparing(Grupo::getTipoEstacion)
+                .thenComparing(grupo -> grupo.getProvincia().getId()));
+        return ordenados;
+    }
+
+    /**
+     * Precios de un carburante en las estaciones de un tipo de una provincia
+     */
+    @Getter
+    public static class Grupo {
+        private final Carburante carburante;
+        private final TipoEstacion tipoEstacion;
+        private final Provincia provincia;
+        private int minimo;
+        private int maximo;
+        private long suma;
+        private int total;
+        private String estacionMinimo;
+        private String estacionMaximo;
+
+        private Grupo(Carburante carburante, TipoEstacion tipoEstacion, Provincia provincia, int milesimas, String estacion) {
+            this.carburante = carburante;
+            this.tipoEstacion = tipoEstacion;
+            this.provincia = provincia;
+            this.minimo = milesimas;
+            this.maximo = milesimas;
+            this.suma = milesimas;
+            this.total = 1;
+            this.estacionMinimo = estacion;
+            this.estacionMaximo = estacion;
+        }
+
+        private void agregar(int milesimas, String estacion) {
+            if (milesimas < minimo || (milesimas == minimo && estacion.compareTo(estacionMinimo) < 0)) {
+                minimo = milesimas;
+                estacionMinimo = estacion;
+            }
+            if (milesimas > maximo || (milesimas == maximo && estacion.compareTo(estacionMaximo) < 0)) {
+                maximo = milesimas;
+                estacionMaximo = estacion;
+            }
+            suma += milesimas;
+            total++;
+        }
+
+        private void anexar(Grupo otro) {
+            agregar(otro.minimo, otro.estacionMinimo);
+            agregar(otro.maximo, otro.estacionMaximo);
+            // agregar ha contado los dos extremos del otro grupo como dos precios más
+            suma += otro.suma - otro.minimo - otro.maximo;
+            total += otro.total - 2;
+        }
+
+        private Grupo copia() {
+            Grupo copia = new Grupo(carburante, tipoEstacion, provincia, minimo, estacionMinimo);
+            copia.maximo = maximo;
+            copia.estacionMaximo = estacionMaximo;
+            copia.suma = suma;
+            copia.total = total;
+            return copia;
+        }
+
+        /**
+         * @return Precio mínimo en euros, el mismo double que se guarda en la tabla precios
+         */
+        public double getPrecioMinimo() {
+            return minimo / 1000.0;
+        }
+
+        /**
+         * @return Precio máximo en euros
+         */
+        public double getPrecioMaximo() {
+            return maximo / 1000.0;
+        }
+
+        /**
+         * @return Precio medio en euros
+         */
+        public double getPrecioMedio() {
+            return suma / (double) total / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.unir.types;
+
+// Forma en la que se pasan los registros leídos de los CSV a la base de datos
+public enum ModoCarga {
+    // Se leen los dos CSV completos en memoria y después se cargan las tablas
+    COMPLETA,
+    // Cada registro se envía a una cola acotada mientras se lee y se escribe en paralelo
+    STREAMING,
+    // No se vacía la base de datos: se compara el CSV con lo ya cargado y solo se escriben las diferencias
+    DELTA,
+    // Se cargan unas tablas sombra en otro esquema y se intercambian con las de la base de datos con un RENAME TABLE
+    SOMBRA;
+
+    /**
+     * Obtiene el modo de carga a partir de la variable de entorno MODO_CARGA.
+     * Si no está definida se usa el modo COMPLETA.
+     * @return ModoCarga
+     */
+    public static ModoCarga actual() {
+        String modo = System.getenv("MODO_CARGA");
+        return modo == null || modo.isEmpty() ? COMPLETA : ModoCarga.valueOf(modo.toUpperCase());
+    }
+}
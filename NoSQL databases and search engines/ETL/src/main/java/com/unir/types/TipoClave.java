@@ -0,0 +1,36 @@
+package com.unir.types;
+
+// Tipo de columna de las claves primarias y ajenas de laboratorio01
+public enum TipoClave {
+    // varchar(36) con el UUID en texto, esquema de basedatos.sql
+    TEXTO,
+    // binary(16) con los 16 bytes del UUID, esquema de basedatosBinario.sql
+    BINARIO;
+
+    /**
+     * Obtiene el tipo de clave a partir de la variable de entorno TIPO_CLAVE.
+     * Si no está definida se usa el tipo TEXTO.
+     * @return TipoClave
+     */
+    public static TipoClave actual() {
+        String tipo = System.getenv("TIPO_CLAVE");
+        return tipo == null || tipo.isEmpty() ? TEXTO : TipoClave.valueOf(tipo.toUpperCase());
+    }
+
+    /**
+     * Parámetro de una sentencia para un id. En Java los ids siempre son el UUID en texto
+     * @return "?" o la conversión del UUID en texto a binario
+     */
+    public String parametro() {
+        return this == BINARIO ? "UUID_TO_BIN(?)" : "?";
+    }
+
+    /**
+     * Columna de id en una consulta, para leerla como el UUID en texto
+     * @param columna
+     * @return La columna o su conversión de binario a texto
+     */
+    public String columna(String columna) {
+        return this == BINARIO ? "BIN_TO_UUID(" + columna + ")" : columna;
+    }
+}
@@ -0,0 +1,254 @@
+package com.unir.app.read;
+
+import com.unir.models.Coordenada;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara IndiceEstaciones, construido con filas fijas, con la respuesta de ESTACION_MAS_ECONOMICA_POR_DISTANCIA:
+ * estaciones justo dentro y justo fuera del radio, empates de precio, estaciones distintas con la misma dirección y
+ * coordenadas y nombres de carburante con otras mayúsculas y acentos. La respuesta SQL se calcula recorriendo todas las filas con la misma distancia,
+ * el mismo filtro y el mismo orden que la consulta.
+ */
+class IndiceEstacionesTest {
+
+    private static final String GASOLEO = "Gasóleo A";
+    private static final String GASOLINA = "Gasolina 95 E5";
+
+    // Centro de Albacete
+    private static final int LATITUD = Coordenada.deGrados(38.994349);
+    private static final int LONGITUD = Coordenada.deGrados(-1.858542);
+
+    private static final List<Fila> FILAS = new ArrayList<>();
+    // Id de cada estación, como estaciones.id
+    private static final Map<IndiceEstaciones.FichaEstacion, String> IDS = new IdentityHashMap<>();
+    private static IndiceEstaciones indice;
+
+    // Estaciones justo dentro y justo fuera del radio, hacia el norte y hacia el este
+    private static IndiceEstaciones.FichaEstacion dentroNorte;
+    private static IndiceEstaciones.FichaEstacion fueraNorte;
+    private static IndiceEstaciones.FichaEstacion dentroEste;
+    private static IndiceEstaciones.FichaEstacion fueraEste;
+    // Estaciones con el mismo precio a 3 y 4 km, y una más cara a 1 km
+    private static IndiceEstaciones.FichaEstacion empateCerca;
+    private static IndiceEstaciones.FichaEstacion empateLejos;
+    private static IndiceEstaciones.FichaEstacion masCara;
+    // Dos estaciones con la misma dirección y coordenadas a 1,5 km, de distinta empresa y margen
+    private static IndiceEstaciones.FichaEstacion mismaDireccionD;
+    private static IndiceEstaciones.FichaEstacion mismaDireccionI;
+
+    @BeforeAll
+    static void construirIndice() {
+        int norte = bordeNorte(10);
+        dentroNorte = estacion(norte, LONGITUD, "Dentro norte");
+        fueraNorte = estacion(norte + 1, LONGITUD, "Fuera norte");
+        int este = bordeEste(25);
+        dentroEste = estacion(LATITUD, este, "Dentro este");
+        fueraEste = estacion(LATITUD, este + 1, "Fuera este");
+        empateCerca = estacion(LATITUD - Coordenada.deGrados(Coordenada.margenLatitud(3)), LONGITUD, "Empate cerca");
+        empateLejos = estacion(LATITUD, LONGITUD + Coordenada.deGrados(Coordenada.margenLongitud(LATITUD, 4)), "Empate lejos");
+        masCara = estacion(LATITUD + Coordenada.deGrados(Coordenada.margenLatitud(1)), LONGITUD, "Más cara");
+        int oeste = LONGITUD - Coordenada.deGrados(Coordenada.margenLongitud(LATITUD, 1.5));
+        mismaDireccionD = estacion(LATITUD, oeste, "CARRETERA C-31 KM. 148,50", "REPSOL", "D");
+        mismaDireccionI = estacion(LATITUD, oeste, "CARRETERA C-31 KM. 148,50", "BALLENOIL", "I");
+
+        FILAS.add(new Fila(dentroNorte, GASOLEO, 1.399));
+        FILAS.add(new Fila(fueraNorte, GASOLEO, 1.299));
+        FILAS.add(new Fila(dentroEste, GASOLEO, 1.259));
+        FILAS.add(new Fila(fueraEste, GASOLEO, 1.199));
+        FILAS.add(new Fila(empateLejos, GASOLEO, 1.459));
+        FILAS.add(new Fila(empateCerca, GASOLEO, 1.459));
+        FILAS.add(new Fila(masCara, GASOLEO, 1.489));
+        // La misma estación con otro carburante más barato, que no debe aparecer al buscar el gasóleo
+        FILAS.add(new Fila(masCara, GASOLINA, 1.099));
+        FILAS.add(new Fila(empateCerca, GASOLINA, 1.159));
+        FILAS.add(new Fila(mismaDireccionD, GASOLEO, 1.479));
+        FILAS.add(new Fila(mismaDireccionI, GASOLEO, 1.469));
+        FILAS.add(new Fila(mismaDireccionD, GASOLINA, 1.199));
+
+        // Igual que IndiceEstaciones.cargar, la ficha solo se crea la primera vez que aparece el id
+        IndiceEstaciones.Cargador cargador = new IndiceEstaciones.Cargador();
+        for (Fila fila : FILAS) {
+            String id = IDS.get(fila.estacion);
+            IndiceEstaciones.FichaEstacion ficha = cargador.ficha(id);
+            cargador.agregar(id, ficha == null ? fila.estacion : ficha, fila.carburante, fila.precio);
+        }
+        indice = cargador.construir();
+    }
+
+    @Test
+    void cuentaEstacionesYPrecios() {
+        assertEquals(IDS.size(), indice.getEstaciones());
+        assertEquals(FILAS.size(), indice.getPrecios());
+    }
+
+    @Test
+    void bordesDelRadio() {
+        assertTrue(Coordenada.distanciaKm(dentroNorte.getLatitud(), dentroNorte.getLongitud(), LATITUD, LONGITUD) <= 10);
+        assertTrue(Coordenada.distanciaKm(fueraNorte.getLatitud(), fueraNorte.getLongitud(), LATITUD, LONGITUD) > 10);
+        assertTrue(Coordenada.distanciaKm(dentroEste.getLatitud(), dentroEste.getLongitud(), LATITUD, LONGITUD) <= 25);
+        assertTrue(Coordenada.distanciaKm(fueraEste.getLatitud(), fueraEste.getLongitud(), LATITUD, LONGITUD) > 25);
+
+        assertSame(dentroNorte, comparar(GASOLEO, 10).getEstacion());
+        assertSame(fueraNorte, comparar(GASOLEO, 11).getEstacion());
+        assertSame(dentroEste, comparar(GASOLEO, 25).getEstacion());
+        assertSame(fueraEste, comparar(GASOLEO, 26).getEstacion());
+    }
+
+    @Test
+    void empateDePrecioDevuelveLaMasCercana() {
+        IndiceEstaciones.Resultado resultado = comparar(GASOLEO, 5);
+        assertSame(empateCerca, resultado.getEstacion());
+
+        List<IndiceEstaciones.Resultado> enRadio = indice.enRadio(GASOLEO, LATITUD, LONGITUD, 5);
+        assertEquals(5, enRadio.size());
+        assertSame(empateCerca, enRadio.get(0).getEstacion());
+        assertSame(empateLejos, enRadio.get(1).getEstacion());
+        assertSame(mismaDireccionI, enRadio.get(2).getEstacion());
+        assertSame(mismaDireccionD, enRadio.get(3).getEstacion());
+        assertSame(masCara, enRadio.get(4).getEstacion());
+    }
+
+    @Test
+    void estacionesDistintasConLaMismaDireccion() {
+        IndiceEstaciones.Resultado resultado = comparar(GASOLEO, 2);
+        assertSame(mismaDireccionI, resultado.getEstacion());
+        assertEquals("BALLENOIL", resultado.getEstacion().getEmpresa());
+        assertEquals("I", resultado.getEstacion().getMargen());
+        assertEquals(1.469, resultado.getPrecio());
+
+        List<IndiceEstaciones.Resultado> enRadio = indice.enRadio(GASOLEO, LATITUD, LONGITUD, 2);
+        assertEquals(3, enRadio.size());
+        assertSame(mismaDireccionD, enRadio.get(1).getEstacion());
+        assertEquals(1.479, enRadio.get(1).getPrecio());
+
+        // La estación I no tiene gasolina: el precio de la D no se mezcla con ella
+        List<IndiceEstaciones.Resultado> gasolina = indice.enRadio(GASOLINA, LATITUD, LONGITUD, 2);
+        assertEquals(2, gasolina.size());
+        assertSame(masCara, gasolina.get(0).getEstacion());
+        assertSame(mismaDireccionD, gasolina.get(1).getEstacion());
+    }
+
+    @Test
+    void carburanteSinDistinguirMayusculasNiAcentos() {
+        IndiceEstaciones.Resultado esperado = comparar(GASOLEO, 5);
+        for (String carburante : new String[]{"gasóleo a", "GASÓLEO A", "Gasoleo A", "gasoleo a", "GASOLEO A"}) {
+            IndiceEstaciones.Resultado resultado = indice.masEconomica(carburante, LATITUD, LONGITUD, 5);
+            assertNotNull(resultado, carburante);
+            assertSame(esperado.getEstacion(), resultado.getEstacion(), carburante);
+            assertEquals(esperado.getPrecio(), resultado.getPrecio(), carburante);
+            assertEquals(GASOLEO, resultado.getCarburante(), carburante);
+        }
+
+        assertSame(masCara, comparar(GASOLINA, 5).getEstacion());
+        assertEquals(1.099, indice.masEconomica("gasolina 95 e5", LATITUD, LONGITUD, 5).getPrecio());
+        assertNull(indice.masEconomica("Gasóleo B", LATITUD, LONGITUD, 5));
+        assertNull(indice.masEconomica(GASOLEO, LATITUD, LONGITUD, 0.5));
+    }
+
+    /**
+     * Comprueba que el índice devuelve una de las estaciones que puede devolver la consulta SQL, que no ordena
+     * las que tienen el mismo precio, y que entre ellas es la más cercana
+     */
+    private static IndiceEstaciones.Resultado comparar(String carburante, int distancia) {
+        List<Fila> esperadas = consultaSql(carburante, distancia);
+        IndiceEstaciones.Resultado resultado = indice.masEconomica(carburante, LATITUD, LONGITUD, distancia);
+        assertNotNull(resultado, carburante + " a " + distancia + " km");
+
+        Fila elegida = null;
+        for (Fila fila : esperadas) {
+            if (fila.estacion == resultado.getEstacion()) {
+                elegida = fila;
+            }
+        }
+        assertNotNull(elegida, carburante + " a " + distancia + " km");
+        assertEquals(elegida.precio, resultado.getPrecio());
+        assertEquals(distancia(elegida), resultado.getDistancia());
+        for (Fila fila : esperadas) {
+            assertTrue(distancia(elegida) <= distancia(fila), carburante + " a " + distancia + " km");
+        }
+        return resultado;
+    }
+
+    // Filas con carburante = ?, HAVING distancia <= ? y el menor precio
+    private static List<Fila> consultaSql(String carburante, int distancia) {
+        List<Fila> filas = new ArrayList<>();
+        for (Fila fila : FILAS) {
+            if (!fila.carburante.equals(carburante) || distancia(fila) > distancia) {
+                continue;
+            }
+            if (!filas.isEmpty() && fila.precio < filas.get(0).precio) {
+                filas.clear();
+            }
+            if (filas.isEmpty() || fila.precio == filas.get(0).precio) {
+                filas.add(fila);
+            }
+        }
+        return filas;
+    }
+
+    private static double distancia(Fila fila) {
+        return Coordenada.distanciaKm(fila.estacion.getLatitud(), fila.estacion.getLongitud(), LATITUD, LONGITUD);
+    }
+
+    // Última latitud al norte del origen que está a una distancia máxima
+    private static int bordeNorte(double radioKm) {
+        int latitud = LATITUD + Coordenada.deGrados(Coordenada.margenLatitud(radioKm));
+        while (Coordenada.distanciaKm(latitud, LONGITUD, LATITUD, LONGITUD) > radioKm) {
+            latitud--;
+        }
+        while (Coordenada.distanciaKm(latitud + 1, LONGITUD, LATITUD, LONGITUD) <= radioKm) {
+            latitud++;
+        }
+        return latitud;
+    }
+
+    // Última longitud al este del origen que está a una distancia máxima
+    private static int bordeEste(double radioKm) {
+        int longitud = LONGITUD + Coordenada.deGrados(Coordenada.margenLongitud(LATITUD, radioKm));
+        while (Coordenada.distanciaKm(LATITUD, longitud, LATITUD, LONGITUD) > radioKm) {
+            longitud--;
+        }
+        while (Coordenada.distanciaKm(LATITUD, longitud + 1, LATITUD, LONGITUD) <= radioKm) {
+            longitud++;
+        }
+        return longitud;
+    }
+
+    private static IndiceEstaciones.FichaEstacion estacion(int latitud, int longitud, String direccion) {
+        return estacion(latitud, longitud, direccion, "REPSOL", "D");
+    }
+
+    private static IndiceEstaciones.FichaEstacion estacion(int latitud, int longitud, String direccion, String empresa, String margen) {
+        IndiceEstaciones.FichaEstacion estacion = new IndiceEstaciones.FichaEstacion(latitud, longitud, "ALBACETE", "Albacete",
+                "ALBACETE", "02001", direccion, empresa, margen);
+        IDS.put(estacion, "estacion-" + IDS.size());
+        return estacion;
+    }
+
+    /**
+     * Fila de ESTACIONES_CON_PRECIO
+     */
+    private static class Fila {
+        private final IndiceEstaciones.FichaEstacion estacion;
+        private final String carburante;
+        private final double precio;
+
+        private Fila(IndiceEstaciones.FichaEstacion estacion, String carburante, double precio) {
+            this.estacion = estacion;
+            this.carburante = carburante;
+            this.precio = precio;
+        }
+    }
+}
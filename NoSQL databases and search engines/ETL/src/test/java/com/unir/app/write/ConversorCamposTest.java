@@ -0,0 +1,165 @@
+package com.unir.app.write;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compara ConversorCampos con los conversores del JDK en los límites del camino rápido: mantisas y potencias de 10
+ * exactas en double (2^53 y 10^22), punto fijo que cabe o no en un int, negativos, campos que van a los conversores
+ * del JDK y fechas alrededor de los cambios de horario de verano.
+ */
+class ConversorCamposTest {
+
+    private static TimeZone zonaPorDefecto;
+
+    @TempDir
+    Path directorio;
+
+    @BeforeAll
+    static void fijarZona() {
+        // Las fechas del CSV están en hora peninsular, con cambios de horario el último domingo de marzo y de octubre
+        zonaPorDefecto = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Madrid"));
+    }
+
+    @AfterAll
+    static void restaurarZona() {
+        TimeZone.setDefault(zonaPorDefecto);
+    }
+
+    @Test
+    void leerDoubleComoDoubleParseDouble() throws IOException {
+        List<String> valores = new ArrayList<>(Arrays.asList(
+                "0", "-0", "+0", "1,679", "-0,777972", "+3,5", "1.5", ",5", "5,",
+                "9007199254740991", "-9007199254740991", "9007199254740992", "9007199254740993",
+                "900719925,4740991", "0,0000000000000000000001", "0,00000000000000000000001",
+                "123456789012345678", "1234567890123456789", "1e5", " 2,5", "-38,994349"));
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            valores.add(numeroAleatorio(aleatorio, 1L << 54, 24));
+        }
+
+        ConversorCampos conversor = new ConversorCampos();
+        try (LectorCsv lector = lector(valores)) {
+            for (int i = 0; i < valores.size(); i++) {
+                String valor = valores.get(i);
+                assertEquals(Double.parseDouble(valor.trim().replace(",", ".")), conversor.leerDouble(lector, i), valor);
+            }
+        }
+    }
+
+    @Test
+    void leerMilesimasYMicrogradosComoBigDecimal() throws IOException {
+        List<String> valores = new ArrayList<>(Arrays.asList(
+                "0", "1,679", "-1,679", "1,6795", "1,6794", "-1,6795", "0,0005", "2147483,647", "-2147483,647",
+                "2147,483647", "-2147,483647", "-0,777972", "-0,7779725", "0,7779724", "38,9943495", "-3.7", "40,4"));
+        Random aleatorio = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            valores.add(numeroAleatorio(aleatorio, 2_000_000_000L, 9));
+        }
+
+        ConversorCampos conversor = new ConversorCampos();
+        try (LectorCsv lector = lector(valores)) {
+            for (int i = 0; i < valores.size(); i++) {
+                String valor = valores.get(i);
+                BigDecimal esperado = new BigDecimal(valor.replace(",", "."));
+                if (cabeEnInt(esperado, 3)) {
+                    assertEquals(puntoFijo(esperado, 3), conversor.leerMilesimas(lector, i), valor);
+                }
+                if (cabeEnInt(esperado, 6)) {
+                    assertEquals(puntoFijo(esperado, 6), conversor.leerMicrogrados(lector, i), valor);
+                }
+            }
+        }
+    }
+
+    @Test
+    void leerDecimalComoBigDecimal() throws IOException {
+        List<String> valores = new ArrayList<>(Arrays.asList(
+                "0", "-0,000000", "1,679", "-0,777972", "38,994349", "123456789012345678", "1234567890123456789,5"));
+        Random aleatorio = new Random(11);
+        for (int i = 0; i < 1000; i++) {
+            valores.add(numeroAleatorio(aleatorio, Long.MAX_VALUE / 10, 9));
+        }
+
+        ConversorCampos conversor = new ConversorCampos();
+        try (LectorCsv lector = lector(valores)) {
+            for (int i = 0; i < valores.size(); i++) {
+                String valor = valores.get(i);
+                assertEquals(new BigDecimal(valor.replace(",", ".")), conversor.leerDecimal(lector, i), valor);
+            }
+        }
+    }
+
+    @Test
+    void leerFechaComoSimpleDateFormat() throws IOException, ParseException {
+        List<String> valores = new ArrayList<>(Arrays.asList(
+                // Paso al horario de verano: de 02:00 se pasa a 03:00 y las 02:xx no existen
+                "26/03/2023 01:59", "26/03/2023 02:00", "26/03/2023 02:30", "26/03/2023 03:00", "26/03/2023 03:01",
+                // Vuelta al horario de invierno: las 02:xx se repiten
+                "29/10/2023 01:59", "29/10/2023 02:00", "29/10/2023 02:30", "29/10/2023 02:59", "29/10/2023 03:00",
+                // Se vuelve a una hora ya convertida y a otra distinta con los mismos minutos
+                "26/03/2023 01:59", "26/03/2023 01:59", "27/03/2023 01:59",
+                "31/12/2023 23:59", "01/01/2024 00:00", "29/02/2024 12:15",
+                // Formatos que no son dd/MM/yyyy HH:mm van al SimpleDateFormat
+                "1/1/2023 10:00", "01/01/2023 1:05"));
+        // Cada 7 minutos durante los dos días de cambio de horario
+        for (String dia : new String[]{"26/03/2023", "29/10/2023"}) {
+            for (int minutos = 0; minutos < 24 * 60; minutos += 7) {
+                valores.add(String.format("%s %02d:%02d", dia, minutos / 60, minutos % 60));
+            }
+        }
+
+        ConversorCampos conversor = new ConversorCampos();
+        SimpleDateFormat formato = new SimpleDateFormat("dd/MM/yyyy HH:mm");
+        try (LectorCsv lector = lector(valores)) {
+            for (int i = 0; i < valores.size(); i++) {
+                String valor = valores.get(i);
+                assertEquals(formato.parse(valor).getTime(), conversor.leerFecha(lector, i), valor);
+            }
+        }
+    }
+
+    // Número aleatorio con coma decimal, mantisa menor que mantisaMaxima y hasta decimalesMaximos decimales
+    private static String numeroAleatorio(Random aleatorio, long mantisaMaxima, int decimalesMaximos) {
+        BigDecimal valor = BigDecimal.valueOf((long) (aleatorio.nextDouble() * mantisaMaxima), aleatorio.nextInt(decimalesMaximos + 1));
+        String texto = valor.toPlainString().replace(".", ",");
+        return aleatorio.nextBoolean() ? "-" + texto : texto;
+    }
+
+    private static long puntoFijo(BigDecimal valor, int escala) {
+        return valor.movePointRight(escala).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static boolean cabeEnInt(BigDecimal valor, int escala) {
+        long puntoFijo = puntoFijo(valor, escala);
+        return puntoFijo >= Integer.MIN_VALUE && puntoFijo <= Integer.MAX_VALUE;
+    }
+
+    // LectorCsv situado en una línea con un campo por valor
+    private LectorCsv lector(List<String> valores) throws IOException {
+        Path csv = directorio.resolve("valores.csv");
+        Files.write(csv, (String.join(";", valores) + "\n").getBytes(StandardCharsets.UTF_8));
+        LectorCsv lector = new LectorCsv(csv);
+        lector.siguiente();
+        return lector;
+    }
+}
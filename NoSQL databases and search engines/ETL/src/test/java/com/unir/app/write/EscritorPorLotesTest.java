@@ -0,0 +1,167 @@
+package com.unir.app.write;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba con una conexión simulada, que ejecuta los lotes al instante, que ningún commit pasa de
+ * MAXIMO_REGISTROS_POR_COMMIT registros aunque el lote y el intervalo de commit lleguen a sus máximos, y que al
+ * reanudar después de perder el punto de control del commit más grande todos sus registros se vuelven a escribir
+ * con INSERT IGNORE.
+ */
+class EscritorPorLotesTest {
+
+    private static final int MAXIMO_REGISTROS_POR_COMMIT = 50000;
+    private static final int REGISTROS = 400_000;
+    private static final String TABLA = "precios";
+    private static final String SQL = "INSERT INTO precios (id) VALUES (?)";
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void ningunCommitPasaDelMaximo() throws SQLException {
+        ConexionSimulada simulada = new ConexionSimulada();
+        long escritos = new EscritorPorLotes<Integer>(simulada.conexion(), TABLA, SQL, (statement, registro) -> statement.setInt(1, registro))
+                .escribir(registros(REGISTROS));
+
+        assertEquals(REGISTROS, escritos);
+        assertEquals(REGISTROS, simulada.commits.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(MAXIMO_REGISTROS_POR_COMMIT, Collections.max(simulada.commits));
+    }
+
+    @Test
+    void reanudarReescribeElCommitPerdidoConInsertIgnore() throws SQLException, IOException {
+        Path csv = Files.write(directorio.resolve("precios.csv"), new byte[]{1});
+        Path fichero = directorio.resolve("precios.puntocontrol");
+
+        ConexionSimulada primera = new ConexionSimulada();
+        escribir(primera, PuntoControl.abrir(fichero, 1, csv));
+
+        // La carga se interrumpe después del commit más grande y antes de guardar su punto de control
+        int mayor = primera.commits.indexOf(Collections.max(primera.commits));
+        int confirmados = 0;
+        for (int i = 0; i < mayor; i++) {
+            confirmados += primera.commits.get(i);
+        }
+        int perdidos = primera.commits.get(mayor);
+
+        Files.deleteIfExists(fichero);
+        PuntoControl.abrir(fichero, 1, csv).confirmar(PuntoControl.flujo(TABLA, 0), confirmados, confirmados - 1);
+        PuntoControl puntoControl = PuntoControl.abrir(fichero, 1, csv);
+        assertTrue(puntoControl.isReanudando());
+
+        ConexionSimulada reanudada = new ConexionSimulada();
+        assertEquals(REGISTROS - confirmados, escribir(reanudada, puntoControl));
+
+        assertFalse(reanudada.sentencias.containsKey(confirmados - 1));
+        for (int registro = confirmados; registro < confirmados + perdidos; registro++) {
+            assertTrue(reanudada.sentencias.get(registro).startsWith("INSERT IGNORE INTO"), "Registro " + registro);
+        }
+        assertEquals(SQL, reanudada.sentencias.get(REGISTROS - 1));
+    }
+
+    private static long escribir(ConexionSimulada simulada, PuntoControl puntoControl) throws SQLException {
+        return new EscritorPorLotes<Integer>(simulada.conexion(), TABLA, SQL, (statement, registro) -> statement.setInt(1, registro))
+                .puntoControl(puntoControl, registro -> registro)
+                .escribir(registros(REGISTROS));
+    }
+
+    private static List<Integer> registros(int cantidad) {
+        List<Integer> registros = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            registros.add(i);
+        }
+        return registros;
+    }
+
+    /**
+     * Conexión que guarda los registros de cada commit y la sentencia con la que se ha escrito cada registro
+     */
+    private static class ConexionSimulada {
+        private final List<Integer> commits = new ArrayList<>();
+        private final Map<Integer, String> sentencias = new HashMap<>();
+        private int sinConfirmar;
+
+        private Connection conexion() {
+            return proxy(Connection.class, (proxy, metodo, argumentos) -> {
+                switch (metodo.getName()) {
+                    case "getAutoCommit":
+                        return true;
+                    case "commit":
+                        if (sinConfirmar > 0) {
+                            commits.add(sinConfirmar);
+                        }
+                        sinConfirmar = 0;
+                        return null;
+                    case "prepareStatement":
+                        return sentencia((String) argumentos[0]);
+                    default:
+                        return valorPorDefecto(metodo);
+                }
+            });
+        }
+
+        private PreparedStatement sentencia(String sql) {
+            List<Integer> lote = new ArrayList<>();
+            int[] asignado = new int[1];
+            return proxy(PreparedStatement.class, (proxy, metodo, argumentos) -> {
+                switch (metodo.getName()) {
+                    case "setInt":
+                        asignado[0] = (Integer) argumentos[1];
+                        return null;
+                    case "addBatch":
+                        lote.add(asignado[0]);
+                        return null;
+                    case "executeBatch":
+                        for (Integer registro : lote) {
+                            sentencias.put(registro, sql);
+                        }
+                        sinConfirmar += lote.size();
+                        int[] resultados = new int[lote.size()];
+                        lote.clear();
+                        return resultados;
+                    default:
+                        return valorPorDefecto(metodo);
+                }
+            });
+        }
+    }
+
+    private static <T> T proxy(Class<T> tipo, InvocationHandler manejador) {
+        return tipo.cast(Proxy.newProxyInstance(EscritorPorLotesTest.class.getClassLoader(), new Class<?>[]{tipo}, manejador));
+    }
+
+    private static Object valorPorDefecto(Method metodo) {
+        Class<?> tipo = metodo.getReturnType();
+        if (tipo == boolean.class) {
+            return false;
+        }
+        if (tipo == int.class) {
+            return 0;
+        }
+        if (tipo == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
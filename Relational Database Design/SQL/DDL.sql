@@ -48,8 +48,8 @@ create table stations
     st_id      int                              not null
         primary key,
     cp         varchar(5)                       not null,
-    latitude   float                            null,
-    longitude  float                            null,
+    latitude   decimal(10, 6)                   null,
+    longitude  decimal(10, 6)                   null,
     loc_id     int                              null,
     margin     enum ('I', 'D', 'N') default 'N' not null,
     address    varchar(250)                     not null,
@@ -1,6 +1,7 @@
 package com.unir.app.read;
 
 import com.unir.config.MySqlConnector;
+import com.unir.config.PreparedStatementCache;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.*;
@@ -10,16 +11,25 @@ public class MySqlApplication {
 
     private static final String DATABASE = "employees";
 
+    // Numero de empleados de un departamento
+    private static final String EMPLOYEES_OF_DEPARTMENT = "select count(*) as 'Total'\n" +
+            "from employees emp\n" +
+            "inner join dept_emp dep_rel on emp.emp_no = dep_rel.emp_no\n" +
+            "inner join departments dep on dep_rel.dept_no = dep.dept_no\n" +
+            "where dep_rel.dept_no = ?;\n";
+
     public static void main(String[] args) {
 
         //Creamos conexion. No es necesario indicar puerto en host si usamos el default, 1521
-        //Try-with-resources. Se cierra la conexión automáticamente al salir del bloque try
-        try(Connection connection = new MySqlConnector("localhost", DATABASE).getConnection()) {
+        //Try-with-resources. Se cierran las sentencias y la conexión automáticamente al salir del bloque try
+        //Las sentencias se preparan una vez por conexion, en el servidor, y se reutilizan en cada llamada
+        try(Connection connection = new MySqlConnector("localhost", DATABASE, PreparedStatementCache.CONNECTION_PROPERTIES).getConnection();
+            PreparedStatementCache statements = new PreparedStatementCache(connection)) {
 
             log.info("Conexión establecida con la base de datos Oracle");
 
-            selectAllEmployeesOfDepartment(connection, "d001");
-            selectAllEmployeesOfDepartment(connection, "d002");
+            selectAllEmployeesOfDepartment(statements, "d001");
+            selectAllEmployeesOfDepartment(statements, "d002");
 
         } catch (Exception e) {
             log.error("Error al tratar con la base de datos", e);
@@ -35,13 +45,14 @@ public class MySqlApplication {
      * @throws SQLException
      */
     private static void selectAllEmployees(Connection connection) throws SQLException {
-        Statement selectEmployees = connection.createStatement();
-        ResultSet employees = selectEmployees.executeQuery("select * from employees");
+        try (Statement selectEmployees = connection.createStatement();
+             ResultSet employees = selectEmployees.executeQuery("select * from employees")) {
 
-        while (employees.next()) {
-            log.debug("Employee: {} {}",
-                    employees.getString("first_name"),
-                    employees.getString("last_name"));
+            while (employees.next()) {
+                log.debug("Employee: {} {}",
+                        employees.getString("first_name"),
+                        employees.getString("last_name"));
+            }
         }
     }
 
@@ -50,22 +61,20 @@ public class MySqlApplication {
      * PreparedStatement es la forma más segura de ejecutar consultas a la base de datos.
      * Se protege de ataques de inyección SQL.
      * Es útil para sentencias DML.
-     * @param connection
+     * La sentencia se prepara la primera vez y las siguientes llamadas reutilizan la misma.
+     * @param statements - Sentencias preparadas de la conexion
      * @throws SQLException
      */
-    private static void selectAllEmployeesOfDepartment(Connection connection, String department) throws SQLException {
-        PreparedStatement selectEmployees = connection.prepareStatement("select count(*) as 'Total'\n" +
-                "from employees emp\n" +
-                "inner join dept_emp dep_rel on emp.emp_no = dep_rel.emp_no\n" +
-                "inner join departments dep on dep_rel.dept_no = dep.dept_no\n" +
-                "where dep_rel.dept_no = ?;\n");
+    private static void selectAllEmployeesOfDepartment(PreparedStatementCache statements, String department) throws SQLException {
+        PreparedStatement selectEmployees = statements.prepare(EMPLOYEES_OF_DEPARTMENT);
         selectEmployees.setString(1, department);
-        ResultSet employees = selectEmployees.executeQuery();
 
-        while (employees.next()) {
-            log.debug("Empleados del departamento {}: {}",
-                    department,
-                    employees.getString("Total"));
+        try (ResultSet employees = selectEmployees.executeQuery()) {
+            while (employees.next()) {
+                log.debug("Empleados del departamento {}: {}",
+                        department,
+                        employees.getString("Total"));
+            }
         }
     }
 }
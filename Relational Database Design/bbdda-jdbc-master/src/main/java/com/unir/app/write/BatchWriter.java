@@ -0,0 +1,251 @@
+package com.unir.app.write;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.util.function.Function;
+
+/**
+ * Escritor por lotes comun a todas las tablas.
+ * Ajusta el tamaño del lote y el intervalo de commit en tiempo de ejecucion a partir de las filas por segundo
+ * y la latencia observadas en cada executeBatch. Con rewriteBatchedStatements=true en la conexion,
+ * el driver reescribe cada lote como un unico INSERT multi-fila.
+ * Con un LoadCheckpoint se guarda el avance despues de cada commit y se saltan las filas ya confirmadas.
+ *
+ * El punto de control se guarda en un fichero despues del commit, por lo que si la carga se interrumpe entre los dos
+ * el ultimo commit queda confirmado sin constar en el punto de control. Un lote se corta antes de pasar del intervalo
+ * de commit, por lo que ningun commit tiene mas de MAX_COMMIT_ROWS filas, y al reanudar las primeras MAX_COMMIT_ROWS
+ * filas se escriben con INSERT IGNORE: las filas que ya existen se descartan y cualquier otro aviso de MySQL se trata
+ * como un error.
+ * @param <T> Tipo de fila que se escribe
+ */
+@Slf4j
+public class BatchWriter<T> {
+
+    private static final int MIN_BATCH_SIZE = 10;
+    private static final int MAX_BATCH_SIZE = 20000;
+    private static final int INITIAL_BATCH_SIZE = 100;
+
+    // Latencia maxima aceptable de un lote y tiempo objetivo entre commits
+    private static final long MAX_BATCH_LATENCY_NANOS = 500_000_000L;
+    private static final long COMMIT_INTERVAL_NANOS = 1_000_000_000L;
+
+    // Filas maximas por commit, acota el undo log de cada transaccion aunque la carga sea muy rapida
+    private static final int MAX_COMMIT_ROWS = 50000;
+
+    // Codigo de MySQL de una clave primaria duplicada (ER_DUP_ENTRY)
+    private static final int DUPLICATE_KEY = 1062;
+
+    /**
+     * Rellena los parametros del PreparedStatement con los datos de una fila
+     * @param <T>
+     */
+    public interface Binder<T> {
+        void bind(PreparedStatement statement, T row) throws SQLException;
+    }
+
+    private final Connection connection;
+    private final String table;
+    private final String sql;
+    private final Binder<T> binder;
+
+    @Getter
+    private int batchSize = INITIAL_BATCH_SIZE;
+    @Getter
+    private int commitRows = INITIAL_BATCH_SIZE;
+    private double bestRowsPerSecond = 0;
+    private double lastRowsPerSecond = 0;
+    private long lastLatencyNanos = 0;
+    private boolean growing = true;
+
+    private LoadCheckpoint checkpoint;
+    private Function<T, Object> key;
+
+    public BatchWriter(Connection connection, String table, String sql, Binder<T> binder) {
+        this.connection = connection;
+        this.table = table;
+        this.sql = sql;
+        this.binder = binder;
+    }
+
+    /**
+     * Guarda el avance en un punto de control y, si la carga se reanuda, salta las filas ya confirmadas.
+     * @param checkpoint - Punto de control de la carga
+     * @param key - Clave de cada fila, para identificar el flujo y comprobar que el CSV no ha cambiado
+     * @return BatchWriter
+     */
+    public BatchWriter<T> checkpoint(LoadCheckpoint checkpoint, Function<T, Object> key) {
+        this.checkpoint = checkpoint;
+        this.key = key;
+        return this;
+    }
+
+    /**
+     * Escribe todas las filas en la tabla, haciendo commit cada intervalo de commit.
+     * @param rows - Filas a escribir
+     * @return Número de filas escritas
+     * @throws SQLException - Error al escribir las filas
+     */
+    public long write(Iterable<T> rows) throws SQLException {
+
+        long written = 0;
+        long start = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+
+        // Preparamos la consulta una unica vez para poder reutilizarla en todos los lotes. Al reanudar una carga
+        // se empieza con la consulta idempotente hasta pasar el commit que puede faltar en el punto de control
+        boolean resuming = checkpoint != null && checkpoint.isResuming();
+        try (PreparedStatement insert = connection.prepareStatement(sql);
+             PreparedStatement idempotentInsert = resuming ? connection.prepareStatement(idempotent(sql)) : null) {
+
+            PreparedStatement statement = resuming ? idempotentInsert : insert;
+
+            // Desactivamos el autocommit para hacer commit por intervalos
+            connection.setAutoCommit(false);
+
+            int pending = 0;
+            int uncommitted = 0;
+            String stream = null;
+            long skip = 0;
+            long skipped = 0;
+            T last = null;
+
+            for (T row : rows) {
+                // Saltamos las filas confirmadas en una ejecucion anterior
+                if (checkpoint != null) {
+                    if (stream == null) {
+                        stream = LoadCheckpoint.stream(table, key.apply(row));
+                        skip = checkpoint.committed(stream);
+                    }
+                    if (skipped < skip) {
+                        if (++skipped == skip) {
+                            checkResume(stream, row);
+                        }
+                        continue;
+                    }
+                }
+
+                binder.bind(statement, row);
+                statement.addBatch();
+                last = row;
+
+                // Ejecutamos el batch cada lote de registros, o antes si el commit pasaria de commitRows filas
+                if (++pending >= batchSize || uncommitted + pending >= commitRows) {
+                    executeBatch(statement, pending, statement == idempotentInsert);
+                    written += pending;
+                    uncommitted += pending;
+                    pending = 0;
+
+                    if (uncommitted >= commitRows) {
+                        connection.commit();
+                        uncommitted = 0;
+                        saveCheckpoint(stream, skipped + written, last);
+
+                        if (statement == idempotentInsert && written >= MAX_COMMIT_ROWS) {
+                            statement = insert;
+                        }
+                    }
+                }
+            }
+
+            // Ejecutamos el batch final
+            if (pending > 0) {
+                executeBatch(statement, pending, statement == idempotentInsert);
+                written += pending;
+            }
+            connection.commit();
+            saveCheckpoint(stream, skipped + written, last);
+
+            if (skipped > 0) {
+                log.info("Tabla {}: saltadas {} filas ya confirmadas segun el punto de control", table, skipped);
+            }
+
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("Tabla {}: {} filas en {} s ({} filas/s). Lote elegido = {}, commit cada {} filas, latencia del ultimo lote = {} ms",
+                table, written, String.format("%.2f", seconds), Math.round(written / Math.max(seconds, 1e-9)),
+                batchSize, commitRows, lastLatencyNanos / 1_000_000);
+        return written;
+    }
+
+    private void checkResume(String stream, T row) throws SQLException {
+        if (!String.valueOf(key.apply(row)).equals(checkpoint.lastKey(stream))) {
+            throw new SQLException("El punto de control de " + stream + " no coincide con las filas del CSV");
+        }
+    }
+
+    private void saveCheckpoint(String stream, long rows, T last) throws SQLException {
+        if (checkpoint == null || last == null) {
+            return;
+        }
+        try {
+            checkpoint.commit(stream, rows, key.apply(last));
+        } catch (IOException e) {
+            throw new SQLException("Error al guardar el punto de control de " + stream, e);
+        }
+    }
+
+    private void executeBatch(PreparedStatement statement, int rows, boolean idempotent) throws SQLException {
+        long start = System.nanoTime();
+        statement.executeBatch();
+        long latency = Math.max(System.nanoTime() - start, 1);
+        if (idempotent) {
+            checkWarnings(statement);
+        }
+        tune(rows, latency);
+    }
+
+    // INSERT IGNORE convierte todos los errores en avisos: solo se admiten los de filas ya existentes
+    private void checkWarnings(PreparedStatement statement) throws SQLException {
+        for (SQLWarning warning = statement.getWarnings(); warning != null; warning = warning.getNextWarning()) {
+            if (warning.getErrorCode() != DUPLICATE_KEY) {
+                throw new SQLException("Aviso al escribir en " + table + ": " + warning.getMessage(), warning.getSQLState(), warning.getErrorCode(), warning);
+            }
+        }
+        statement.clearWarnings();
+    }
+
+    private static String idempotent(String sql) throws SQLException {
+        if (!sql.regionMatches(true, 0, "INSERT INTO", 0, "INSERT INTO".length())) {
+            throw new SQLException("Solo se puede reanudar con punto de control un INSERT: " + sql);
+        }
+        return "INSERT IGNORE INTO" + sql.substring("INSERT INTO".length());
+    }
+
+    /**
+     * Ajusta el lote por ascenso de colina: mientras las filas por segundo mejoran se sigue en la misma direccion,
+     * si empeoran se invierte. Si un lote supera la latencia maxima se reduce a la mitad.
+     * El intervalo de commit se fija para que haya aproximadamente un commit por segundo, con un maximo de filas.
+     */
+    private void tune(int rows, long latencyNanos) {
+        double rowsPerSecond = rows * 1e9 / latencyNanos;
+        lastLatencyNanos = latencyNanos;
+
+        if (latencyNanos > MAX_BATCH_LATENCY_NANOS) {
+            batchSize = Math.max(MIN_BATCH_SIZE, batchSize / 2);
+            growing = false;
+        } else if (rows == batchSize) {
+            if (rowsPerSecond < lastRowsPerSecond * 0.95) {
+                growing = !growing;
+            }
+            batchSize = growing
+                    ? Math.min(MAX_BATCH_SIZE, batchSize * 2)
+                    : Math.max(MIN_BATCH_SIZE, batchSize / 2);
+        }
+
+        lastRowsPerSecond = rowsPerSecond;
+        bestRowsPerSecond = Math.max(bestRowsPerSecond, rowsPerSecond);
+        commitRows = (int) Math.max(batchSize, Math.min(MAX_COMMIT_ROWS, bestRowsPerSecond * COMMIT_INTERVAL_NANOS / 1e9));
+    }
+}
@@ -0,0 +1,310 @@
+package com.unir.app.write;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lector de ficheros CSV separados por ';' que trabaja directamente sobre el fichero mapeado en memoria.
+ * Cada llamada a next() solo calcula los limites de los campos de la linea; un campo se convierte en String
+ * unicamente cuando se pide con string(), por lo que las columnas vacias o no usadas no generan objetos.
+ * Admite la marca BOM de UTF-8, lineas terminadas en \n o \r\n y campos entre comillas con comillas dobladas.
+ * El fichero se mapea por ventanas, por lo que puede superar los 2 GB; una linea no puede superar la ventana.
+ *
+ * Para leer el fichero en paralelo se puede dividir en trozos que empiezan y terminan en un salto de linea
+ * (lineRanges) y leer cada trozo con su propio CsvTokenizer. Los trozos suponen que ningun campo entre comillas
+ * contiene saltos de linea, como ocurre en los CSV de precios.
+ */
+public final class CsvTokenizer implements Closeable {
+
+    private static final long WINDOW = 1L << 28;
+    private static final byte SEPARATOR = ';';
+    private static final byte QUOTE = '"';
+
+    private final FileChannel channel;
+    private final long size;
+    private final long end;
+
+    private MappedByteBuffer buffer;
+    private long bufferStart;
+    private int position;
+    private long lineOffset;
+
+    // Limites [start, end) de cada campo de la linea actual dentro de la ventana mapeada
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    private boolean[] escaped = new boolean[32];
+    private int fields;
+    private byte[] bytes = new byte[256];
+
+    public CsvTokenizer(Path file) throws IOException {
+        this(file, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Lee solo las lineas que empiezan entre dos posiciones del fichero
+     * @param file
+     * @param from - Posicion del inicio de la primera linea, incluida
+     * @param to - Posicion hasta la que se leen lineas, excluida. Las lineas que empiezan antes se leen enteras
+     * @throws IOException
+     */
+    public CsvTokenizer(Path file, long from, long to) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.end = Math.min(to, size);
+        map(Math.min(from, size));
+
+        // Saltamos la marca BOM de UTF-8
+        if (from == 0 && buffer.limit() >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB && (buffer.get(2) & 0xFF) == 0xBF) {
+            position = 3;
+        }
+    }
+
+    /**
+     * Divide el fichero a partir de una posicion en trozos de tamaño parecido que empiezan al inicio de una linea.
+     * @param file
+     * @param from - Inicio de la primera linea del primer trozo
+     * @param parts - Numero de trozos deseado. Puede haber menos si las lineas son mas largas que los trozos
+     * @return Posiciones de los limites de los trozos, de from al final del fichero: el trozo i es [i, i + 1)
+     * @throws IOException
+     */
+    public static long[] lineRanges(Path file, long from, int parts) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] limits = new long[parts + 1];
+            int count = 0;
+            limits[count++] = Math.min(from, size);
+
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            for (int part = 1; part < parts; part++) {
+                long limit = Math.max(from + (size - from) * part / parts, limits[count - 1]);
+                limit = nextLine(channel, limit, buffer);
+                if (limit > limits[count - 1] && limit < size) {
+                    limits[count++] = limit;
+                }
+            }
+            limits[count++] = size;
+            return Arrays.copyOf(limits, count);
+        }
+    }
+
+    /**
+     * Avanza a la siguiente linea del fichero.
+     * @return false si no quedan lineas
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (bufferStart + position >= end) {
+                return false;
+            }
+            int lineStart = position;
+            if (tokenize()) {
+                lineOffset = bufferStart + lineStart;
+                return true;
+            }
+            // La linea continua despues de la ventana: volvemos a mapear desde su inicio
+            if (bufferStart + buffer.limit() >= size || lineStart == 0) {
+                throw new IOException("Linea demasiado larga en el offset " + (bufferStart + lineStart));
+            }
+            map(bufferStart + lineStart);
+        }
+    }
+
+    /**
+     * @return Numero de campos de la linea actual
+     */
+    public int fields() {
+        return fields;
+    }
+
+    /**
+     * @return Posicion en el fichero del inicio de la linea actual
+     */
+    public long lineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * @return Posicion en el fichero del inicio de la linea siguiente a la actual
+     */
+    public long nextLineOffset() {
+        return bufferStart + position;
+    }
+
+    /**
+     * @param field
+     * @return true si el campo esta vacio o la linea no lo tiene
+     */
+    public boolean isEmpty(int field) {
+        return field >= fields || starts[field] == ends[field];
+    }
+
+    /**
+     * @param field
+     * @return Numero de bytes del campo, sin comillas
+     */
+    public int length(int field) {
+        return field >= fields ? 0 : ends[field] - starts[field];
+    }
+
+    /**
+     * @param field
+     * @param index
+     * @return Byte en la posicion index del campo, sin convertirlo en String
+     */
+    public byte byteAt(int field, int index) {
+        return buffer.get(starts[field] + index);
+    }
+
+    /**
+     * @param field
+     * @return true si el campo tiene comillas dobladas, por lo que sus bytes no coinciden con su valor
+     */
+    public boolean hasEscapes(int field) {
+        return field < fields && escaped[field];
+    }
+
+    /**
+     * Convierte el campo en String. Solo debe llamarse para los campos que se guardan.
+     * @param field
+     * @return Valor del campo, vacio si la linea no lo tiene
+     */
+    public String string(int field) {
+        if (isEmpty(field)) {
+            return "";
+        }
+
+        int length = 0;
+        for (int i = starts[field]; i < ends[field]; i++) {
+            byte b = buffer.get(i);
+            // Las comillas dobladas dentro de un campo entre comillas representan una sola
+            if (escaped[field] && b == QUOTE) {
+                i++;
+            }
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = b;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Posicion del inicio de la linea siguiente a la que contiene la posicion, o el final del fichero
+    private static long nextLine(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        long size = channel.size();
+        // Si la posicion ya es el inicio de una linea no se mueve
+        if (position == 0) {
+            return 0;
+        }
+        position--;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void map(long start) throws IOException {
+        bufferStart = start;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+        position = 0;
+    }
+
+    /**
+     * Calcula los limites de los campos de la linea que empieza en position.
+     * @return false si la linea no termina dentro de la ventana mapeada y no es el final del fichero
+     */
+    private boolean tokenize() {
+        int limit = buffer.limit();
+        boolean lastWindow = bufferStart + limit >= size;
+        int i = position;
+        fields = 0;
+
+        while (true) {
+            if (fields == starts.length) {
+                grow();
+            }
+            boolean quoted = i < limit && buffer.get(i) == QUOTE;
+            boolean hasEscapes = false;
+            int start;
+            int end;
+
+            if (quoted) {
+                start = ++i;
+                while (true) {
+                    if (i >= limit) {
+                        return false;
+                    }
+                    if (buffer.get(i) == QUOTE) {
+                        if (i + 1 < limit && buffer.get(i + 1) == QUOTE) {
+                            hasEscapes = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                end = i++;
+                // Ignoramos lo que haya entre la comilla de cierre y el separador
+                while (i < limit && buffer.get(i) != SEPARATOR && buffer.get(i) != '\n') {
+                    i++;
+                }
+            } else {
+                start = i;
+                while (i < limit && buffer.get(i) != SEPARATOR && buffer.get(i) != '\n') {
+                    i++;
+                }
+                end = i;
+            }
+
+            if (i >= limit && !lastWindow) {
+                return false;
+            }
+
+            boolean endOfLine = i >= limit || buffer.get(i) == '\n';
+            // Quitamos el \r de las lineas terminadas en \r\n
+            if (endOfLine && !quoted && end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+
+            starts[fields] = start;
+            ends[fields] = end;
+            escaped[fields] = hasEscapes;
+            fields++;
+            i++;
+
+            if (endOfLine) {
+                position = Math.min(i, limit);
+                return true;
+            }
+        }
+    }
+
+    private void grow() {
+        starts = Arrays.copyOf(starts, starts.length * 2);
+        ends = Arrays.copyOf(ends, ends.length * 2);
+        escaped = Arrays.copyOf(escaped, escaped.length * 2);
+    }
+}
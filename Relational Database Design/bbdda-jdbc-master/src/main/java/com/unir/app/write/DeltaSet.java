@@ -0,0 +1,68 @@
+package com.unir.app.write;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diferencias entre las filas de una tabla ya cargadas en la base de datos y las leidas del CSV.
+ * De la carga anterior solo se guarda la huella de cada fila por su clave. Cada fila leida se compara con ella:
+ * si no existia se inserta, si su huella ha cambiado se actualiza y las claves que no aparecen en el CSV se borran.
+ * @param <K> Clave de la fila
+ * @param <T> Fila leida del CSV
+ */
+public class DeltaSet<K, T> {
+
+    private final Map<K, Long> previous;
+
+    @Getter
+    private final List<T> inserts = new ArrayList<>();
+    @Getter
+    private final List<T> updates = new ArrayList<>();
+
+    /**
+     * @param previous - Huella de cada fila ya cargada por su clave. Se modifica al comparar
+     */
+    public DeltaSet(Map<K, Long> previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Compara una fila leida con la ya cargada con la misma clave.
+     * @param key
+     * @param fingerprint
+     * @param row
+     * @return true si la fila ya estaba cargada y no ha cambiado
+     */
+    public boolean compare(K key, long fingerprint, T row) {
+        Long loaded = previous.remove(key);
+        if (loaded == null) {
+            inserts.add(row);
+            return false;
+        }
+        if (loaded != fingerprint) {
+            updates.add(row);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fuerza la actualizacion de una fila que no ha cambiado, por ejemplo porque han cambiado sus filas dependientes.
+     * @param row
+     */
+    public void update(T row) {
+        updates.add(row);
+    }
+
+    /**
+     * Claves cargadas que no han aparecido en el CSV. Solo es completo despues de comparar todas las filas.
+     * @return Claves a borrar
+     */
+    public Collection<K> getDeletes() {
+        return previous.keySet();
+    }
+}
@@ -0,0 +1,179 @@
+package com.unir.app.write;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+/**
+ * Convierte los campos numericos y de fecha del CSV directamente desde los bytes del CsvTokenizer, sin crear String.
+ * Los numeros usan coma decimal ("1,679", "-0,777972") y las fechas el formato dd/MM/yyyy HH:mm en la zona horaria local.
+ *
+ * Un numero se lee como mantisa entera y numero de decimales. Si la mantisa y la potencia de 10 se representan
+ * de forma exacta, una unica division da el mismo resultado correctamente redondeado que Double.parseDouble
+ * o Float.parseFloat. En el resto de casos, y con cualquier caracter inesperado, se usan los parsers del JDK.
+ *
+ * Guarda el ultimo dia y hora convertidos, por lo que cada hilo debe usar su propia instancia.
+ */
+public class FieldParser {
+
+    // Mantisas y potencias de 10 representables de forma exacta en double y en float
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+    private static final long MAX_EXACT_FLOAT = 1L << 24;
+    private static final int MAX_DIGITS = 18;
+    private static final double[] DOUBLE_POWERS = new double[23];
+    private static final float[] FLOAT_POWERS = new float[11];
+    private static final long[] LONG_POWERS = new long[19];
+
+    static {
+        DOUBLE_POWERS[0] = 1;
+        for (int i = 1; i < DOUBLE_POWERS.length; i++) {
+            DOUBLE_POWERS[i] = DOUBLE_POWERS[i - 1] * 10;
+        }
+        LONG_POWERS[0] = 1;
+        for (int i = 1; i < LONG_POWERS.length; i++) {
+            LONG_POWERS[i] = LONG_POWERS[i - 1] * 10;
+        }
+        FLOAT_POWERS[0] = 1;
+        for (int i = 1; i < FLOAT_POWERS.length; i++) {
+            FLOAT_POWERS[i] = FLOAT_POWERS[i - 1] * 10;
+        }
+    }
+
+    private final Calendar calendar = Calendar.getInstance();
+    private final SimpleDateFormat format = new SimpleDateFormat("dd/MM/yy HH:mm");
+
+    // Resultado del ultimo numero leido
+    private long mantissa;
+    private int scale;
+    private boolean negative;
+
+    // Ultima hora convertida (yyyyMMddHH) y su instante en milisegundos
+    private long lastHour = -1;
+    private long lastHourMillis;
+
+    /**
+     * @param line
+     * @param field
+     * @return Valor del campo como double
+     */
+    public double parseDouble(CsvTokenizer line, int field) {
+        if (read(line, field) && mantissa < MAX_EXACT_DOUBLE && scale < DOUBLE_POWERS.length) {
+            double value = mantissa / DOUBLE_POWERS[scale];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(line.string(field).trim().replace(",", "."));
+    }
+
+    /**
+     * @param line
+     * @param field
+     * @return Valor del campo como float
+     */
+    public float parseFloat(CsvTokenizer line, int field) {
+        if (read(line, field) && mantissa < MAX_EXACT_FLOAT && scale < FLOAT_POWERS.length) {
+            float value = mantissa / FLOAT_POWERS[scale];
+            return negative ? -value : value;
+        }
+        return Float.parseFloat(line.string(field).trim().replace(",", "."));
+    }
+
+    /**
+     * @param line
+     * @param field
+     * @param targetScale - Decimales del resultado
+     * @return Valor del campo en punto fijo, multiplicado por 10^targetScale. Con mas decimales se redondea
+     */
+    public long parseFixed(CsvTokenizer line, int field, int targetScale) {
+        if (read(line, field) && scale <= targetScale && mantissa <= Long.MAX_VALUE / LONG_POWERS[targetScale - scale]) {
+            long value = mantissa * LONG_POWERS[targetScale - scale];
+            return negative ? -value : value;
+        }
+        return new BigDecimal(line.string(field).trim().replace(",", "."))
+                .movePointRight(targetScale).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * @param line
+     * @param field
+     * @return Instante en milisegundos de una fecha dd/MM/yyyy HH:mm en la zona horaria local
+     * @throws ParseException - Si el campo no es una fecha valida
+     */
+    public long parseTimestamp(CsvTokenizer line, int field) throws ParseException {
+        if (line.length(field) != 16 || line.byteAt(field, 2) != '/' || line.byteAt(field, 5) != '/'
+                || line.byteAt(field, 10) != ' ' || line.byteAt(field, 13) != ':') {
+            return format.parse(line.string(field)).getTime();
+        }
+
+        int day = digits(line, field, 0, 2);
+        int month = digits(line, field, 3, 2);
+        int year = digits(line, field, 6, 4);
+        int hour = digits(line, field, 11, 2);
+        int minute = digits(line, field, 14, 2);
+        if ((day | month | year | hour | minute) < 0) {
+            return format.parse(line.string(field)).getTime();
+        }
+
+        // El calendario solo se usa al cambiar de hora, asi se respetan los cambios de horario de verano
+        long key = ((year * 100L + month) * 100 + day) * 100 + hour;
+        if (key != lastHour) {
+            calendar.clear();
+            calendar.set(year, month - 1, day, hour, 0, 0);
+            lastHour = key;
+            lastHourMillis = calendar.getTimeInMillis();
+        }
+        return lastHourMillis + minute * 60_000L;
+    }
+
+    /**
+     * Lee un numero con coma o punto decimal en mantissa, scale y negative.
+     * @return false si el campo tiene caracteres inesperados o demasiados digitos
+     */
+    private boolean read(CsvTokenizer line, int field) {
+        int length = line.length(field);
+        int i = 0;
+        int digits = 0;
+        boolean decimals = false;
+
+        mantissa = 0;
+        scale = 0;
+        negative = false;
+
+        if (length > 0 && (line.byteAt(field, 0) == '-' || line.byteAt(field, 0) == '+')) {
+            negative = line.byteAt(field, 0) == '-';
+            i++;
+        }
+
+        for (; i < length; i++) {
+            byte b = line.byteAt(field, i);
+            if (b >= '0' && b <= '9') {
+                if (++digits > MAX_DIGITS) {
+                    return false;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (decimals) {
+                    scale++;
+                }
+            } else if ((b == ',' || b == '.') && !decimals) {
+                decimals = true;
+            } else {
+                return false;
+            }
+        }
+        return digits > 0;
+    }
+
+    // Lee un entero de count digitos desde la posicion from del campo, o -1 si no son digitos
+    private static int digits(CsvTokenizer line, int field, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            byte b = line.byteAt(field, i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+}
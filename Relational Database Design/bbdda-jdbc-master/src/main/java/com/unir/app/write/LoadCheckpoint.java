@@ -0,0 +1,120 @@
+package com.unir.app.write;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Punto de control de una carga completa, guardado en un fichero junto al CSV.
+ * Cada tabla, o cada particion de una tabla, es un flujo de filas en el orden del CSV identificado por su tabla y la
+ * clave de su primera fila. Despues de cada commit se guarda cuantas filas del flujo hay confirmadas y la clave de
+ * la ultima, por lo que si la carga falla la siguiente ejecucion salta esas filas y continua donde se quedo.
+ *
+ * El fichero incluye la firma del CSV (tamaño y fecha de modificacion) y el numero de particiones: si el CSV o el
+ * tamaño del pool han cambiado el punto de control no sirve y la carga empieza de cero.
+ * El fichero se reescribe en uno temporal y se mueve de forma atomica, nunca queda a medias.
+ */
+@Slf4j
+public class LoadCheckpoint {
+
+    private static final String SIGNATURE = "signature";
+
+    private final Path file;
+    private final Properties state = new Properties();
+    private final boolean resuming;
+
+    private LoadCheckpoint(Path file, String signature) throws IOException {
+        this.file = file;
+
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                state.load(in);
+            }
+        }
+
+        this.resuming = signature.equals(state.getProperty(SIGNATURE));
+        if (!resuming) {
+            state.clear();
+            state.setProperty(SIGNATURE, signature);
+        }
+    }
+
+    /**
+     * Abre el punto de control de la carga de un CSV, o empieza uno nuevo si no existe o no coincide la firma.
+     * @param file - Fichero del punto de control
+     * @param csv - CSV que se carga
+     * @param partitions - Particiones de las tablas grandes, que cambian el reparto de filas entre flujos
+     * @return LoadCheckpoint
+     * @throws IOException
+     */
+    public static LoadCheckpoint open(Path file, Path csv, int partitions) throws IOException {
+        String signature = csv.getFileName() + ":" + Files.size(csv) + ":" + Files.getLastModifiedTime(csv).toMillis() + ":" + partitions;
+        return new LoadCheckpoint(file, signature);
+    }
+
+    /**
+     * Nombre del flujo de una tabla o particion
+     * @param table
+     * @param firstKey - Clave de la primera fila del flujo
+     * @return Nombre del flujo
+     */
+    public static String stream(String table, Object firstKey) {
+        return table + "@" + firstKey;
+    }
+
+    /**
+     * @return true si hay una carga anterior sin terminar del mismo CSV
+     */
+    public boolean isResuming() {
+        return resuming;
+    }
+
+    /**
+     * @param stream
+     * @return Filas del flujo ya confirmadas
+     */
+    public synchronized long committed(String stream) {
+        return Long.parseLong(state.getProperty(stream + ".rows", "0"));
+    }
+
+    /**
+     * @param stream
+     * @return Clave de la ultima fila confirmada del flujo, o null si no hay ninguna
+     */
+    public synchronized String lastKey(String stream) {
+        return state.getProperty(stream + ".key");
+    }
+
+    /**
+     * Guarda el avance de un flujo despues de un commit
+     * @param stream
+     * @param rows - Filas del flujo confirmadas desde el principio
+     * @param lastKey - Clave de la ultima fila confirmada
+     * @throws IOException
+     */
+    public synchronized void commit(String stream, long rows, Object lastKey) throws IOException {
+        state.setProperty(stream + ".rows", Long.toString(rows));
+        state.setProperty(stream + ".key", String.valueOf(lastKey));
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            state.store(out, "Punto de control de la carga");
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Borra el punto de control al terminar la carga completa
+     * @throws IOException
+     */
+    public synchronized void finish() throws IOException {
+        Files.deleteIfExists(file);
+        log.debug("Punto de control {} borrado", file);
+    }
+}
@@ -0,0 +1,200 @@
+package com.unir.app.write;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Vuelca filas en una tabla con LOAD DATA LOCAL INFILE.
+ * Las filas se transforman a TSV en un hilo aparte y se envian a MySQL a traves de un pipe en memoria,
+ * por lo que no se escribe ningun fichero temporal ni se mantiene el TSV completo en memoria.
+ * Requiere allowLoadLocalInfile=true en la conexion y local_infile=ON en el servidor.
+ *
+ * LOAD DATA LOCAL descarta las filas con clave duplicada y convierte los errores de conversion en avisos,
+ * como si llevara IGNORE. Cualquier aviso que no sea de clave duplicada se lanza como error; las filas duplicadas
+ * no se cargan, por lo que quien llama debe comparar las filas cargadas con las enviadas.
+ */
+@Slf4j
+public class LoadDataStream {
+
+    private static final int PIPE_SIZE = 1 << 16;
+
+    // Codigo de MySQL de una clave primaria duplicada (ER_DUP_ENTRY)
+    private static final int DUPLICATE_KEY = 1062;
+
+    /**
+     * Escribe los campos de una fila en formato TSV
+     * @param <T>
+     */
+    public interface RowFormatter<T> {
+        void format(T row, TsvLine line) throws IOException;
+    }
+
+    /**
+     * Vuelca las filas en la tabla indicada con LOAD DATA LOCAL INFILE.
+     * @param connection - Conexión a la base de datos
+     * @param table - Tabla destino
+     * @param columns - Columnas destino, en el mismo orden en que las escribe el formatter
+     * @param rows - Filas a volcar
+     * @param formatter - Transforma cada fila en una linea TSV
+     * @return Número de filas cargadas, sin las descartadas por clave duplicada
+     * @throws SQLException - Error al cargar los datos o aviso distinto de una clave duplicada
+     */
+    public static <T> long load(Connection connection, String table, String columns,
+                                Iterable<T> rows, RowFormatter<T> formatter) throws SQLException {
+
+        String loadSql = "LOAD DATA LOCAL INFILE 'stream.tsv' INTO TABLE " + table
+                + " CHARACTER SET utf8mb4"
+                + " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'"
+                + " LINES TERMINATED BY '\\n'"
+                + " (" + columns + ")";
+
+        ExecutorService producer = Executors.newSingleThreadExecutor();
+
+        try (PipedInputStream input = new PipedInputStream(PIPE_SIZE);
+             Statement statement = connection.createStatement()) {
+
+            PipedOutputStream output = new PipedOutputStream(input);
+
+            // El hilo productor transforma las filas a TSV mientras MySQL consume el pipe
+            Future<?> writing = producer.submit(() -> {
+                try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), PIPE_SIZE)) {
+                    TsvLine line = new TsvLine(writer);
+                    for (T row : rows) {
+                        formatter.format(row, line);
+                        line.end();
+                    }
+                }
+                return null;
+            });
+
+            statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(input);
+            long loaded = statement.executeLargeUpdate(loadSql);
+
+            writing.get();
+            checkWarnings(statement, table);
+            log.debug("LOAD DATA en {}: {} filas", table, loaded);
+            return loaded;
+
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            throw new SQLException("Error al generar el stream TSV para la tabla " + table, e);
+        } finally {
+            producer.shutdownNow();
+        }
+    }
+
+    private static void checkWarnings(Statement statement, String table) throws SQLException {
+        for (SQLWarning warning = statement.getWarnings(); warning != null; warning = warning.getNextWarning()) {
+            if (warning.getErrorCode() != DUPLICATE_KEY) {
+                throw new SQLException("Aviso de LOAD DATA en " + table + ": " + warning.getMessage(), warning.getSQLState(), warning.getErrorCode(), warning);
+            }
+        }
+    }
+
+    /**
+     * Linea TSV con el escapado por defecto de LOAD DATA (\t, \n, \\ y \N para los nulos)
+     */
+    public static class TsvLine {
+        private final Writer writer;
+        private boolean first = true;
+
+        private TsvLine(Writer writer) {
+            this.writer = writer;
+        }
+
+        public TsvLine add(int value) throws IOException {
+            separator();
+            writer.write(Integer.toString(value));
+            return this;
+        }
+
+        public TsvLine add(float value) throws IOException {
+            separator();
+            writer.write(Float.toString(value));
+            return this;
+        }
+
+        public TsvLine add(Float value) throws IOException {
+            separator();
+            writer.write(value == null ? "\\N" : Float.toString(value));
+            return this;
+        }
+
+        /**
+         * Escribe un numero en punto fijo con sus decimales, sin pasar por BigDecimal
+         * @param value - Valor multiplicado por 10^scale
+         * @param scale - Decimales
+         */
+        public TsvLine addFixed(long value, int scale) throws IOException {
+            separator();
+            if (value < 0) {
+                writer.write('-');
+            }
+            String digits = Long.toString(Math.abs(value));
+            if (digits.length() <= scale) {
+                writer.write('0');
+            } else {
+                writer.write(digits, 0, digits.length() - scale);
+            }
+            writer.write('.');
+            for (int i = digits.length(); i < scale; i++) {
+                writer.write('0');
+            }
+            writer.write(digits, Math.max(digits.length() - scale, 0), Math.min(digits.length(), scale));
+            return this;
+        }
+
+        public TsvLine add(Date value) throws IOException {
+            separator();
+            writer.write(value == null ? "\\N" : value.toString());
+            return this;
+        }
+
+        public TsvLine add(String value) throws IOException {
+            separator();
+            if (value == null) {
+                writer.write("\\N");
+                return this;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\': writer.write("\\\\"); break;
+                    case '\t': writer.write("\\t"); break;
+                    case '\n': writer.write("\\n"); break;
+                    case '\r': writer.write("\\r"); break;
+                    default: writer.write(c);
+                }
+            }
+            return this;
+        }
+
+        private void separator() throws IOException {
+            if (!first) {
+                writer.write('\t');
+            }
+            first = false;
+        }
+
+        private void end() throws IOException {
+            writer.write('\n');
+            first = true;
+        }
+    }
+}
@@ -1,69 +1,117 @@
 package com.unir.app.write;
 
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.exceptions.CsvValidationException;
-import com.unir.config.MySqlConnector;
+import com.unir.config.MySqlConnectionPool;
 import com.unir.model.*;
+import com.unir.types.IntakeMode;
+import com.unir.types.IntakeStrategy;
 import lombok.extern.slf4j.Slf4j;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.text.Normalizer;
+import java.util.function.Function;
 
 @Slf4j
 public class MySqlApplicationIntake {
 
     private static final String DATABASE = "laboratorio_EESS";
     private static final String CSV = "Precios_EESS.csv";
-    private static List<MySqlProvinces> provinces = new LinkedList<>();
-    private static List<MySqlMunicipalities> municipalities = new LinkedList<>();
-    private static List<MySqlLocalities> localities = new LinkedList<>();
-    private static List<MySqlOperators> operators = new LinkedList<>();
+    private static List<MySqlProvinces> provinces = new ArrayList<>();
+    private static List<MySqlMunicipalities> municipalities = new ArrayList<>();
+    private static List<MySqlLocalities> localities = new ArrayList<>();
+    private static List<MySqlOperators> operators = new ArrayList<>();
     private static List<MySqlFuels> fuels = new LinkedList<>();
     private static List<MySqlStations> stations = new LinkedList<>();
-    private static List<MySqlPrices> prices = new LinkedList<>();
+    // Los precios son la mayor parte de las filas del CSV y se guardan por columnas, sin un objeto por precio
+    private static MySqlPriceStore prices = new MySqlPriceStore();
+
+    // Diccionarios de los nombres que se repiten en cada fila del CSV. Cada nombre se busca por sus bytes sin crear
+    // un String y su codigo es la posicion de su modelo en las listas ...ByCode
+    private static StringDictionary provinceNames = new StringDictionary();
+    private static StringDictionary municipalityNames = new StringDictionary();
+    private static StringDictionary localityNames = new StringDictionary();
+    private static StringDictionary operatorNames = new StringDictionary();
+    private static List<MySqlProvinces> provincesByCode = new ArrayList<>();
+    private static List<MySqlMunicipalities> municipalitiesByCode = new ArrayList<>();
+    private static List<MySqlLocalities> localitiesByCode = new ArrayList<>();
+    private static List<MySqlOperators> operatorsByCode = new ArrayList<>();
+
+    // Margen y horario de las estaciones: todas las estaciones comparten el String de cada valor distinto
+    private static StringDictionary margins = new StringDictionary();
+    private static StringDictionary schedules = new StringDictionary();
+
+    // Indices hash para resolver cada fila del CSV en tiempo constante
+    private static Map<String, MySqlFuels> fuelsByName = new HashMap<>();
+    private static Map<MySqlStationKey, MySqlStations> stationsByKey = new HashMap<>();
+
+    // Datos ya cargados en la base de datos, solo se leen con la estrategia DELTA.
+    // Las estaciones conservan su ID y de cada estacion y precio se guarda la huella para detectar cambios.
+    private static int lastStationId = 0;
+    private static Map<MySqlStationKey, Integer> loadedStationIds = new HashMap<>();
+    private static Map<Integer, Long> loadedStations = new HashMap<>();
+    private static Map<Long, Long> loadedPrices = new HashMap<>();
+
+    // Punto de control de la carga completa, para reanudarla si falla. No se usa con la estrategia DELTA
+    private static LoadCheckpoint checkpoint;
+
+    private static final String UPDATE_STATIONS = "UPDATE stations SET loc_id = ?, op_id = ?, cp = ?, address = ?, margin = ?, "
+            + "longitude = ?, latitude = ?, price_date = ?, type = ?, schedule = ? WHERE st_id = ?";
+    private static final String DELETE_STATIONS = "DELETE FROM stations WHERE st_id = ?";
+    private static final String UPDATE_PRICES = "UPDATE prices SET amount = ? WHERE st_id = ? AND fuel_id = ?";
+    private static final String DELETE_PRICES = "DELETE FROM prices WHERE st_id = ? AND fuel_id = ?";
 
     public static void main(String[] args) {
 
-        // Creamos conexion. No es necesario indicar puerto en host si usamos el default, 1521
-        // Try-with-resources. Se cierra la conexión automáticamente al salir del bloque try
-        try(Connection connection = new MySqlConnector("localhost", DATABASE).getConnection()) {
-
-            log.info("Conexión establecida con la base de datos " + DATABASE);
-
-            // Borramos los datos de la base de datos
-            eraseDB(connection);
-            log.info("DATOS DE LA BASE DE DATOS " + DATABASE + " BORRADOS");
-
-            // Leemos los datos del fichero CSV
-            provinces = readDataProvinces();
-            municipalities = readDataMunicipalities();
-            localities = readDataLocalities();
-            operators = readDataOperators();
-            fuels = readDataFuels();
-            stations = readDataStations();
-            prices = readDataPrices();
-
-            // Introducimos los datos en la base de datos
-            intakeProvinces(connection, provinces);
-            log.info("PROVINCIAS INSERTADAS");
-            intakeMunicipalities(connection, municipalities);
-            log.info("MUNICIPIOS INSERTADOS");
-            intakeLocalities(connection, localities);
-            log.info("LOCALIDADES INSERTADAS");
-            intakeOperators(connection, operators);
-            log.info("OPERADORAS INSERTADAS");
-            intakeFuels(connection, fuels);
-            log.info("COMBUSTIBLES INSERTADOS");
-            intakeStations(connection, stations);
-            log.info("ESTACIONES DE SERVICIO INSERTADAS");
-            intakePrices(connection, prices);
+        // Creamos el pool de conexiones. No es necesario indicar puerto en host si usamos el default, 1521
+        // Try-with-resources. Se cierran las conexiones automáticamente al salir del bloque try
+        try(MySqlConnectionPool pool = new MySqlConnectionPool("localhost", DATABASE, MySqlConnectionPool.defaultSize())) {
+
+            log.info("Conexión establecida con la base de datos " + DATABASE + " (" + pool.getSize() + " conexiones)");
+
+            IntakeStrategy strategy = IntakeStrategy.current();
+
+            if (strategy == IntakeStrategy.DELTA) {
+                // Leemos lo que ya esta cargado para escribir solo las diferencias
+                pool.run(connection -> {
+                    selectLoadedData(connection);
+                    return null;
+                });
+                log.info("DATOS CARGADOS EN " + DATABASE + " LEIDOS: " + loadedStations.size() + " ESTACIONES, " + loadedPrices.size() + " PRECIOS");
+            } else {
+                checkpoint = LoadCheckpoint.open(Paths.get(CSV + ".checkpoint"), Paths.get(CSV), pool.getSize());
+
+                if (checkpoint.isResuming()) {
+                    // Una carga anterior del mismo CSV no termino: no borramos nada y continuamos donde se quedo
+                    log.info("REANUDANDO LA CARGA DE " + CSV + " DESDE EL PUNTO DE CONTROL");
+                } else {
+                    // Borramos los datos de la base de datos
+                    pool.run(connection -> {
+                        eraseDB(connection);
+                        return null;
+                    });
+                    log.info("DATOS DE LA BASE DE DATOS " + DATABASE + " BORRADOS");
+                }
+            }
+
+            // Leemos los datos del fichero CSV en una unica pasada
+            readData();
+
+            if (strategy == IntakeStrategy.DELTA) {
+                intakeDelta(pool);
+            } else {
+                intakeAll(pool);
+                checkpoint.finish();
+            }
             log.info("PRECIOS INSERTADOS");
 
         } catch (Exception e) {
@@ -73,8 +121,7 @@ public class MySqlApplicationIntake {
 
     private static void eraseDB(Connection connection) {
 
-        try {
-            Statement deleteData = connection.createStatement();
+        try (Statement deleteData = connection.createStatement()) {
 
             // Borramos la base de datos
             deleteData.executeUpdate("DELETE FROM prices");
@@ -89,656 +136,600 @@ public class MySqlApplicationIntake {
         }
     }
 
-    private static List<MySqlProvinces> readDataProvinces() {
-
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader(CSV))
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';').build()).build()) {
-
-            // Saltamos la primera linea, que contiene los nombres de las columnas del CSV
-            reader.skip(1);
-            String[] nextLine;
-
-            // Leemos el fichero linea a linea
-            while((nextLine = reader.readNext()) != null) {
-
-                MySqlProvinces province = null;
-
-                for (MySqlProvinces compare : provinces) {
-                    if (compare.getName().equals(nextLine[0])) {
-                        province = compare;
-                    }
-                }
-
-                if (province == null) {
-                    province = new MySqlProvinces (
-                            (provinces.size()+1),   // ID segun el contenido de la tabla.
-                            nextLine[0]             // Cogemos el dato de la columna provincia. 
-                    );
-                    provinces.add(province);
-                }
-            }
-            return provinces;
-
-        } catch (IOException e) {
-            log.error("Error al leer el fichero" + CSV, e);
-            throw new RuntimeException(e);
-        } catch (CsvValidationException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Introduce todos los datos leidos en la base de datos vacia siguiendo el grafo de claves foraneas:
+     * provinces -> municipalities -> localities -> stations -> prices. Operators y fuels son independientes.
+     * La tabla de precios se reparte entre todas las conexiones del pool.
+     * @param pool
+     * @throws SQLException
+     */
+    private static void intakeAll(MySqlConnectionPool pool) throws SQLException {
+
+        scheduleDimensions(new ParallelLoader(pool))
+                .table("stations", connection -> {
+                    intakeStations(connection, stations);
+                    log.info("ESTACIONES DE SERVICIO INSERTADAS");
+                }, "localities", "operators")
+                .partitionedRange("prices", prices.size(), pool.getSize(),
+                        (connection, from, to) -> intakePrices(connection, prices.rows(from, to)), "stations", "fuels")
+                .run();
     }
 
-    private static void intakeProvinces(Connection connection, List<MySqlProvinces> provinces) throws SQLException {
-
-        // Consultas de la tabla provincias
-        String selectSqlProvinces = "SELECT COUNT(*) FROM provinces WHERE name = ?";
-        String insertSqlProvinces = "INSERT INTO provinces (pro_id, name)"
-                + "VALUES (?, ?)";
-
-        int lote = 5;
-        int contador = 0;
-
-        // Preparamos las consultas, una unica vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatementProvinces = connection.prepareStatement(insertSqlProvinces);
-
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
-
-        for (MySqlProvinces province : provinces) {
-
-            // Comprobamos si la provincia existe
-            PreparedStatement selectStatementProvinces = connection.prepareStatement(selectSqlProvinces);
-            selectStatementProvinces.setString(1, province.getName()); // Nombre de la provincia
-
-            ResultSet resultSet = selectStatementProvinces.executeQuery();
-            resultSet.next(); // Nos movemos a la primera fila
-            int rowCount = resultSet.getInt(1);
-
-            // Si no existe, insertamos. Si existe, no hacemos nada.
-            if(rowCount == 0) {
-                fillInsertStatementProvinces(insertStatementProvinces, province);
-                insertStatementProvinces.addBatch();
+    /**
+     * Escribe solo las diferencias entre el CSV y los datos ya cargados.
+     * Las dimensiones nuevas se insertan como en la carga completa. De estaciones y precios se insertan los nuevos,
+     * se actualizan los que han cambiado y se borran los que ya no aparecen, cada tabla en transacciones cortas
+     * para que las consultas puedan seguir leyendo durante la carga.
+     * La fecha de precios no forma parte de la huella de la estacion: una estacion se actualiza cuando cambian
+     * sus datos o alguno de sus precios.
+     * @param pool
+     * @throws SQLException
+     */
+    private static void intakeDelta(MySqlConnectionPool pool) throws SQLException {
+
+        // De los precios que cambian se guarda su posicion en el almacen
+        DeltaSet<Long, Integer> priceDelta = new DeltaSet<>(loadedPrices);
+        Set<Integer> repriced = new HashSet<>();
+        for (MySqlPriceStore.Row price : prices.rows()) {
+            if (!priceDelta.compare(priceKey(price.getSt_id(), price.getFuel_id()), fingerprint(price.getPrice()), price.getPosition())) {
+                repriced.add(price.getSt_id());
             }
+        }
+        for (Long key : priceDelta.getDeletes()) {
+            repriced.add((int) (key >>> 32));
+        }
 
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatementProvinces.executeBatch();
+        DeltaSet<Integer, MySqlStations> stationDelta = new DeltaSet<>(loadedStations);
+        for (MySqlStations station : stations) {
+            if (stationDelta.compare(station.getStation_id(), fingerprint(station), station)
+                    && repriced.contains(station.getStation_id())) {
+                stationDelta.update(station);
             }
         }
 
-        // Ejecutamos el batch final
-        insertStatementProvinces.executeBatch();
-
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+        log.info("CAMBIOS: ESTACIONES " + stationDelta.getInserts().size() + " NUEVAS, " + stationDelta.getUpdates().size()
+                + " ACTUALIZADAS, " + stationDelta.getDeletes().size() + " BORRADAS; PRECIOS " + priceDelta.getInserts().size()
+                + " NUEVOS, " + priceDelta.getUpdates().size() + " ACTUALIZADOS, " + priceDelta.getDeletes().size() + " BORRADOS");
+
+        scheduleDimensions(new ParallelLoader(pool))
+                .table("stations", connection -> {
+                    intakeStations(connection, stationDelta.getInserts());
+                    new BatchWriter<>(connection, "stations (update)", UPDATE_STATIONS, MySqlApplicationIntake::fillUpdateStatementStations)
+                            .write(stationDelta.getUpdates());
+                    log.info("ESTACIONES DE SERVICIO ACTUALIZADAS");
+                }, "localities", "operators")
+                .table("prices", connection -> {
+                    new BatchWriter<>(connection, "prices (delete)", DELETE_PRICES, MySqlApplicationIntake::fillDeleteStatementPrices)
+                            .write(priceDelta.getDeletes());
+                    intakePrices(connection, prices.select(priceDelta.getInserts()).rows());
+                    new BatchWriter<>(connection, "prices (update)", UPDATE_PRICES, MySqlApplicationIntake::fillUpdateStatementPrices)
+                            .write(prices.select(priceDelta.getUpdates()).rows());
+                }, "stations", "fuels")
+                // Las estaciones que ya no aparecen se borran cuando ya no tienen precios
+                .table("stations (delete)", connection -> {
+                    new BatchWriter<>(connection, "stations (delete)", DELETE_STATIONS, MySqlApplicationIntake::fillDeleteStatementStations)
+                            .write(stationDelta.getDeletes());
+                }, "prices")
+                .run();
     }
 
-    private static List<MySqlMunicipalities> readDataMunicipalities() {
-
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader(CSV))
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';').build()).build()) {
-
-            // Saltamos la primera linea, que contiene los nombres de las columnas del CSV
-            reader.skip(1);
-            String[] nextLine;
+    /**
+     * Programa la carga de las dimensiones, que en ambas estrategias solo inserta los nombres que no existen.
+     * @param loader
+     * @return ParallelLoader
+     */
+    private static ParallelLoader scheduleDimensions(ParallelLoader loader) {
+
+        return loader
+                .table("provinces", connection -> {
+                    intakeProvinces(connection, provinces);
+                    log.info("PROVINCIAS INSERTADAS");
+                })
+                .table("operators", connection -> {
+                    intakeOperators(connection, operators);
+                    log.info("OPERADORAS INSERTADAS");
+                })
+                .table("fuels", connection -> {
+                    intakeFuels(connection, fuels);
+                    log.info("COMBUSTIBLES INSERTADOS");
+                })
+                .table("municipalities", connection -> {
+                    intakeMunicipalities(connection, municipalities);
+                    log.info("MUNICIPIOS INSERTADOS");
+                }, "provinces")
+                .table("localities", connection -> {
+                    intakeLocalities(connection, localities);
+                    log.info("LOCALIDADES INSERTADAS");
+                }, "municipalities");
+    }
 
-            // Leemos el fichero linea a linea
-            while((nextLine = reader.readNext()) != null) {
+    /**
+     * Lee los datos ya cargados. Las dimensiones se guardan en las listas e indices como si se hubieran leido del CSV,
+     * para conservar sus IDs; de estaciones y precios solo se guarda el ID y la huella.
+     * @param connection
+     * @throws SQLException
+     */
+    private static void selectLoadedData(Connection connection) throws SQLException {
 
-                MySqlMunicipalities municipalitie = null;
+        try (Statement select = connection.createStatement()) {
 
-                for (MySqlMunicipalities compare : municipalities) {
-                    if (compare.getName().equals(nextLine[1])) {
-                        municipalitie = compare;
-                    }
+            try (ResultSet resultSet = select.executeQuery("SELECT pro_id, name FROM provinces ORDER BY pro_id")) {
+                while (resultSet.next()) {
+                    MySqlProvinces province = new MySqlProvinces(resultSet.getInt(1), resultSet.getString(2));
+                    provinces.add(province);
+                    register(provincesByCode, provinceNames.encode(province.getName()), province);
                 }
+            }
 
-                if (municipalitie == null) {
-                    // Buscamos en la lista de provincias para obtener el código.
-                    int id_pro = 0;
-                    for (MySqlProvinces province : provinces) {
-                        if (province.getName().equals(nextLine[0])) {
-                            id_pro = province.getPro_id();
-                        }
-                    }
-                    municipalitie = new MySqlMunicipalities(
-                            (municipalities.size()+1),  // ID segun el contenido de la tabla.
-                            id_pro,
-                            nextLine[1]                 // Cogemos el dato de la columna municipio.
-                    );
+            try (ResultSet resultSet = select.executeQuery("SELECT mun_id, pro_id, name FROM municipalities ORDER BY mun_id")) {
+                while (resultSet.next()) {
+                    MySqlMunicipalities municipalitie = new MySqlMunicipalities(resultSet.getInt(1), resultSet.getInt(2), resultSet.getString(3));
                     municipalities.add(municipalitie);
+                    register(municipalitiesByCode, municipalityNames.encode(municipalitie.getName()), municipalitie);
                 }
             }
-            return municipalities;
-
-        } catch (IOException e) {
-            log.error("Error al leer el fichero" + CSV, e);
-            throw new RuntimeException(e);
-        } catch (CsvValidationException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private static void intakeMunicipalities(Connection connection, List<MySqlMunicipalities> municipalities) throws SQLException {
-
-        // Consultas de la tabla Municipios
-        String selectSqlMunicipalities = "SELECT COUNT(*) FROM municipalities WHERE name = ?";
-        String insertSqlMunicipalities = "INSERT INTO municipalities (mun_id, pro_id, name)"
-                + "VALUES (?, ?, ?)";
-
-        int lote = 5;
-        int contador = 0;
-
-        // Preparamos las consultas, una unica vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatementMunicipalities = connection.prepareStatement(insertSqlMunicipalities);
-
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
 
-        for (MySqlMunicipalities municipalitie : municipalities) {
-
-            // Comprobamos si el municipio existe
-            PreparedStatement selectStatementMunicipalities = connection.prepareStatement(selectSqlMunicipalities);
-            selectStatementMunicipalities.setString(1, municipalitie.getName()); // Nombre del municipio
-
-            ResultSet resultSet = selectStatementMunicipalities.executeQuery();
-            resultSet.next(); // Nos movemos a la primera fila
-            int rowCount = resultSet.getInt(1);
-
-            // Si no existe, insertamos. Si existe, no hacemos nada.
-            if(rowCount == 0) {
-                fillInsertStatementMunicipalities(insertStatementMunicipalities, municipalitie);
-                insertStatementMunicipalities.addBatch();
+            try (ResultSet resultSet = select.executeQuery("SELECT loc_id, mun_id, name FROM localities ORDER BY loc_id")) {
+                while (resultSet.next()) {
+                    MySqlLocalities localitie = new MySqlLocalities(resultSet.getInt(1), resultSet.getInt(2), resultSet.getString(3));
+                    localities.add(localitie);
+                    register(localitiesByCode, localityNames.encode(localitie.getName()), localitie);
+                }
             }
 
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatementMunicipalities.executeBatch();
+            try (ResultSet resultSet = select.executeQuery("SELECT op_id, name FROM operators ORDER BY op_id")) {
+                while (resultSet.next()) {
+                    MySqlOperators operator = new MySqlOperators(resultSet.getInt(1), resultSet.getString(2));
+                    operators.add(operator);
+                    register(operatorsByCode, operatorNames.encode(operator.getName()), operator);
+                }
             }
-        }
-
-        // Ejecutamos el batch final
-        insertStatementMunicipalities.executeBatch();
-
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
-    }
-
-    private static List<MySqlLocalities> readDataLocalities() {
-
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader(CSV))
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';').build()).build()) {
-
-            // Saltamos la primera linea, que contiene los nombres de las columnas del CSV
-            reader.skip(1);
-            String[] nextLine;
-
-            // Leemos el fichero linea a linea
-            while((nextLine = reader.readNext()) != null) {
-
-                MySqlLocalities localitie = null;
 
-                for (MySqlLocalities compare : localities) {
-                    if (compare.getName().equals(nextLine[2])) {
-                        localitie = compare;
-                    }
+            try (ResultSet resultSet = select.executeQuery("SELECT fuel_id, name FROM fuels ORDER BY fuel_id")) {
+                while (resultSet.next()) {
+                    MySqlFuels fuel = new MySqlFuels(resultSet.getInt(1), resultSet.getString(2));
+                    fuels.add(fuel);
+                    fuelsByName.put(fuel.getName(), fuel);
                 }
+            }
 
-                if (localitie == null) {
-                    // Buscamos en la lista de municipios para obtener el código.
-                    int id_mun = 0;
-                    for (MySqlMunicipalities municipalitie : municipalities) {
-                        if (municipalitie.getName().equals(nextLine[1])) {
-                            id_mun = municipalitie.getMun_id();
-                        }
-                    }
-                    localitie = new MySqlLocalities(
-                            (localities.size()+1),  // ID segun el contenido de la tabla.
-                            id_mun,
-                            nextLine[2]                 // Cogemos el dato de la columna localidad.
+            try (ResultSet resultSet = select.executeQuery("SELECT st_id, loc_id, op_id, cp, address, margin, longitude, latitude, "
+                    + "price_date, type, schedule FROM stations")) {
+                while (resultSet.next()) {
+                    MySqlStations station = new MySqlStations(
+                            resultSet.getInt(1),
+                            resultSet.getInt(2),
+                            resultSet.getInt(3),
+                            resultSet.getString(4),
+                            resultSet.getString(5),
+                            resultSet.getString(6),
+                            MicroDegrees.of(resultSet.getBigDecimal(7)),
+                            MicroDegrees.of(resultSet.getBigDecimal(8)),
+                            resultSet.getDate(9),
+                            resultSet.getString(10),
+                            resultSet.getString(11)
                     );
-                    localities.add(localitie);
+                    loadedStationIds.put(new MySqlStationKey(station.getAddress(), station.getMargen(),
+                            station.getLongitud(), station.getLatitud()), station.getStation_id());
+                    loadedStations.put(station.getStation_id(), fingerprint(station));
+                    lastStationId = Math.max(lastStationId, station.getStation_id());
                 }
             }
-            return localities;
 
-        } catch (IOException e) {
-            log.error("Error al leer el fichero" + CSV, e);
-            throw new RuntimeException(e);
-        } catch (CsvValidationException e) {
-            throw new RuntimeException(e);
+            try (ResultSet resultSet = select.executeQuery("SELECT st_id, fuel_id, amount FROM prices")) {
+                while (resultSet.next()) {
+                    float amount = resultSet.getFloat(3);
+                    loadedPrices.put(priceKey(resultSet.getInt(1), resultSet.getInt(2)), fingerprint(resultSet.wasNull() ? null : amount));
+                }
+            }
         }
     }
 
-    private static void intakeLocalities(Connection connection, List<MySqlLocalities> localities) throws SQLException {
-
-        // Consultas de la tabla Municipios
-        String selectSqlLocalities = "SELECT COUNT(*) FROM localities WHERE name = ?";
-        String insertSqlLocalities = "INSERT INTO localities (loc_id, mun_id, name)"
-                + "VALUES (?, ?, ?)";
-
-        int lote = 5;
-        int contador = 0;
-
-        // Preparamos las consultas, una unica vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatementLocalities = connection.prepareStatement(insertSqlLocalities);
-
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
-
-        for (MySqlLocalities localitie : localities) {
+    // La fecha de precios se excluye de la huella: cambia en cada extraccion aunque la estacion sea la misma
+    private static long fingerprint(MySqlStations station) {
+        return RowFingerprint.of(station.getLoc_id(), station.getOp_id(), station.getCp(), station.getAddress(),
+                station.getMargen(), station.getLongitud(), station.getLatitud(), station.getTipo(), station.getHorario());
+    }
 
-            // Comprobamos si la localidad existe
-            PreparedStatement selectStatementLocalities = connection.prepareStatement(selectSqlLocalities);
-            selectStatementLocalities.setString(1, localitie.getName()); // Nombre de la localidad
+    private static long fingerprint(Float amount) {
+        return RowFingerprint.of(amount);
+    }
 
-            ResultSet resultSet = selectStatementLocalities.executeQuery();
-            resultSet.next(); // Nos movemos a la primera fila
-            int rowCount = resultSet.getInt(1);
+    private static Object priceKey(MySqlPriceStore.Row price) {
+        return priceKey(price.getSt_id(), price.getFuel_id());
+    }
 
-            // Si no existe, insertamos. Si existe, no hacemos nada.
-            if(rowCount == 0) {
-                fillInsertStatementLocalities(insertStatementLocalities, localitie);
-                insertStatementLocalities.addBatch();
-            }
+    private static long priceKey(int stationId, int fuelId) {
+        return ((long) stationId << 32) | fuelId;
+    }
 
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatementLocalities.executeBatch();
-            }
+    // Guarda el modelo de un codigo que aparece por primera vez. Los codigos son consecutivos, por lo que
+    // un codigo nuevo siempre es el siguiente de la lista
+    private static <T> void register(List<T> byCode, int code, T model) {
+        if (code == byCode.size()) {
+            byCode.add(model);
         }
-
-        // Ejecutamos el batch final
-        insertStatementLocalities.executeBatch();
-
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
     }
 
-    private static List<MySqlOperators> readDataOperators() {
+    /**
+     * Lee el fichero CSV una unica vez y construye a la vez todas las dimensiones
+     * (provincias, municipios, localidades, operadores y combustibles), las estaciones y los precios.
+     * Las lineas se leen en paralelo por trozos (ParallelCsvParser) y los trozos se unen en el orden del fichero,
+     * por lo que los IDs son los mismos que leyendo el fichero con un solo hilo.
+     */
+    private static void readData() {
 
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader(CSV))
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';').build()).build()) {
+        Path csv = Paths.get(CSV);
+        long firstLine;
 
-            // Saltamos la primera linea, que contiene los nombres de las columnas del CSV
-            reader.skip(1);
-            String[] nextLine;
+        // Try-with-resources. Se cierra el fichero automáticamente al salir del bloque try
+        // CsvTokenizer recorre el fichero mapeado en memoria linea a linea y solo crea los String de los campos que usamos
+        try (CsvTokenizer header = new CsvTokenizer(csv)) {
 
-            while((nextLine = reader.readNext()) != null) {
+            // La primera linea contiene los nombres de las columnas, de ella sacamos los combustibles
+            if (!header.next()) {
+                return;
+            }
+            readFuels(header);
+            firstLine = header.nextLineOffset();
 
-                MySqlOperators operator = null;
+        } catch (IOException e) {
+            log.error("Error al leer el fichero" + CSV, e);
+            throw new RuntimeException(e);
+        }
 
-                for (MySqlOperators compare : operators) {
-                    if (compare.getName().contentEquals(nextLine[25])) {
-                        operator = compare;
-                    }
-                }
+        try {
+            // Cada trozo se lee en un hilo con sus propios diccionarios
+            List<PriceExtractChunk> chunks = new ParallelCsvParser(ParallelCsvParser.defaultParallelism())
+                    .parse(csv, firstLine, PriceExtractChunk::parse);
 
-                if (operator == null) {
-                    operator = new MySqlOperators (
-                            (operators.size()+1),   // ID segun el contenido de la tabla.
-                            nextLine[25]            // Cogemos el dato de la columna rotulo.
-                    );
-                    operators.add(operator);
-                }
+            for (PriceExtractChunk chunk : chunks) {
+                merge(chunk);
             }
-            return operators;
 
         } catch (IOException e) {
             log.error("Error al leer el fichero" + CSV, e);
             throw new RuntimeException(e);
-        } catch (CsvValidationException e) {
+        } catch (ParseException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private static void intakeOperators(Connection connection, List<MySqlOperators> operators) throws SQLException {
-
-        // Consultas de la tabla Municipios
-        String selectSqlOperators = "SELECT COUNT(*) FROM operators WHERE name = ?";
-        String insertSqlOperators = "INSERT INTO operators (op_id, name)"
-                + "VALUES (?, ?)";
-
-        int lote = 5;
-        int contador = 0;
-
-        // Preparamos las consultas, una unica vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatementOperators = connection.prepareStatement(insertSqlOperators);
-
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
-
-        for (MySqlOperators operator : operators) {
-
-            // Comprobamos si el operador existe
-            PreparedStatement selectStatementOperators = connection.prepareStatement(selectSqlOperators);
-            selectStatementOperators.setString(1, operator.getName()); // Nombre del operador
-
-            ResultSet resultSet = selectStatementOperators.executeQuery();
-            resultSet.next(); // Nos movemos a la primera fila
-            int rowCount = resultSet.getInt(1);
-
-            // Si no existe, insertamos. Si existe, no hacemos nada.
-            if(rowCount == 0) {
-                fillInsertStatementOperators(insertStatementOperators, operator);
-                insertStatementOperators.addBatch();
-            }
-
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatementOperators.executeBatch();
-            }
+    /**
+     * Une las lineas de un trozo a las dimensiones, estaciones y precios leidos hasta ahora, linea a linea
+     * como si se leyeran del fichero.
+     * @param chunk
+     */
+    private static void merge(PriceExtractChunk chunk) {
+
+        // Codigos de los diccionarios globales de cada codigo del trozo. Se traducen en el orden en que aparecen
+        // en el trozo, por lo que los codigos nuevos siguen el mismo orden que sus modelos
+        int[] provinceCodes = translate(chunk.provinceNames, provinceNames);
+        int[] municipalityCodes = translate(chunk.municipalityNames, municipalityNames);
+        int[] localityCodes = translate(chunk.localityNames, localityNames);
+        int[] operatorCodes = translate(chunk.operatorNames, operatorNames);
+        int[] marginCodes = translate(chunk.margins, margins);
+        int[] scheduleCodes = translate(chunk.schedules, schedules);
+
+        // ID de la estacion de cada linea del trozo
+        int[] stationIds = new int[chunk.lines];
+
+        for (int line = 0; line < chunk.lines; line++) {
+
+            MySqlProvinces province = readProvince(provinceCodes[chunk.provinces[line]]);
+            MySqlMunicipalities municipalitie = readMunicipalitie(municipalityCodes[chunk.municipalities[line]], province);
+            MySqlLocalities localitie = readLocalitie(localityCodes[chunk.localities[line]], municipalitie);
+            MySqlOperators operator = readOperator(operatorCodes[chunk.operators[line]]);
+            MySqlStations station = readStation(chunk, line, localitie, operator,
+                    margins.decode(marginCodes[chunk.margin[line]]), schedules.decode(scheduleCodes[chunk.schedule[line]]));
+            stationIds[line] = station.getStation_id();
         }
 
-        // Ejecutamos el batch final
-        insertStatementOperators.executeBatch();
-
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+        // Los precios del trozo estan en el orden de sus lineas
+        for (MySqlPriceStore.Row price : chunk.prices.rows()) {
+            prices.add(stationIds[price.getSt_id()], price.getFuel_id(), price.getPrice());
+        }
     }
 
-    private static List<MySqlFuels> readDataFuels() {
-
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader(CSV))
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';').build()).build()) {
-
-            String[] nextLine = reader.readNext();
-            int i = 9;
-
-            while(i <= 24) {
+    private static int[] translate(StringDictionary chunk, StringDictionary global) {
+        int[] codes = new int[chunk.size()];
+        for (int code = 0; code < codes.length; code++) {
+            codes[code] = global.encode(chunk.decode(code));
+        }
+        return codes;
+    }
 
-                MySqlFuels fuel = null;
+    private static void readFuels(CsvTokenizer header) {
 
-                for (MySqlFuels compare : fuels) {
-                    if (compare.getName().equals(nextLine[i])) {
-                        fuel = compare;
-                    }
-                }
+        for (int i = 9; i <= 24; i++) {
 
-                if (fuel == null) {
-                    fuel = new MySqlFuels (
-                            (fuels.size()+1),   // ID segun el contenido de la tabla.
-                            nextLine[i]             // Cogemos el dato de la columna que contiene el nombre del carburante.
-                    );
-                    fuels.add(fuel);
-                }
-                i++;
+            if (!fuelsByName.containsKey(header.string(i))) {
+                MySqlFuels fuel = new MySqlFuels (
+                        (fuels.size()+1),   // ID segun el contenido de la tabla.
+                        header.string(i)           // Cogemos el dato de la columna que contiene el nombre del carburante.
+                );
+                fuels.add(fuel);
+                fuelsByName.put(fuel.getName(), fuel);
             }
-            return fuels;
-
-        } catch (IOException e) {
-            log.error("Error al leer el fichero" + CSV, e);
-            throw new RuntimeException(e);
-        } catch (CsvValidationException e) {
-            throw new RuntimeException(e);
         }
     }
 
-    private static void intakeFuels(Connection connection, List<MySqlFuels> fuels) throws SQLException {
-
-        // Consultas de la tabla Municipios
-        String selectSqlFuels = "SELECT COUNT(*) FROM fuels WHERE name = ?";
-        String insertSqlFuels = "INSERT INTO fuels (fuel_id, name)"
-                + "VALUES (?, ?)";
-
-        int lote = 5;
-        int contador = 0;
-
-        // Preparamos las consultas, una unica vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatementFuels = connection.prepareStatement(insertSqlFuels);
-
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
+    private static MySqlProvinces readProvince(int code) {
 
-        for (MySqlFuels fuel : fuels) {
-
-            // Comprobamos si el combustible existe
-            PreparedStatement selectStatementFuels = connection.prepareStatement(selectSqlFuels);
-            selectStatementFuels.setString(1, fuel.getName()); // Nombre del carburante
+        if (code < provincesByCode.size()) {
+            return provincesByCode.get(code);
+        }
 
-            ResultSet resultSet = selectStatementFuels.executeQuery();
-            resultSet.next(); // Nos movemos a la primera fila
-            int rowCount = resultSet.getInt(1);
+        MySqlProvinces province = new MySqlProvinces (
+                (provinces.size()+1),   // ID segun el contenido de la tabla.
+                provinceNames.decode(code)     // Cogemos el dato de la columna provincia.
+        );
+        provinces.add(province);
+        register(provincesByCode, code, province);
+        return province;
+    }
 
-            // Si no existe, insertamos. Si existe, no hacemos nada.
-            if(rowCount == 0) {
-                fillInsertStatementFuels(insertStatementFuels, fuel);
-                insertStatementFuels.addBatch();
-            }
+    private static MySqlMunicipalities readMunicipalitie(int code, MySqlProvinces province) {
 
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatementFuels.executeBatch();
-            }
+        if (code < municipalitiesByCode.size()) {
+            return municipalitiesByCode.get(code);
         }
 
-        // Ejecutamos el batch final
-        insertStatementFuels.executeBatch();
-
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+        MySqlMunicipalities municipalitie = new MySqlMunicipalities(
+                (municipalities.size()+1),  // ID segun el contenido de la tabla.
+                province.getPro_id(),
+                municipalityNames.decode(code)     // Cogemos el dato de la columna municipio.
+        );
+        municipalities.add(municipalitie);
+        register(municipalitiesByCode, code, municipalitie);
+        return municipalitie;
     }
 
-    private static List<MySqlStations> readDataStations() {
+    private static MySqlLocalities readLocalitie(int code, MySqlMunicipalities municipalitie) {
 
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader(CSV))
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';').build()).build()) {
-
-            // Saltamos la primera linea, que contiene los nombres de las columnas del CSV
-            reader.skip(1);
-            String[] nextLine;
+        if (code < localitiesByCode.size()) {
+            return localitiesByCode.get(code);
+        }
 
-            SimpleDateFormat format = new SimpleDateFormat("dd/MM/yy HH:mm");
+        MySqlLocalities localitie = new MySqlLocalities(
+                (localities.size()+1),  // ID segun el contenido de la tabla.
+                municipalitie.getMun_id(),
+                localityNames.decode(code)     // Cogemos el dato de la columna localidad.
+        );
+        localities.add(localitie);
+        register(localitiesByCode, code, localitie);
+        return localitie;
+    }
 
-            // Leemos el fichero linea a linea
-            while((nextLine = reader.readNext()) != null) {
+    private static MySqlOperators readOperator(int code) {
 
-                MySqlStations station = null;
+        if (code < operatorsByCode.size()) {
+            return operatorsByCode.get(code);
+        }
 
-                for (MySqlStations compare : stations) {
-                    Float longitud = nextLine[6].isEmpty()?0:Float.parseFloat(nextLine[6].replace(",", "."));
-                    Float latitud = nextLine[7].isEmpty()?0:Float.parseFloat(nextLine[7].replace(",", "."));
+        MySqlOperators operator = new MySqlOperators (
+                (operators.size()+1),   // ID segun el contenido de la tabla.
+                operatorNames.decode(code)     // Cogemos el dato de la columna rotulo.
+        );
+        operators.add(operator);
+        register(operatorsByCode, code, operator);
+        return operator;
+    }
 
-                    if (compare.getAddress().equals(nextLine[4]) && compare.getMargen().equals(nextLine[5]) && compare.getLongitud().equals(longitud) && compare.getLatitud().equals(latitud)) {
-                        station = compare;
-                    }
-                }
+    private static MySqlStations readStation(PriceExtractChunk chunk, int line, MySqlLocalities localitie, MySqlOperators operator,
+                                             String margen, String horario) {
 
-                if (station == null) {
-                    // Buscamos en la lista de localidades para obtener el código.
-                    int id_loc = 0;
-                    for (MySqlLocalities localitie : localities) {
-                        if (localitie.getName().equals(nextLine[2])) {
-                            id_loc = localitie.getLoc_id();
-                        }
-                    }
-
-                    // Buscamos en la lista de operadores para obtener el código.
-                    int id_op = 0;
-                    for (MySqlOperators operator : operators) {
-                        if (operator.getName().equals(nextLine[25])) {
-                            id_op = operator.getOp_id();
-                        }
-                    }
-
-                    station = new MySqlStations(
-                            (stations.size()+1),  // ID segun el contenido de la tabla.
-                            id_loc,
-                            id_op,
-                            nextLine[3],    // Cogemos el dato de la columna CP.
-                            nextLine[4],    // Cogemos el dato de la columna Dirección.
-                            nextLine[5],    // Cogemos el dato de la columna Margen.
-                            nextLine[6].isEmpty()?0:Float.parseFloat(nextLine[6].replace(",", ".")),  // Cogemos el dato de la columna Longitud.
-                            nextLine[7].isEmpty()?0:Float.parseFloat(nextLine[7].replace(",", ".")),  // Cogemos el dato de la columna Latitud.
-                            nextLine[8].isEmpty()?null:new Date(format.parse(nextLine[8]).getTime()),
-                            nextLine[26].isEmpty()?"T":"M", // Cogemos el dato de la columna Tipo.
-                            nextLine[27]    // Cogemos el dato de la columna Horario.
-                    );
-                    stations.add(station);
-                }
-            }
-            return stations;
+        String address = chunk.addresses[line];
+        int longitud = chunk.longitudes[line];
+        int latitud = chunk.latitudes[line];
 
-        } catch (IOException e) {
-            log.error("Error al leer el fichero" + CSV, e);
-            throw new RuntimeException(e);
-        } catch (CsvValidationException e) {
-            throw new RuntimeException(e);
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
+        // Buscamos la estacion por su clave compuesta (direccion, margen, longitud, latitud)
+        MySqlStationKey key = new MySqlStationKey(address, margen, longitud, latitud);
+        MySqlStations station = stationsByKey.get(key);
+        if (station != null) {
+            return station;
         }
+
+        // Si la estacion ya estaba cargada conserva su ID
+        Integer loadedId = loadedStationIds.get(key);
+
+        station = new MySqlStations(
+                loadedId != null ? loadedId : ++lastStationId,  // ID segun el contenido de la tabla.
+                localitie.getLoc_id(),
+                operator.getOp_id(),
+                chunk.cps[line],    // Cogemos el dato de la columna CP.
+                address,        // Cogemos el dato de la columna Dirección.
+                margen,         // Cogemos el dato de la columna Margen.
+                longitud,       // Cogemos el dato de la columna Longitud.
+                latitud,        // Cogemos el dato de la columna Latitud.
+                chunk.dates[line] == PriceExtractChunk.NO_DATE?null:new Date(chunk.dates[line]),
+                chunk.maritime[line]?"M":"T", // Cogemos el dato de la columna Tipo.
+                horario    // Cogemos el dato de la columna Horario.
+        );
+        stations.add(station);
+        stationsByKey.put(key, station);
+        return station;
     }
 
-    private static void intakeStations(Connection connection, List<MySqlStations> stations) throws SQLException {
+    private static void intakeProvinces(Connection connection, List<MySqlProvinces> provinces) throws SQLException {
 
         // Consultas de la tabla provincias
-        String insertSqlStations = "INSERT INTO stations (st_id, loc_id, op_id, cp, address, margin, longitude, latitude, price_date, type, schedule)"
-                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        int lote = 5;
-        int contador = 0;
+        String insertSqlProvinces = "INSERT INTO provinces (pro_id, name)"
+                + "VALUES (?, ?)";
 
-        // Preparamos las consultas, una unica vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatementStations = connection.prepareStatement(insertSqlStations);
+        new BatchWriter<>(connection, "provinces", insertSqlProvinces, MySqlApplicationIntake::fillInsertStatementProvinces)
+                .write(missingByName(connection, "provinces", provinces, MySqlProvinces::getName));
+    }
 
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
+    private static void intakeMunicipalities(Connection connection, List<MySqlMunicipalities> municipalities) throws SQLException {
 
-        for (MySqlStations station : stations) {
+        // Consultas de la tabla Municipios
+        String insertSqlMunicipalities = "INSERT INTO municipalities (mun_id, pro_id, name)"
+                + "VALUES (?, ?, ?)";
 
-            fillInsertStatementStations(insertStatementStations, station);
-            insertStatementStations.addBatch();
+        new BatchWriter<>(connection, "municipalities", insertSqlMunicipalities, MySqlApplicationIntake::fillInsertStatementMunicipalities)
+                .write(missingByName(connection, "municipalities", municipalities, MySqlMunicipalities::getName));
+    }
 
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatementStations.executeBatch();
-            }
-        }
+    private static void intakeLocalities(Connection connection, List<MySqlLocalities> localities) throws SQLException {
 
-        // Ejecutamos el batch final
-        insertStatementStations.executeBatch();
+        // Consultas de la tabla Localidades
+        String insertSqlLocalities = "INSERT INTO localities (loc_id, mun_id, name)"
+                + "VALUES (?, ?, ?)";
 
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+        new BatchWriter<>(connection, "localities", insertSqlLocalities, MySqlApplicationIntake::fillInsertStatementLocalities)
+                .write(missingByName(connection, "localities", localities, MySqlLocalities::getName));
     }
 
-    private static List<MySqlPrices> readDataPrices() {
-
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader(CSV))
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';').build()).build()) {
+    private static void intakeOperators(Connection connection, List<MySqlOperators> operators) throws SQLException {
 
-            // Saltamos la primera linea, que contiene los nombres de las columnas del CSV
-            reader.skip(1);
-            String[] nextLine;
+        // Consultas de la tabla Operadores
+        String insertSqlOperators = "INSERT INTO operators (op_id, name)"
+                + "VALUES (?, ?)";
 
-            // Leemos el fichero linea a linea
-            while((nextLine = reader.readNext()) != null) {
+        new BatchWriter<>(connection, "operators", insertSqlOperators, MySqlApplicationIntake::fillInsertStatementOperators)
+                .write(missingByName(connection, "operators", operators, MySqlOperators::getName));
+    }
 
-                int i = 9;
-                int id_fuel = 1;
+    private static void intakeFuels(Connection connection, List<MySqlFuels> fuels) throws SQLException {
 
-                while (i <= 24) {
+        // Consultas de la tabla Combustibles
+        String insertSqlFuels = "INSERT INTO fuels (fuel_id, name)"
+                + "VALUES (?, ?)";
 
-                        if (nextLine[i].isEmpty()) {
+        new BatchWriter<>(connection, "fuels", insertSqlFuels, MySqlApplicationIntake::fillInsertStatementFuels)
+                .write(missingByName(connection, "fuels", fuels, MySqlFuels::getName));
+    }
 
-                        } else{
-                            // Buscamos en la lista de estaciones de servicio para obtener el código.
-                            int id_st = 0;
-                            for (MySqlStations station : stations) {
-                                Float longitud = nextLine[6].isEmpty()?0:Float.parseFloat(nextLine[6].replace(",", "."));
-                                Float latitud = nextLine[7].isEmpty()?0:Float.parseFloat(nextLine[7].replace(",", "."));
+    private static void intakeStations(Connection connection, List<MySqlStations> stations) throws SQLException {
 
-                                if (station.getAddress().equals(nextLine[4]) && station.getMargen().equals(nextLine[5]) && station.getLongitud().equals(longitud) && station.getLatitud().equals(latitud)) {
-                                    id_st = station.getStation_id();
-                                }
-                            }
+        // Si la tabla esta configurada en modo LOAD_DATA lo intentamos primero; el batch queda como alternativa
+        if (IntakeMode.forTable("stations") == IntakeMode.LOAD_DATA
+                && loadData(connection, "stations", "st_id, loc_id, op_id, cp, address, margin, longitude, latitude, price_date, type, schedule",
+                        stations, MySqlApplicationIntake::formatStation, MySqlStations::getStation_id)) {
+            return;
+        }
 
-                            MySqlPrices price = new MySqlPrices(
-                                    id_st,
-                                    id_fuel,
-                                    Float.parseFloat(nextLine[i].replace(",", ".")) // Cogemos el dato del precio.                        );
-                            );
-                            prices.add(price);
-                        }
-                    i++;
-                    id_fuel++;
-                }
-            }
-            return prices;
+        // Consultas de la tabla estaciones
+        String insertSqlStations = "INSERT INTO stations (st_id, loc_id, op_id, cp, address, margin, longitude, latitude, price_date, type, schedule)"
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        } catch (IOException e) {
-            log.error("Error al leer el fichero" + CSV, e);
-            throw new RuntimeException(e);
-        } catch (CsvValidationException e) {
-            throw new RuntimeException(e);
-        }
+        new BatchWriter<>(connection, "stations", insertSqlStations, MySqlApplicationIntake::fillInsertStatementStations)
+                .checkpoint(checkpoint, MySqlStations::getStation_id)
+                .write(stations);
     }
 
-    private static void intakePrices(Connection connection, List<MySqlPrices> prices) throws SQLException {
+    private static void intakePrices(Connection connection, Iterable<MySqlPriceStore.Row> prices) throws SQLException {
 
-        // Consultas de la tabla provincias
+        // Si la tabla esta configurada en modo LOAD_DATA lo intentamos primero; el batch queda como alternativa
+        if (IntakeMode.forTable("prices") == IntakeMode.LOAD_DATA
+                && loadData(connection, "prices", "st_id, fuel_id, amount", prices, MySqlApplicationIntake::formatPrice,
+                        MySqlApplicationIntake::priceKey)) {
+            return;
+        }
+
+        // Consultas de la tabla precios
         String insertSqlPrice = "INSERT INTO prices (st_id, fuel_id, amount)"
                 + "VALUES (?, ?, ?)";
 
-        int lote = 5;
-        int contador = 0;
+        new BatchWriter<>(connection, "prices", insertSqlPrice, MySqlApplicationIntake::fillInsertStatementPrices)
+                .checkpoint(checkpoint, MySqlApplicationIntake::priceKey)
+                .write(prices);
+    }
 
-        // Preparamos las consultas, una unica vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatementPrices = connection.prepareStatement(insertSqlPrice);
+    /**
+     * Vuelca una tabla con LOAD DATA LOCAL INFILE en una unica transaccion.
+     * Si el servidor o el driver no lo permiten se deshace la transaccion y se devuelve false
+     * para que la tabla se cargue con el batch normal. Tambien se usa el batch si se reanuda una carga
+     * con parte de las filas ya confirmadas, ya que el batch salta esas filas.
+     * Si no se cargan todas las filas, porque LOAD DATA descarta las duplicadas, se deshace la transaccion y se usa
+     * el batch, que falla con la clave duplicada. Solo se admite que no se cargue ninguna al reanudar: la carga
+     * anterior confirmo la tabla entera y se interrumpio antes de guardar el punto de control.
+     * @param connection
+     * @param table
+     * @param columns
+     * @param rows
+     * @param formatter
+     * @param key - Clave de cada fila para el punto de control
+     * @return true si se ha cargado la tabla
+     * @throws SQLException
+     */
+    private static <T> boolean loadData(Connection connection, String table, String columns, Iterable<T> rows,
+                                        LoadDataStream.RowFormatter<T> formatter, Function<T, Object> key) throws SQLException {
+
+        // Se recorren las filas para obtener las claves de la primera y la ultima. Las filas de un
+        // MySqlPriceStore comparten el cursor, por lo que cada clave se calcula antes de avanzar
+        String stream = null;
+        T last = null;
+        long count = 0;
+        for (T row : rows) {
+            if (count++ == 0) {
+                stream = LoadCheckpoint.stream(table, key.apply(row));
+            }
+            last = row;
+        }
+        Object lastKey = last == null ? null : key.apply(last);
+        if (checkpoint != null && stream != null && checkpoint.committed(stream) > 0) {
+            return false;
+        }
 
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
         connection.setAutoCommit(false);
 
-        for (MySqlPrices price : prices) {
-
-            fillInsertStatementPrices(insertStatementPrices, price);
-            insertStatementPrices.addBatch();
-
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                insertStatementPrices.executeBatch();
+        try {
+            long loaded = LoadDataStream.load(connection, table, columns, rows, formatter);
+            if (loaded != count) {
+                if (loaded != 0 || checkpoint == null || !checkpoint.isResuming()) {
+                    throw new SQLException("LOAD DATA ha cargado " + loaded + " de " + count + " filas en " + table);
+                }
+                log.info("Las {} filas de {} ya estaban confirmadas por la carga anterior", count, table);
+            }
+            connection.commit();
+            if (checkpoint != null && stream != null) {
+                try {
+                    checkpoint.commit(stream, count, lastKey);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error al guardar el punto de control de " + stream, e);
+                }
             }
+            log.info("Cargadas {} filas en {} con LOAD DATA LOCAL INFILE", loaded, table);
+            return true;
+        } catch (SQLException e) {
+            connection.rollback();
+            log.warn("No se ha podido usar LOAD DATA LOCAL INFILE en " + table + ", se usa el batch", e);
+            return false;
+        } finally {
+            connection.setAutoCommit(true);
         }
+    }
 
-        // Ejecutamos el batch final
-        insertStatementPrices.executeBatch();
+    /**
+     * Filas de una tabla de dimension cuyo nombre no existe todavia en la tabla ni aparece antes en la lista.
+     * Los nombres existentes se cargan con una unica consulta.
+     * @param connection
+     * @param table
+     * @param rows - Filas a insertar
+     * @param name - Nombre de cada fila
+     * @return Filas que faltan en la tabla, en el mismo orden
+     * @throws SQLException
+     */
+    private static <T> List<T> missingByName(Connection connection, String table, List<T> rows, Function<T, String> name) throws SQLException {
+
+        Set<String> existing = new HashSet<>();
+        try (Statement select = connection.createStatement();
+             ResultSet resultSet = select.executeQuery("SELECT name FROM " + table)) {
+            while (resultSet.next()) {
+                existing.add(resultSet.getString(1));
+            }
+        }
 
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
+        // Si no existe, insertamos. Si existe, no hacemos nada.
+        List<T> missing = new ArrayList<>();
+        for (T row : rows) {
+            if (existing.add(name.apply(row))) {
+                missing.add(row);
+            }
+        }
+        return missing;
     }
 
     private static void fillInsertStatementProvinces(PreparedStatement statement, MySqlProvinces provinces) throws SQLException {
@@ -775,16 +766,65 @@ public class MySqlApplicationIntake {
         statement.setString(4, stations.getCp());
         statement.setString(5, stations.getAddress());
         statement.setString(6, stations.getMargen());
-        statement.setFloat(7, stations.getLongitud());
-        statement.setFloat(8, stations.getLatitud());
+        statement.setBigDecimal(7, MicroDegrees.toDecimal(stations.getLongitud()));
+        statement.setBigDecimal(8, MicroDegrees.toDecimal(stations.getLatitud()));
         statement.setDate(9, stations.getPrice_date());
         statement.setString(10, stations.getTipo());
         statement.setString(11, stations.getHorario());
     }
 
-    private static void fillInsertStatementPrices(PreparedStatement statement, MySqlPrices prices) throws SQLException {
+    private static void formatStation(MySqlStations stations, LoadDataStream.TsvLine line) throws IOException {
+        line.add(stations.getStation_id())
+                .add(stations.getLoc_id())
+                .add(stations.getOp_id())
+                .add(stations.getCp())
+                .add(stations.getAddress())
+                .add(stations.getMargen())
+                .addFixed(stations.getLongitud(), MicroDegrees.SCALE)
+                .addFixed(stations.getLatitud(), MicroDegrees.SCALE)
+                .add(stations.getPrice_date())
+                .add(stations.getTipo())
+                .add(stations.getHorario());
+    }
+
+    private static void formatPrice(MySqlPriceStore.Row prices, LoadDataStream.TsvLine line) throws IOException {
+        line.add(prices.getSt_id())
+                .add(prices.getFuel_id())
+                .add(prices.getPrice());
+    }
+
+    private static void fillInsertStatementPrices(PreparedStatement statement, MySqlPriceStore.Row prices) throws SQLException {
         statement.setInt(1, prices.getSt_id());
         statement.setInt(2, prices.getFuel_id());
         statement.setFloat(3, prices.getPrice());
     }
+
+    private static void fillUpdateStatementStations(PreparedStatement statement, MySqlStations stations) throws SQLException {
+        statement.setInt(1, stations.getLoc_id());
+        statement.setInt(2, stations.getOp_id());
+        statement.setString(3, stations.getCp());
+        statement.setString(4, stations.getAddress());
+        statement.setString(5, stations.getMargen());
+        statement.setBigDecimal(6, MicroDegrees.toDecimal(stations.getLongitud()));
+        statement.setBigDecimal(7, MicroDegrees.toDecimal(stations.getLatitud()));
+        statement.setDate(8, stations.getPrice_date());
+        statement.setString(9, stations.getTipo());
+        statement.setString(10, stations.getHorario());
+        statement.setInt(11, stations.getStation_id());
+    }
+
+    private static void fillDeleteStatementStations(PreparedStatement statement, Integer stationId) throws SQLException {
+        statement.setInt(1, stationId);
+    }
+
+    private static void fillUpdateStatementPrices(PreparedStatement statement, MySqlPriceStore.Row prices) throws SQLException {
+        statement.setFloat(1, prices.getPrice());
+        statement.setInt(2, prices.getSt_id());
+        statement.setInt(3, prices.getFuel_id());
+    }
+
+    private static void fillDeleteStatementPrices(PreparedStatement statement, Long priceKey) throws SQLException {
+        statement.setInt(1, (int) (priceKey >>> 32));
+        statement.setInt(2, (int) (long) priceKey);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.unir.app.write;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Lee un CSV en paralelo con un pool fork-join.
+ * El fichero se divide en trozos que empiezan y terminan en un salto de linea y cada trozo se lee con su propio
+ * CsvTokenizer. El resultado de cada trozo se devuelve en el orden del fichero, por lo que quien une los trozos
+ * en ese orden obtiene lo mismo que leyendo el fichero de principio a fin con un solo hilo.
+ *
+ * Se crean varios trozos por hilo para que los hilos que terminan antes cojan trabajo de los demas.
+ */
+@Slf4j
+public class ParallelCsvParser {
+
+    private static final int CHUNKS_PER_THREAD = 4;
+    // Por debajo de este tamaño no compensa dividir el fichero
+    private static final long MIN_CHUNK = 1L << 20;
+
+    /**
+     * Lectura de un trozo del fichero. Cada trozo se lee en un hilo, por lo que no debe compartir estado con los demas.
+     * @param <T>
+     */
+    public interface ChunkParser<T> {
+        T parse(CsvTokenizer lines) throws IOException, ParseException;
+    }
+
+    private final int parallelism;
+
+    public ParallelCsvParser(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return Hilos de lectura segun la variable de entorno PARSE_THREADS, o uno por procesador
+     */
+    public static int defaultParallelism() {
+        String threads = System.getenv("PARSE_THREADS");
+        return threads == null || threads.isEmpty() ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threads);
+    }
+
+    /**
+     * Lee las lineas del fichero a partir de una posicion repartidas en trozos.
+     * @param file
+     * @param from - Inicio de la primera linea a leer, por ejemplo la siguiente a la cabecera
+     * @param parser - Lectura de cada trozo
+     * @return Resultado de cada trozo, en el orden del fichero
+     * @throws IOException
+     * @throws ParseException
+     */
+    public <T> List<T> parse(Path file, long from, ChunkParser<T> parser) throws IOException, ParseException {
+
+        long size = file.toFile().length();
+        int parts = (int) Math.max(1, Math.min((long) parallelism * CHUNKS_PER_THREAD, (size - from) / MIN_CHUNK));
+        long[] limits = CsvTokenizer.lineRanges(file, from, parts);
+
+        log.debug("Leyendo {} en {} trozos con {} hilos", file, limits.length - 1, parallelism);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new ChunkTask<>(file, limits, 0, limits.length - 1, parser));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (ChunkParseException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Lee los trozos [first, last) dividiendolos por la mitad hasta que queda uno
+     */
+    private static class ChunkTask<T> extends RecursiveTask<List<T>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path file;
+        private final long[] limits;
+        private final int first;
+        private final int last;
+        private final ChunkParser<T> parser;
+
+        private ChunkTask(Path file, long[] limits, int first, int last, ChunkParser<T> parser) {
+            this.file = file;
+            this.limits = limits;
+            this.first = first;
+            this.last = last;
+            this.parser = parser;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (last - first <= 1) {
+                List<T> result = new ArrayList<>(1);
+                if (last > first) {
+                    result.add(parseChunk());
+                }
+                return result;
+            }
+
+            int middle = (first + last) >>> 1;
+            ChunkTask<T> right = new ChunkTask<>(file, limits, middle, last, parser);
+            right.fork();
+            List<T> result = new ChunkTask<>(file, limits, first, middle, parser).compute();
+            result.addAll(right.join());
+            return result;
+        }
+
+        private T parseChunk() {
+            try (CsvTokenizer lines = new CsvTokenizer(file, limits[first], limits[first + 1])) {
+                return parser.parse(lines);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (ParseException e) {
+                throw new ChunkParseException(e);
+            }
+        }
+    }
+
+    // Lleva la ParseException de un trozo hasta el hilo que ha lanzado la lectura
+    private static class ChunkParseException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private ChunkParseException(ParseException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized ParseException getCause() {
+            return (ParseException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.unir.app.write;
+
+import com.unir.config.MySqlConnectionPool;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Carga las tablas respetando el grafo de claves foraneas del esquema.
+ * Cada tabla empieza en cuanto han terminado las tablas de las que depende, por lo que las tablas
+ * independientes se cargan a la vez, cada una con su propia conexion del pool.
+ * Las tablas grandes pueden repartirse en varias particiones que se cargan en paralelo.
+ */
+@Slf4j
+public class ParallelLoader {
+
+    /**
+     * Carga de una tabla completa con una conexion del pool
+     */
+    public interface TableTask {
+        void load(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Carga de un rango de posiciones de una tabla guardada por columnas con una conexion del pool
+     */
+    public interface RangeTask {
+        void load(Connection connection, int from, int to) throws SQLException;
+    }
+
+    private final MySqlConnectionPool pool;
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<Void>> tables = new LinkedHashMap<>();
+
+    public ParallelLoader(MySqlConnectionPool pool) {
+        this.pool = pool;
+        this.executor = Executors.newFixedThreadPool(pool.getSize());
+    }
+
+    /**
+     * Programa la carga de una tabla cuando terminen las tablas de las que depende.
+     * @param table - Nombre de la tabla
+     * @param task - Carga de la tabla
+     * @param dependsOn - Tablas referenciadas por claves foraneas, ya programadas
+     * @return ParallelLoader
+     */
+    public ParallelLoader table(String table, TableTask task, String... dependsOn) {
+        CompletableFuture<Void> load = after(table, dependsOn)
+                .thenRunAsync(() -> runTask(table, task), executor);
+        tables.put(table, load);
+        return this;
+    }
+
+    /**
+     * Programa la carga de una tabla repartida en rangos contiguos de posiciones, cada uno con su propia conexion.
+     * @param table - Nombre de la tabla
+     * @param rows - Número de filas de la tabla
+     * @param partitions - Número de particiones
+     * @param task - Carga de un rango
+     * @param dependsOn - Tablas referenciadas por claves foraneas, ya programadas
+     * @return ParallelLoader
+     */
+    public ParallelLoader partitionedRange(String table, int rows, int partitions,
+                                           RangeTask task, String... dependsOn) {
+        CompletableFuture<Void> previous = after(table, dependsOn);
+        int size = (rows + partitions - 1) / Math.max(partitions, 1);
+
+        List<CompletableFuture<Void>> parts = new ArrayList<>();
+        for (int from = 0; from < rows; from += size) {
+            int start = from;
+            int end = Math.min(from + size, rows);
+            parts.add(previous.thenRunAsync(() -> runTask(table, connection -> task.load(connection, start, end)), executor));
+        }
+
+        tables.put(table, parts.isEmpty() ? previous : CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])));
+        return this;
+    }
+
+    /**
+     * Espera a que terminen todas las tablas programadas
+     * @throws SQLException - Error en la carga de alguna de las tablas
+     */
+    public void run() throws SQLException {
+        try {
+            CompletableFuture.allOf(tables.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Error en la carga en paralelo", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private CompletableFuture<Void> after(String table, String... dependsOn) {
+        List<CompletableFuture<Void>> previous = new ArrayList<>();
+        for (String dependency : dependsOn) {
+            CompletableFuture<Void> load = tables.get(dependency);
+            if (load == null) {
+                throw new IllegalArgumentException("La tabla " + table + " depende de " + dependency + " que no se ha programado antes");
+            }
+            previous.add(load);
+        }
+        return CompletableFuture.allOf(previous.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private void runTask(String table, TableTask task) {
+        try {
+            pool.run(connection -> {
+                task.load(connection);
+                return null;
+            });
+            log.debug("Carga de {} terminada en el hilo {}", table, Thread.currentThread().getName());
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+    }
+}
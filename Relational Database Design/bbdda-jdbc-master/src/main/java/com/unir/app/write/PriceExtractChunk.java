@@ -0,0 +1,118 @@
+package com.unir.app.write;
+
+import com.unir.model.MicroDegrees;
+import com.unir.model.MySqlPriceStore;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * Lineas de un trozo del CSV de precios leidas por un hilo, sin tocar las listas ni los indices globales.
+ * Los nombres que se repiten (provincia, municipio, localidad, rotulo, margen y horario) se guardan como codigos
+ * de los diccionarios del trozo, y el resto de campos de la estacion en arrays con una posicion por linea.
+ * Los precios se guardan en su propio MySqlPriceStore con la linea del trozo en lugar del ID de la estacion.
+ *
+ * Al unir los trozos en el orden del fichero se traducen los codigos a los diccionarios globales y se asignan
+ * los IDs, por lo que son los mismos que leyendo el fichero con un solo hilo.
+ */
+final class PriceExtractChunk {
+
+    // Sin fecha de precios en la linea
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    final StringDictionary provinceNames = new StringDictionary();
+    final StringDictionary municipalityNames = new StringDictionary();
+    final StringDictionary localityNames = new StringDictionary();
+    final StringDictionary operatorNames = new StringDictionary();
+    final StringDictionary margins = new StringDictionary();
+    final StringDictionary schedules = new StringDictionary();
+
+    // Codigos de los diccionarios del trozo en cada linea
+    int[] provinces = new int[INITIAL_CAPACITY];
+    int[] municipalities = new int[INITIAL_CAPACITY];
+    int[] localities = new int[INITIAL_CAPACITY];
+    int[] operators = new int[INITIAL_CAPACITY];
+    int[] margin = new int[INITIAL_CAPACITY];
+    int[] schedule = new int[INITIAL_CAPACITY];
+
+    // Campos de la estacion de cada linea
+    String[] cps = new String[INITIAL_CAPACITY];
+    String[] addresses = new String[INITIAL_CAPACITY];
+    int[] longitudes = new int[INITIAL_CAPACITY];
+    int[] latitudes = new int[INITIAL_CAPACITY];
+    long[] dates = new long[INITIAL_CAPACITY];
+    boolean[] maritime = new boolean[INITIAL_CAPACITY];
+
+    // Precios de cada linea, con la linea del trozo como ID de estacion
+    final MySqlPriceStore prices = new MySqlPriceStore();
+
+    int lines = 0;
+
+    /**
+     * Lee todas las lineas de un trozo
+     * @param nextLine - Lector del trozo
+     * @return PriceExtractChunk
+     * @throws IOException
+     * @throws ParseException
+     */
+    static PriceExtractChunk parse(CsvTokenizer nextLine) throws IOException, ParseException {
+
+        PriceExtractChunk chunk = new PriceExtractChunk();
+        // Cada trozo tiene su propio FieldParser, que guarda el ultimo dia convertido
+        FieldParser parser = new FieldParser();
+
+        while (nextLine.next()) {
+            chunk.read(nextLine, parser);
+        }
+        return chunk;
+    }
+
+    private void read(CsvTokenizer nextLine, FieldParser parser) throws ParseException {
+
+        if (lines == provinces.length) {
+            grow();
+        }
+        int line = lines++;
+
+        provinces[line] = provinceNames.encode(nextLine, 0);
+        municipalities[line] = municipalityNames.encode(nextLine, 1);
+        localities[line] = localityNames.encode(nextLine, 2);
+        operators[line] = operatorNames.encode(nextLine, 25);
+
+        cps[line] = nextLine.string(3);
+        addresses[line] = nextLine.string(4);
+        margin[line] = margins.encode(nextLine, 5);
+        // Coordenadas en millonesimas de grado
+        longitudes[line] = nextLine.isEmpty(6)?0:(int) parser.parseFixed(nextLine, 6, MicroDegrees.SCALE);
+        latitudes[line] = nextLine.isEmpty(7)?0:(int) parser.parseFixed(nextLine, 7, MicroDegrees.SCALE);
+        dates[line] = nextLine.isEmpty(8)?NO_DATE:parser.parseTimestamp(nextLine, 8);
+        maritime[line] = !nextLine.isEmpty(26);
+        schedule[line] = schedules.encode(nextLine, 27);
+
+        // Los combustibles son las columnas 9 a 24, con IDs del 1 al 16
+        for (int i = 9; i <= 24; i++) {
+            if (!nextLine.isEmpty(i)) {
+                prices.add(line, i - 8, parser.parseFloat(nextLine, i));
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = provinces.length * 2;
+        provinces = Arrays.copyOf(provinces, capacity);
+        municipalities = Arrays.copyOf(municipalities, capacity);
+        localities = Arrays.copyOf(localities, capacity);
+        operators = Arrays.copyOf(operators, capacity);
+        margin = Arrays.copyOf(margin, capacity);
+        schedule = Arrays.copyOf(schedule, capacity);
+        cps = Arrays.copyOf(cps, capacity);
+        addresses = Arrays.copyOf(addresses, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        maritime = Arrays.copyOf(maritime, capacity);
+    }
+}
@@ -0,0 +1,34 @@
+package com.unir.app.write;
+
+/**
+ * Huella de 64 bits (FNV-1a) de los valores de una fila.
+ * Permite comparar una fila del CSV con la ya cargada guardando en memoria un long en lugar de la fila completa.
+ */
+public final class RowFingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    // Separador entre valores para que ("ab", "c") y ("a", "bc") no den la misma huella
+    private static final char SEPARATOR = '\u001f';
+
+    private RowFingerprint() {
+    }
+
+    /**
+     * Calcula la huella de los valores de una fila, en el orden en que se pasan.
+     * @param values
+     * @return Huella de la fila
+     */
+    public static long of(Object... values) {
+        long hash = OFFSET_BASIS;
+        for (Object value : values) {
+            String text = String.valueOf(value);
+            for (int i = 0; i < text.length(); i++) {
+                hash = (hash ^ text.charAt(i)) * PRIME;
+            }
+            hash = (hash ^ SEPARATOR) * PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,156 @@
+package com.unir.app.write;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Diccionario de los valores que se repiten en muchas lineas del CSV (provincias, municipios, horarios, margen...).
+ * Cada valor distinto recibe un codigo entero consecutivo desde 0 la primera vez que aparece, y se guarda un unico
+ * String por valor: las filas guardan el codigo, o el String del diccionario, en lugar de su propia copia.
+ *
+ * Los campos se buscan por sus bytes en una tabla hash de direccionamiento abierto, por lo que un valor que ya
+ * existe no crea ningun objeto; solo se crea el String cuando el valor aparece por primera vez.
+ * No es seguro para varios hilos: cada lectura del CSV usa sus propios diccionarios.
+ */
+public class StringDictionary {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private final List<String> values = new ArrayList<>();
+    private byte[][] bytes = new byte[INITIAL_CAPACITY][];
+
+    // Codigo de cada posicion de la tabla hash, o -1 si esta libre. Nunca se llena mas de la mitad
+    private int[] slots = emptySlots(INITIAL_CAPACITY * 2);
+
+    /**
+     * @param line
+     * @param field
+     * @return Codigo del valor del campo, añadiendolo si no existia
+     */
+    public int encode(CsvTokenizer line, int field) {
+        // Los campos con comillas dobladas no coinciden byte a byte con su valor
+        if (line.hasEscapes(field)) {
+            return encode(line.string(field));
+        }
+
+        int length = line.length(field);
+        int hash = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (line.byteAt(field, i) & 0xFF)) * FNV_PRIME;
+        }
+
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int code = slots[slot];
+            if (code < 0) {
+                return add(line.string(field), slot);
+            }
+            if (matches(bytes[code], line, field, length)) {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * @param value
+     * @return Codigo del valor, añadiendolo si no existia
+     */
+    public int encode(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(encoded);
+
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int code = slots[slot];
+            if (code < 0) {
+                return add(value, slot);
+            }
+            if (Arrays.equals(bytes[code], encoded)) {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * @param code
+     * @return El unico String del diccionario con ese codigo
+     */
+    public String decode(int code) {
+        return values.get(code);
+    }
+
+    /**
+     * @param line
+     * @param field
+     * @return El String del diccionario con el valor del campo
+     */
+    public String intern(CsvTokenizer line, int field) {
+        return decode(encode(line, field));
+    }
+
+    /**
+     * @return Numero de valores distintos
+     */
+    public int size() {
+        return values.size();
+    }
+
+    private int add(String value, int slot) {
+        int code = values.size();
+        values.add(value);
+        if (code == bytes.length) {
+            bytes = Arrays.copyOf(bytes, code * 2);
+        }
+        bytes[code] = value.getBytes(StandardCharsets.UTF_8);
+        slots[slot] = code;
+
+        if (values.size() * 2 > slots.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    // Duplica la tabla hash y vuelve a colocar los codigos
+    private void rehash() {
+        slots = emptySlots(slots.length * 2);
+        int mask = slots.length - 1;
+        for (int code = 0; code < values.size(); code++) {
+            int slot = hash(bytes[code]) & mask;
+            while (slots[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = code;
+        }
+    }
+
+    // Hash FNV-1a de los bytes UTF-8 del valor, el mismo que se calcula sobre los bytes del campo
+    private static int hash(byte[] value) {
+        int hash = FNV_OFFSET;
+        for (byte b : value) {
+            hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static boolean matches(byte[] value, CsvTokenizer line, int field, int length) {
+        if (value.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value[i] != line.byteAt(field, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] emptySlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        return slots;
+    }
+}
@@ -19,11 +19,25 @@ public class MySqlConnector {
      * @param database
      */
     public MySqlConnector(String host, String database) {
+        this(host, database, null);
+    }
+
+    /**
+     * Se conecta a la base de datos con propiedades de conexion adicionales,
+     * por ejemplo PreparedStatementCache.CONNECTION_PROPERTIES en las conexiones de consulta
+     * @param host
+     * @param database
+     * @param properties - Propiedades de la URL separadas por &, o null
+     */
+    public MySqlConnector(String host, String database, String properties) {
 
         try {
             //Creamos la conexión a la base de datos
+            //allowLoadLocalInfile permite volcar tablas con LOAD DATA LOCAL INFILE desde un stream
+            //rewriteBatchedStatements reescribe cada batch de INSERT como un unico INSERT multi-fila
             this.connection = DriverManager.getConnection(
-                    "jdbc:mysql://" + host + "/" + database,
+                    "jdbc:mysql://" + host + "/" + database + "?allowLoadLocalInfile=true&rewriteBatchedStatements=true"
+                            + (properties == null ? "" : "&" + properties),
                     System.getenv("MYSQL_USER"),
                     System.getenv("MYSQL_PASSWORD"));
 
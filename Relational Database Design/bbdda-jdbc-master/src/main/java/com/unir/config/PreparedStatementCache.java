@@ -0,0 +1,72 @@
+package com.unir.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sentencias preparadas de una conexion, para las consultas que se repiten.
+ * Cada SQL se prepara la primera vez que se pide y despues se devuelve la misma sentencia, por lo que MySQL
+ * no vuelve a analizar la consulta. Al cerrar se cierran todas las sentencias, pero no la conexion.
+ *
+ * Igual que la conexion, no es seguro para varios hilos: cada hilo usa su propia conexion y sus propias sentencias.
+ * Los ResultSet que se obtienen de una sentencia se deben cerrar antes de volver a ejecutarla.
+ */
+public class PreparedStatementCache implements AutoCloseable {
+
+    // Sentencias preparadas en el servidor y reutilizadas por el driver al cerrarlas. No se usan en las conexiones de carga:
+    // un INSERT reescrito por rewriteBatchedStatements puede superar el numero maximo de parametros del servidor
+    public static final String CONNECTION_PROPERTIES = "useServerPrepStmts=true&cachePrepStmts=true";
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    /**
+     * @param connection - Conexion de la que se preparan las sentencias, que sigue abierta al cerrar
+     */
+    public PreparedStatementCache(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @param sql
+     * @return Sentencia preparada del SQL, la misma en todas las llamadas, con los parametros anteriores borrados
+     * @throws SQLException
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    /**
+     * Cierra todas las sentencias. Si falla alguna se siguen cerrando las demas y se lanza el primer error
+     * @throws SQLException
+     */
+    @Override
+    public void close() throws SQLException {
+        SQLException error = null;
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        statements.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+}
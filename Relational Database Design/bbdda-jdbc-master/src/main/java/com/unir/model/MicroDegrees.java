@@ -0,0 +1,33 @@
+package com.unir.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Coordenadas en punto fijo: grados multiplicados por 10^6 en un int, la misma precision que las columnas
+ * decimal(10, 6) de la base de datos. Dos coordenadas son iguales si lo son sus enteros, sin los errores de
+ * redondeo de comparar float.
+ */
+public final class MicroDegrees {
+
+    public static final int SCALE = 6;
+
+    private MicroDegrees() {
+    }
+
+    /**
+     * @param microDegrees
+     * @return Coordenada en grados con 6 decimales, para enviarla a la base de datos
+     */
+    public static BigDecimal toDecimal(int microDegrees) {
+        return BigDecimal.valueOf(microDegrees, SCALE);
+    }
+
+    /**
+     * @param degrees - Coordenada en grados leida de la base de datos, o null
+     * @return Coordenada en millonesimas de grado, redondeada a 6 decimales; 0 si es null
+     */
+    public static int of(BigDecimal degrees) {
+        return degrees == null ? 0 : degrees.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+    }
+}
@@ -0,0 +1,110 @@
+package com.unir.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Precios leidos del CSV guardados por columnas: un array de int con el ID de la estacion, uno de short con el ID
+ * del combustible y uno de float con el importe. Cada precio ocupa 10 bytes en lugar de un objeto MySqlPrices
+ * con su Float y el nodo de la lista, y los arrays crecen al doble cuando se llenan.
+ *
+ * Las filas se recorren con un cursor que se reutiliza en todas las posiciones, por lo que el recorrido no crea
+ * objetos. El cursor solo es valido hasta pedir la siguiente fila; quien necesite guardar una fila guarda su posicion.
+ */
+public class MySqlPriceStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] stationIds = new int[INITIAL_CAPACITY];
+    private short[] fuelIds = new short[INITIAL_CAPACITY];
+    private float[] amounts = new float[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public void add(int stationId, int fuelId, float amount) {
+        if (size == stationIds.length) {
+            int capacity = size * 2;
+            stationIds = Arrays.copyOf(stationIds, capacity);
+            fuelIds = Arrays.copyOf(fuelIds, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+        }
+        stationIds[size] = stationId;
+        fuelIds[size] = (short) fuelId;
+        amounts[size] = amount;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Todas las filas en el orden en que se han añadido
+     */
+    public Iterable<Row> rows() {
+        return rows(0, size);
+    }
+
+    /**
+     * @param from - Primera posicion, incluida
+     * @param to - Ultima posicion, excluida
+     * @return Filas entre las dos posiciones
+     */
+    public Iterable<Row> rows(int from, int to) {
+        return () -> new Iterator<Row>() {
+            private final Row row = new Row();
+            private int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            @Override
+            public Row next() {
+                if (next >= to) {
+                    throw new NoSuchElementException();
+                }
+                row.position = next++;
+                return row;
+            }
+        };
+    }
+
+    /**
+     * Copia unas filas en un almacen nuevo, por ejemplo las que han cambiado en una carga DELTA
+     * @param positions
+     * @return MySqlPriceStore
+     */
+    public MySqlPriceStore select(Collection<Integer> positions) {
+        MySqlPriceStore selected = new MySqlPriceStore();
+        for (int position : positions) {
+            selected.add(stationIds[position], fuelIds[position], amounts[position]);
+        }
+        return selected;
+    }
+
+    /**
+     * Fila del almacen en la posicion actual del recorrido
+     */
+    public class Row {
+        private int position;
+
+        public int getPosition() {
+            return position;
+        }
+
+        public int getSt_id() {
+            return stationIds[position];
+        }
+
+        public int getFuel_id() {
+            return fuelIds[position];
+        }
+
+        public float getPrice() {
+            return amounts[position];
+        }
+    }
+}
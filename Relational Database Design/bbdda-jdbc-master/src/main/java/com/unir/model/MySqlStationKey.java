@@ -0,0 +1,20 @@
+package com.unir.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Clave compuesta que identifica una estacion de servicio en el CSV: direccion, margen, longitud y latitud.
+ * Se usa como clave del indice hash de estaciones.
+ */
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+public class MySqlStationKey {
+    private String address;
+    private String margen;
+    // Millonesimas de grado: la igualdad de la clave no depende del redondeo de float
+    private int longitud;
+    private int latitud;
+}
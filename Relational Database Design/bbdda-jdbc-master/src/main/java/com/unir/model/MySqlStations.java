@@ -14,8 +14,9 @@ public class MySqlStations {
     private String cp;
     private String address;
     private String margen;
-    private Float longitud;
-    private Float latitud;
+    // Millonesimas de grado, ver MicroDegrees
+    private int longitud;
+    private int latitud;
     private Date price_date;
     private String tipo;
     private String horario;
@@ -0,0 +1,20 @@
+package com.unir.types;
+
+// Modo en el que se vuelcan las filas de una tabla en la base de datos
+public enum IntakeMode {
+    // INSERT con PreparedStatement y addBatch
+    BATCH,
+    // LOAD DATA LOCAL INFILE alimentado por un stream TSV en memoria
+    LOAD_DATA;
+
+    /**
+     * Obtiene el modo de carga de una tabla a partir de la variable de entorno INTAKE_MODE_<TABLA>.
+     * Si no esta definida se usa el modo BATCH.
+     * @param table
+     * @return IntakeMode
+     */
+    public static IntakeMode forTable(String table) {
+        String mode = System.getenv("INTAKE_MODE_" + table.toUpperCase());
+        return mode == null || mode.isEmpty() ? BATCH : IntakeMode.valueOf(mode.toUpperCase());
+    }
+}
@@ -0,0 +1,19 @@
+package com.unir.types;
+
+// Estrategia con la que se actualiza la base de datos en cada ejecucion
+public enum IntakeStrategy {
+    // Se borran todas las tablas y se vuelven a cargar completas
+    RELOAD,
+    // Se compara el CSV con lo ya cargado y solo se insertan, actualizan o borran las filas que han cambiado
+    DELTA;
+
+    /**
+     * Obtiene la estrategia de carga a partir de la variable de entorno INTAKE_STRATEGY.
+     * Si no esta definida se usa la estrategia RELOAD.
+     * @return IntakeStrategy
+     */
+    public static IntakeStrategy current() {
+        String strategy = System.getenv("INTAKE_STRATEGY");
+        return strategy == null || strategy.isEmpty() ? RELOAD : IntakeStrategy.valueOf(strategy.toUpperCase());
+    }
+}
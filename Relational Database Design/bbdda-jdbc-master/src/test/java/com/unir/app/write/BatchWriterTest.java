@@ -0,0 +1,166 @@
+package com.unir.app.write;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba con una conexion simulada, que ejecuta los lotes al instante, que ningun commit pasa de MAX_COMMIT_ROWS
+ * filas aunque el lote y el intervalo de commit lleguen a sus maximos, y que al reanudar despues de perder el
+ * punto de control del commit mas grande todas sus filas se vuelven a escribir con INSERT IGNORE.
+ */
+class BatchWriterTest {
+
+    private static final int MAX_COMMIT_ROWS = 50000;
+    private static final int ROWS = 400_000;
+    private static final String TABLE = "precios";
+    private static final String SQL = "INSERT INTO precios (id) VALUES (?)";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void commitsNeverExceedMaxCommitRows() throws SQLException {
+        FakeConnection fake = new FakeConnection();
+        long written = new BatchWriter<Integer>(fake.connection(), TABLE, SQL, (statement, row) -> statement.setInt(1, row))
+                .write(rows(ROWS));
+
+        assertEquals(ROWS, written);
+        assertEquals(ROWS, fake.commits.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(MAX_COMMIT_ROWS, Collections.max(fake.commits));
+    }
+
+    @Test
+    void resumeRewritesLostCommitWithInsertIgnore() throws SQLException, IOException {
+        Path csv = Files.write(dir.resolve("precios.csv"), new byte[]{1});
+        Path file = dir.resolve("precios.checkpoint");
+
+        FakeConnection first = new FakeConnection();
+        write(first, LoadCheckpoint.open(file, csv, 1));
+
+        // La carga se interrumpe despues del commit mas grande y antes de guardar su punto de control
+        int largest = first.commits.indexOf(Collections.max(first.commits));
+        int confirmed = 0;
+        for (int i = 0; i < largest; i++) {
+            confirmed += first.commits.get(i);
+        }
+        int lost = first.commits.get(largest);
+
+        Files.deleteIfExists(file);
+        LoadCheckpoint.open(file, csv, 1).commit(LoadCheckpoint.stream(TABLE, 0), confirmed, confirmed - 1);
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(file, csv, 1);
+        assertTrue(checkpoint.isResuming());
+
+        FakeConnection resumed = new FakeConnection();
+        assertEquals(ROWS - confirmed, write(resumed, checkpoint));
+
+        assertFalse(resumed.statements.containsKey(confirmed - 1));
+        for (int row = confirmed; row < confirmed + lost; row++) {
+            assertTrue(resumed.statements.get(row).startsWith("INSERT IGNORE INTO"), "Fila " + row);
+        }
+        assertEquals(SQL, resumed.statements.get(ROWS - 1));
+    }
+
+    private static long write(FakeConnection fake, LoadCheckpoint checkpoint) throws SQLException {
+        return new BatchWriter<Integer>(fake.connection(), TABLE, SQL, (statement, row) -> statement.setInt(1, row))
+                .checkpoint(checkpoint, row -> row)
+                .write(rows(ROWS));
+    }
+
+    private static List<Integer> rows(int count) {
+        List<Integer> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(i);
+        }
+        return rows;
+    }
+
+    /**
+     * Conexion que guarda las filas de cada commit y la sentencia con la que se ha escrito cada fila
+     */
+    private static class FakeConnection {
+        private final List<Integer> commits = new ArrayList<>();
+        private final Map<Integer, String> statements = new HashMap<>();
+        private int uncommitted;
+
+        private Connection connection() {
+            return proxy(Connection.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getAutoCommit":
+                        return true;
+                    case "commit":
+                        if (uncommitted > 0) {
+                            commits.add(uncommitted);
+                        }
+                        uncommitted = 0;
+                        return null;
+                    case "prepareStatement":
+                        return statement((String) args[0]);
+                    default:
+                        return defaultValue(method);
+                }
+            });
+        }
+
+        private PreparedStatement statement(String sql) {
+            List<Integer> batch = new ArrayList<>();
+            int[] bound = new int[1];
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setInt":
+                        bound[0] = (Integer) args[1];
+                        return null;
+                    case "addBatch":
+                        batch.add(bound[0]);
+                        return null;
+                    case "executeBatch":
+                        for (Integer row : batch) {
+                            statements.put(row, sql);
+                        }
+                        uncommitted += batch.size();
+                        int[] counts = new int[batch.size()];
+                        batch.clear();
+                        return counts;
+                    default:
+                        return defaultValue(method);
+                }
+            });
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(BatchWriterTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,154 @@
+package com.unir.app.write;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compara FieldParser con los parsers del JDK en los limites del camino rapido: mantisas y potencias de 10
+ * exactas (2^24 y 10^10 en float, 2^53 y 10^22 en double), negativos, campos que van a los parsers del JDK
+ * y fechas alrededor de los cambios de horario de verano.
+ */
+class FieldParserTest {
+
+    private static TimeZone defaultZone;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void setZone() {
+        // Las fechas del CSV estan en hora peninsular, con cambios de horario el ultimo domingo de marzo y de octubre
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Madrid"));
+    }
+
+    @AfterAll
+    static void restoreZone() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    void parseDoubleMatchesJdk() throws IOException {
+        List<String> values = new ArrayList<>(Arrays.asList(
+                "0", "-0", "+0", "1,679", "-0,777972", "+3,5", "1.5", ",5", "5,",
+                "9007199254740991", "-9007199254740991", "9007199254740992", "9007199254740993",
+                "0,0000000000000000000001", "9007199254740991e0", "900719925,4740991",
+                "0,00000000000000000000001", "123456789012345678", "1234567890123456789",
+                "1e5", " 2,5", "-38,994349"));
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            values.add(randomNumber(random, 1L << 54, 24));
+        }
+
+        FieldParser parser = new FieldParser();
+        try (CsvTokenizer line = tokenizer(values)) {
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                assertEquals(Double.parseDouble(value.trim().replace(",", ".")), parser.parseDouble(line, i), value);
+            }
+        }
+    }
+
+    @Test
+    void parseFloatMatchesJdk() throws IOException {
+        List<String> values = new ArrayList<>(Arrays.asList(
+                "0", "-0", "1,679", "-0,777972", "16777215", "-16777215", "16777216", "16777217",
+                "1677,7215", "0,0000000001", "1,6777215e0", "0,00000000001", "0,0016777215", "-0,0016777217",
+                "3,4028235", "0,1", "0,3"));
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            values.add(randomNumber(random, 1L << 25, 12));
+        }
+
+        FieldParser parser = new FieldParser();
+        try (CsvTokenizer line = tokenizer(values)) {
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                assertEquals(Float.parseFloat(value.trim().replace(",", ".")), parser.parseFloat(line, i), value);
+            }
+        }
+    }
+
+    @Test
+    void parseFixedMatchesBigDecimal() throws IOException {
+        List<String> values = new ArrayList<>(Arrays.asList(
+                "0", "1,679", "-0,777972", "-0,7779725", "0,7779724", "0,7779725", "-3.7", "40,4",
+                "9223372036854,775807", "-9223372036854,775807", "9223372036854", "-9223372036854,7758"));
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            values.add(randomNumber(random, 1_000_000_000_000L, 9));
+        }
+
+        FieldParser parser = new FieldParser();
+        try (CsvTokenizer line = tokenizer(values)) {
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                long expected = new BigDecimal(value.replace(",", ".")).movePointRight(6).setScale(0, RoundingMode.HALF_UP).longValueExact();
+                assertEquals(expected, parser.parseFixed(line, i, 6), value);
+            }
+        }
+    }
+
+    @Test
+    void parseTimestampMatchesSimpleDateFormat() throws IOException, ParseException {
+        List<String> values = new ArrayList<>(Arrays.asList(
+                // Paso al horario de verano: de 02:00 se pasa a 03:00 y las 02:xx no existen
+                "26/03/2023 01:59", "26/03/2023 02:00", "26/03/2023 02:30", "26/03/2023 03:00", "26/03/2023 03:01",
+                // Vuelta al horario de invierno: las 02:xx se repiten
+                "29/10/2023 01:59", "29/10/2023 02:00", "29/10/2023 02:30", "29/10/2023 02:59", "29/10/2023 03:00",
+                // Se vuelve a una hora ya convertida y a otra distinta con los mismos minutos
+                "26/03/2023 01:59", "26/03/2023 01:59", "27/03/2023 01:59",
+                "31/12/2023 23:59", "01/01/2024 00:00", "29/02/2024 12:15",
+                // Formatos que no son dd/MM/yyyy HH:mm van al SimpleDateFormat
+                "1/1/2023 10:00", "01/01/2023 1:05"));
+        // Cada 7 minutos durante los dos dias de cambio de horario
+        for (String day : new String[]{"26/03/2023", "29/10/2023"}) {
+            for (int minutes = 0; minutes < 24 * 60; minutes += 7) {
+                values.add(String.format("%s %02d:%02d", day, minutes / 60, minutes % 60));
+            }
+        }
+
+        FieldParser parser = new FieldParser();
+        SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy HH:mm");
+        try (CsvTokenizer line = tokenizer(values)) {
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                assertEquals(format.parse(value).getTime(), parser.parseTimestamp(line, i), value);
+            }
+        }
+    }
+
+    // Numero aleatorio con coma decimal, mantisa menor que maxMantissa y hasta maxScale decimales
+    private static String randomNumber(Random random, long maxMantissa, int maxScale) {
+        BigDecimal value = BigDecimal.valueOf((long) (random.nextDouble() * maxMantissa), random.nextInt(maxScale + 1));
+        String text = value.toPlainString().replace(".", ",");
+        return random.nextBoolean() ? "-" + text : text;
+    }
+
+    // CsvTokenizer situado en una linea con un campo por valor
+    private CsvTokenizer tokenizer(List<String> values) throws IOException {
+        Path csv = dir.resolve("values.csv");
+        Files.write(csv, (String.join(";", values) + "\n").getBytes(StandardCharsets.UTF_8));
+        CsvTokenizer line = new CsvTokenizer(csv);
+        line.next();
+        return line;
+    }
+}